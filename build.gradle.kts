@@ -3,6 +3,7 @@ plugins {
   kotlin("kapt") version "1.4.10" apply false
   id("com.github.rodm.teamcity-server") version "1.3.2" apply false
   id("com.github.rodm.teamcity-environments") version "1.3.2" apply false
+  id("me.champeau.gradle.jmh") version "0.5.3" apply false
 }
 
 extra["teamcityVersion"] = findProperty("teamcity.version")
@@ -5,6 +5,7 @@ plugins {
   id("com.github.rodm.teamcity-server")
   id("com.github.rodm.teamcity-environments")
   id("maven-publish")
+  id("me.champeau.gradle.jmh")
 }
 
 val teamcityVersion = rootProject.extra["teamcityVersion"] as String
@@ -21,6 +22,7 @@ dependencies {
   testRuntimeOnly("org.hamcrest:hamcrest-core:2.2")
 
   implementation("com.squareup.moshi:moshi:1.11.0")
+  implementation("org.jetbrains.kotlinx:kotlinx-coroutines-core:1.4.1")
 
   provided("org.jetbrains.teamcity:server-api:${teamcityVersion}")
   provided("org.jetbrains.teamcity:oauth:${teamcityVersion}")
@@ -51,6 +53,10 @@ compileKotlin.kotlinOptions {
   languageVersion = "1.4"
 }
 
+jmh {
+  jmhVersion = "1.27"
+}
+
 tasks {
   val testNg by creating(Test::class) {
     group = "verification"
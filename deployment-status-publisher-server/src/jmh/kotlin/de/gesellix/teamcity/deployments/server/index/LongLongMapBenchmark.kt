@@ -0,0 +1,109 @@
+package de.gesellix.teamcity.deployments.server.index
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares [LongLongMap] with boxed maps for the access pattern of the [DeploymentIndex]:
+ * lookups of known builds, and inserts of new builds into a full map which evicts the least recently used entry.
+ *
+ * Run with `./gradlew :deployment-status-publisher-server:jmh`,
+ * the `gc` profiler additionally reports the allocation rates.
+ * No results have been recorded yet, so neither map is known to be faster or smaller.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class LongLongMapBenchmark {
+
+  @Param("10000", "100000", "1000000")
+  var entries: Int = 0
+
+  private lateinit var primitive: LongLongMap
+  private lateinit var boxed: HashMap<Long, Long>
+  private lateinit var boxedLru: LinkedHashMap<Long, Long>
+  private lateinit var lookups: LongArray
+  private var next = 0
+  private var nextBuildId = 0L
+
+  @Setup(Level.Trial)
+  fun setUp() {
+    primitive = LongLongMap(entries)
+    boxed = HashMap(entries * 2)
+    boxedLru = object : LinkedHashMap<Long, Long>(entries * 2, 0.75f, true) {
+      override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Long, Long>): Boolean {
+        return size > entries
+      }
+    }
+    for (buildId in 0 until entries.toLong()) {
+      primitive.put(buildId, buildId + DEPLOYMENT_ID_OFFSET)
+      boxed[buildId] = buildId + DEPLOYMENT_ID_OFFSET
+      boxedLru[buildId] = buildId + DEPLOYMENT_ID_OFFSET
+    }
+    val random = Random(42)
+    lookups = LongArray(LOOKUPS) { random.nextInt(entries).toLong() }
+    nextBuildId = entries.toLong()
+  }
+
+  @TearDown(Level.Trial)
+  fun tearDown() {
+    primitive.close()
+  }
+
+  @Benchmark
+  fun getPrimitive(): Long {
+    return primitive.get(nextLookup(), -1)
+  }
+
+  @Benchmark
+  fun getBoxed(): Long {
+    return boxed[nextLookup()] ?: -1
+  }
+
+  @Benchmark
+  fun getBoxedLru(): Long {
+    return boxedLru[nextLookup()] ?: -1
+  }
+
+  @Benchmark
+  fun putEvictingPrimitive(): Int {
+    val buildId = nextBuildId++
+    primitive.put(buildId, buildId + DEPLOYMENT_ID_OFFSET)
+    return primitive.size()
+  }
+
+  @Benchmark
+  fun putEvictingBoxedLru(): Int {
+    val buildId = nextBuildId++
+    boxedLru[buildId] = buildId + DEPLOYMENT_ID_OFFSET
+    return boxedLru.size
+  }
+
+  private fun nextLookup(): Long {
+    val buildId = lookups[next]
+    next = (next + 1) and (LOOKUPS - 1)
+    return buildId
+  }
+
+  companion object {
+
+    private const val LOOKUPS = 1 shl 16
+    private const val DEPLOYMENT_ID_OFFSET = 300_000_000L
+  }
+}
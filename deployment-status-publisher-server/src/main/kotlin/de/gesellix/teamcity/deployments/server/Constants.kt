@@ -15,6 +15,9 @@ const val GITHUB_AUTH_TYPE = "github_authentication_type"
 const val GITHUB_TOKEN = "secure:github_access_token"
 const val GITHUB_OAUTH_USER = "github_oauth_user"
 const val GITHUB_OAUTH_PROVIDER_ID = "github_oauth_provider_id"
+const val GITHUB_APP_ID = "github_app_id"
+const val GITHUB_APP_PRIVATE_KEY = "secure:github_app_private_key"
+const val GITHUB_APP_INSTALLATION_ID = "github_app_installation_id"
 const val GITHUB_CUSTOM_CONTEXT_BUILD_PARAM = "teamcity.deploymentsStatusPublisher.githubContext"
 const val GITHUB_CONTEXT = "github_context"
 
@@ -1,6 +1,5 @@
 package de.gesellix.teamcity.deployments.server
 
-import com.google.common.util.concurrent.Striped
 import jetbrains.buildServer.serverSide.BuildRevision
 import jetbrains.buildServer.serverSide.SBuild
 import jetbrains.buildServer.serverSide.SBuildType
@@ -9,7 +8,6 @@ import jetbrains.buildServer.serverSide.SQueuedBuild
 import jetbrains.buildServer.serverSide.SRunningBuild
 import jetbrains.buildServer.users.User
 import jetbrains.buildServer.vcs.VcsRoot
-import java.util.concurrent.locks.Lock
 
 abstract class DeploymentsStatusPublisherBase protected constructor(
   private val settings: DeploymentsStatusPublisherSettings,
@@ -20,7 +18,6 @@ abstract class DeploymentsStatusPublisherBase protected constructor(
 ) : DeploymentsStatusPublisher {
 
   private var connectionTimeout = DEFAULT_CONNECTION_TIMEOUT
-  private val locks = Striped.lazyWeakLock(100)
 
   @Throws(PublisherException::class)
   override fun buildQueued(build: SQueuedBuild, revision: BuildRevision): Boolean {
@@ -67,10 +64,6 @@ abstract class DeploymentsStatusPublisherBase protected constructor(
     return false
   }
 
-  open fun getLocks(): Striped<Lock> {
-    return locks
-  }
-
   open fun getConnectionTimeout(): Int {
     return connectionTimeout
   }
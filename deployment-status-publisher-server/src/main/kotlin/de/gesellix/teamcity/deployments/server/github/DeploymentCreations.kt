@@ -0,0 +1,81 @@
+package de.gesellix.teamcity.deployments.server.github
+
+import de.gesellix.github.client.data.Deployment
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+/**
+ * Deployment creations which have been started in the background, e.g. while a build was still queued.
+ *
+ * Creations are keyed by build id, build feature and VCS root instance, and remember the commit they were started for,
+ * so that a build which starts with a different revision doesn't pick up a deployment for the wrong commit.
+ * Entries are kept for [retentionMillis], so that status updates can find the deployment without asking GitHub.
+ */
+class DeploymentCreations(
+  private val retentionMillis: Long = TimeUnit.HOURS.toMillis(1),
+  private val clock: () -> Long = System::currentTimeMillis
+) {
+
+  private val creations = ConcurrentHashMap<String, Creation>()
+
+  fun register(buildId: Long, buildFeatureId: String, vcsRootInstanceId: Long, version: String, creation: CompletableFuture<Deployment?>) {
+    evictExpired()
+    creations[key(buildId, buildFeatureId, vcsRootInstanceId)] = Creation(version, creation, clock())
+  }
+
+  /**
+   * @return a creation which is still in flight or has created the deployment.
+   * A creation which failed or didn't yield a deployment is forgotten, so that the deployment can be created again.
+   */
+  fun find(buildId: Long, buildFeatureId: String, vcsRootInstanceId: Long, version: String): CompletableFuture<Deployment?>? {
+    val key = key(buildId, buildFeatureId, vcsRootInstanceId)
+    val creation = creations[key] ?: return null
+    if (creation.version != version) {
+      return null
+    }
+    if (creation.future.isDone && (creation.future.isCompletedExceptionally || creation.future.join() == null)) {
+      creations.remove(key, creation)
+      return null
+    }
+    return creation.future
+  }
+
+  fun remove(buildId: Long, buildFeatureId: String, vcsRootInstanceId: Long): CompletableFuture<Deployment?>? {
+    return creations.remove(key(buildId, buildFeatureId, vcsRootInstanceId))?.future
+  }
+
+  /**
+   * Waits up to [timeoutMillis] for a creation which is in flight.
+   * @return the created deployment, or null when it couldn't be created in time
+   */
+  fun await(creation: CompletableFuture<Deployment?>, timeoutMillis: Long): Deployment? {
+    return try {
+      creation.get(timeoutMillis, TimeUnit.MILLISECONDS)
+    } catch (e: TimeoutException) {
+      null
+    } catch (e: ExecutionException) {
+      null
+    } catch (e: InterruptedException) {
+      Thread.currentThread().interrupt()
+      null
+    }
+  }
+
+  fun size(): Int {
+    return creations.size
+  }
+
+  private fun evictExpired() {
+    val expiredBefore = clock() - retentionMillis
+    creations.values.removeIf { it.startedAtMillis < expiredBefore }
+  }
+
+  private fun key(buildId: Long, buildFeatureId: String, vcsRootInstanceId: Long): String {
+    return "$buildId|$buildFeatureId|$vcsRootInstanceId"
+  }
+
+  private class Creation(val version: String, val future: CompletableFuture<Deployment?>, val startedAtMillis: Long)
+}
@@ -0,0 +1,60 @@
+package de.gesellix.teamcity.deployments.server.github
+
+import de.gesellix.teamcity.deployments.server.PublisherException
+import de.gesellix.teamcity.deployments.server.PublisherService
+import de.gesellix.teamcity.deployments.server.logger
+import de.gesellix.teamcity.deployments.server.outbox.DeliveryResult
+import de.gesellix.teamcity.deployments.server.outbox.DeploymentStatusDeliverer
+import de.gesellix.teamcity.deployments.server.outbox.DeploymentStatusOutbox
+import de.gesellix.teamcity.deployments.server.outbox.DeploymentStatusUpdate
+import jetbrains.buildServer.serverSide.BuildServerAdapter
+import jetbrains.buildServer.serverSide.BuildServerListener
+import jetbrains.buildServer.serverSide.SBuildServer
+import jetbrains.buildServer.util.EventDispatcher
+
+/**
+ * Drains the [DeploymentStatusOutbox] once the server has started, including the updates left over from before a restart.
+ *
+ * Updates only carry ids, so the build, its [GitHubPublisher] and VCS root revision are looked up again.
+ * Updates whose build or publisher has been removed in the meantime are discarded.
+ */
+class DeploymentStatusReplayer(
+  events: EventDispatcher<BuildServerListener?>,
+  private val outbox: DeploymentStatusOutbox,
+  private val buildServer: SBuildServer,
+  private val publisherService: PublisherService
+) : BuildServerAdapter(), DeploymentStatusDeliverer {
+
+  private val logger by logger(DeploymentStatusReplayer::class.java.name)
+
+  override fun serverStartup() {
+    if (outbox.enabled) {
+      outbox.start(this)
+    }
+  }
+
+  override fun deliver(update: DeploymentStatusUpdate): DeliveryResult {
+    val build = buildServer.findBuildInstanceById(update.buildId)
+    val buildType = build?.buildType
+    if (build == null || buildType == null) {
+      logger.info("Discarding GitHub deployment status update for removed buildId: ${update.buildId}")
+      return DeliveryResult.DISCARDED
+    }
+    val publisher = publisherService.getPublishers(buildType)[update.buildFeatureId] as? GitHubPublisher
+    val revision = build.revisions.firstOrNull { it.root.id == update.vcsRootInstanceId }
+    if (publisher == null || revision == null) {
+      logger.info("Discarding GitHub deployment status update for buildId: ${update.buildId}, the publisher or its VCS root has been removed")
+      return DeliveryResult.DISCARDED
+    }
+    return try {
+      if (publisher.deliverDeploymentStatus(build, revision, update)) DeliveryResult.DELIVERED else DeliveryResult.RETRY
+    } catch (e: PublisherException) {
+      logger.warn("Discarding GitHub deployment status update for buildId: ${update.buildId}: ${e.message}")
+      DeliveryResult.DISCARDED
+    }
+  }
+
+  init {
+    events.addListener(this)
+  }
+}
@@ -1,14 +1,18 @@
 package de.gesellix.teamcity.deployments.server.github
 
-import com.squareup.moshi.Moshi
+import de.gesellix.github.client.HttpStatusException
 import de.gesellix.github.client.Timeout
 import de.gesellix.github.client.data.Deployment
+import de.gesellix.github.client.data.DeploymentPayload
 import de.gesellix.github.client.data.DeploymentRequest
 import de.gesellix.github.client.data.DeploymentStatusRequest
 import de.gesellix.github.client.data.DeploymentStatusState
 import de.gesellix.teamcity.deployments.server.BUILD_ID_KEY
 import de.gesellix.teamcity.deployments.server.DEPLOYMENT_ID_PARAM_KEY
 import de.gesellix.teamcity.deployments.server.DeploymentsStatusPublisherProblems
+import de.gesellix.teamcity.deployments.server.GITHUB_APP_ID
+import de.gesellix.teamcity.deployments.server.GITHUB_APP_INSTALLATION_ID
+import de.gesellix.teamcity.deployments.server.GITHUB_APP_PRIVATE_KEY
 import de.gesellix.teamcity.deployments.server.GITHUB_AUTH_TYPE
 import de.gesellix.teamcity.deployments.server.GITHUB_CONTEXT
 import de.gesellix.teamcity.deployments.server.GITHUB_SERVER
@@ -19,29 +23,61 @@ import de.gesellix.teamcity.deployments.server.Repository
 import de.gesellix.teamcity.deployments.server.github.api.GitHubApi
 import de.gesellix.teamcity.deployments.server.github.api.GitHubApiAuthenticationType
 import de.gesellix.teamcity.deployments.server.github.api.GitHubApiFactory
+import de.gesellix.teamcity.deployments.server.index.DeploymentIndex
 import de.gesellix.teamcity.deployments.server.logger
+import de.gesellix.teamcity.deployments.server.outbox.DeploymentStatusOutbox
+import de.gesellix.teamcity.deployments.server.outbox.DeploymentStatusUpdate
 import jetbrains.buildServer.messages.Status
 import jetbrains.buildServer.serverSide.RepositoryVersion
 import jetbrains.buildServer.serverSide.SBuild
+import jetbrains.buildServer.serverSide.TeamCityProperties
 import jetbrains.buildServer.serverSide.WebLinks
 import jetbrains.buildServer.serverSide.executors.ExecutorServices
 import jetbrains.buildServer.serverSide.impl.LogUtil
 import jetbrains.buildServer.util.ExceptionUtil
 import jetbrains.buildServer.util.StringUtil
 import jetbrains.buildServer.vcs.VcsRoot
+import kotlinx.coroutines.async
+import kotlinx.coroutines.runBlocking
 import java.io.IOException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ExecutorService
+import java.util.concurrent.ScheduledExecutorService
 import java.util.concurrent.TimeUnit
-import java.util.concurrent.locks.Lock
+import java.util.function.Supplier
 
-class DeploymentsStatusUpdater(
+const val GRAPHQL_ENABLED_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.github.graphql.enabled"
+const val LOW_RATE_LIMIT_BUDGET_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.github.rateLimit.lowBudget"
+const val EARLY_DEPLOYMENT_CREATION_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.github.earlyDeploymentCreation.enabled"
+const val DEPLOYMENT_CREATION_WAIT_MILLIS_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.github.deploymentCreation.waitMillis"
+
+private const val MIN_DEFERRAL_MILLIS = 1_000L
+private const val MAX_DEFERRAL_MILLIS = 15 * 60 * 1_000L
+
+class DeploymentsStatusUpdater @JvmOverloads constructor(
   services: ExecutorServices,
   private val factory: GitHubApiFactory,
-  private val webLinks: WebLinks
+  private val webLinks: WebLinks,
+  private val outbox: DeploymentStatusOutbox? = null,
+  private val publishingExecutor: PublishingExecutor? = null,
+  private val deploymentIndex: DeploymentIndex? = null
 ) {
 
   private val logger by logger(DeploymentsStatusUpdater::class.java.name)
-  private val executor: ExecutorService = services.lowPriorityExecutorService
+
+  // keeps the updates of a deployment in order when there's no PublishingExecutor
+  private val serialExecutor = KeyedSerialExecutor<String>(services.lowPriorityExecutorService)
+  private val creationExecutor: ExecutorService = services.lowPriorityExecutorService
+  private val scheduler: ScheduledExecutorService = services.normalExecutorService
+
+  // latest update per deployment which is sent without the outbox, so that a deferred update can tell whether it is still due
+  private val directUpdates = ConcurrentHashMap<String, DeploymentStatusUpdate>()
+
+  /**
+   * Deployments which are being created in the background, see [Handler.startCreateDeployment].
+   */
+  val deploymentCreations = DeploymentCreations()
 
   private fun getGitHubApi(params: Map<String, String>, timeout: Timeout = Timeout(10, TimeUnit.SECONDS)): GitHubApi {
     val serverUrl = params[GITHUB_SERVER]
@@ -49,7 +85,19 @@ class DeploymentsStatusUpdater(
     return when (val authenticationType = GitHubApiAuthenticationType.parse(params[GITHUB_AUTH_TYPE])) {
       GitHubApiAuthenticationType.TOKEN_AUTH -> {
         val token = params[GITHUB_TOKEN]
-        factory.openGitHubForToken(serverUrl, token!!, timeout)
+        // several personal access tokens may be given to spread the requests over their rate limits
+        val tokens = token!!.split(',', ' ', '\n').map { it.trim() }.filter { it.isNotEmpty() }
+        if (tokens.size > 1) {
+          factory.openGitHubForTokens(serverUrl, tokens, timeout)
+        } else {
+          factory.openGitHubForToken(serverUrl, token, timeout)
+        }
+      }
+      GitHubApiAuthenticationType.APP_AUTH -> {
+        val appId = params[GITHUB_APP_ID]
+        val privateKey = params[GITHUB_APP_PRIVATE_KEY]
+        val installationId = params[GITHUB_APP_INSTALLATION_ID]?.trim()?.toLongOrNull()
+        factory.openGitHubForApp(serverUrl, appId!!, privateKey!!, installationId, timeout)
       }
       else -> throw IllegalArgumentException("Failed to parse authentication type:$authenticationType")
     }
@@ -80,7 +128,6 @@ class DeploymentsStatusUpdater(
     params: Map<String, String>,
     publisher: GitHubPublisher
   ): Handler {
-    val moshi = Moshi.Builder().build()
     val api = getGitHubApi(params, Timeout(publisher.getConnectionTimeout().toLong(), TimeUnit.MILLISECONDS))
     val repo: Repository = parseRepository(root)
     val repositoryOwner: String = repo.owner()
@@ -102,8 +149,32 @@ class DeploymentsStatusUpdater(
         return shouldReportOnFinish
       }
 
-      override fun runCreateDeployment(hash: RepositoryVersion, build: SBuild, environment: String): Deployment? {
-        return runDeploymentCreation(hash, build, "TeamCity build starting", DeploymentStatusState.pending, environment)
+      override fun startCreateDeployment(version: RepositoryVersion, buildId: Long, buildDescription: String, environment: String): CompletableFuture<Deployment?> {
+        val creation = {
+          runDeploymentCreation(version, buildId, buildDescription, "TeamCity build starting", DeploymentStatusState.pending, environment)
+        }
+        val future = publishingExecutor?.supplyUrgently(creation) ?: CompletableFuture.supplyAsync(Supplier(creation), creationExecutor)
+        deploymentCreations.register(buildId, publisher.getBuildFeatureId(), root.id, version.version, future)
+        return future
+      }
+
+      override fun cancelDeployment(deploymentId: Long, environment: String) {
+        try {
+          api.updateDeploymentStatus(
+            repositoryOwner,
+            repositoryName,
+            deploymentId,
+            DeploymentStatusRequest(DeploymentStatusState.error).apply {
+              this.environment = environment
+              this.description = "TeamCity build removed from queue ($context)"
+            },
+          )
+          logger.info("Cancelled GitHub deployment $deploymentId of a build which has been removed from the queue")
+        } catch (e: IOException) {
+          logger.warn("Failed to cancel GitHub deployment $deploymentId: ${e.message}")
+        } catch (e: HttpStatusException) {
+          logger.warn("Failed to cancel GitHub deployment $deploymentId: ${e.code} ${e.message}")
+        }
       }
 
       override fun scheduleChangeStarted(hash: RepositoryVersion, build: SBuild, environment: String) {
@@ -142,7 +213,7 @@ class DeploymentsStatusUpdater(
 
       private fun resolveCommitHash(
         version: RepositoryVersion,
-        build: SBuild,
+        buildId: Long,
         status: DeploymentStatusState
       ): String {
         val vcsBranch = version.vcsBranch
@@ -154,7 +225,7 @@ class DeploymentsStatusUpdater(
                 "hash: " + version.version + ", " +
                 "newHash: " + hash + ", " +
                 "branch: " + version.vcsBranch + ", " +
-                "buildId: " + build.buildId + ", " +
+                "buildId: " + buildId + ", " +
                 "status: " + status
             )
             return hash
@@ -174,44 +245,61 @@ class DeploymentsStatusUpdater(
         return param?.toLongOrNull()
       }
 
-      private fun hasBuildId(deployment: Deployment, buildId: Long): Boolean {
-        if (deployment.payload != null) {
-          try {
-            val payload = moshi.adapter(Map::class.java).fromJson(deployment.payload as String)
-            if (payload?.get(BUILD_ID_KEY) == buildId.toString()) {
-              return true
-            }
-          } catch (e: Exception) {
-          }
-        }
-        return false
+      private suspend fun findDeploymentIdInGitHubDeployments(sha: String, build: SBuild): Long? {
+        return api.findDeploymentIdByPayload(repositoryOwner, repositoryName, mapOf("sha" to sha), BUILD_ID_KEY, build.buildId.toString())
       }
 
-      private fun findDeploymentIdInGitHubDeployments(sha: String, build: SBuild): Long? {
-        val deployments = api.getDeployments(repositoryOwner, repositoryName, mapOf("sha" to sha)) ?: return null
-        return deployments.find { hasBuildId(it, build.buildId) }?.id
+      private fun findDeploymentIdsInCommitDeployments(sha: String, build: SBuild, associatedBuild: SBuild?): Pair<Long?, Long?> {
+        val deployments = api.getCommitDeployments(repositoryOwner, repositoryName, listOf(sha))[sha].orEmpty()
+        return Pair(
+          deployments.find { it.hasPayload(BUILD_ID_KEY, build.buildId.toString()) }?.id,
+          associatedBuild?.let { associated -> deployments.find { it.hasPayload(BUILD_ID_KEY, associated.buildId.toString()) }?.id }
+        )
       }
 
-      private fun findDeploymentId(sha: String, build: SBuild): Long? {
-        val ownDeploymentId = findDeploymentIdInParameters(build)
-        val ownGitHubDeploymentId = findDeploymentIdInGitHubDeployments(sha, build)
+      private fun findDeploymentIdInCreations(version: RepositoryVersion, build: SBuild): Long? {
+        val creation = deploymentCreations.find(build.buildId, publisher.getBuildFeatureId(), root.id, version.version) ?: return null
+        // bounded like a build start waiting for its deployment, a slow creation falls back to the other lookups
+        return deploymentCreations.await(creation, TeamCityProperties.getInteger(DEPLOYMENT_CREATION_WAIT_MILLIS_PROPERTY_NAME, 5000).toLong())?.id
+      }
 
+      private fun findDeploymentId(version: RepositoryVersion, sha: String, build: SBuild, environment: String): Long? {
+        // a deployment created in the background, which may not have made it into the build parameters
+        findDeploymentIdInCreations(version, build)?.let { return it }
+        val ownDeploymentId = findDeploymentIdInParameters(build)
         val associatedBuild = getAssociatedBuild(build)
-        var associatedBuildDeploymentId: Long? = null
-        var associatedGitHubDeploymentId: Long? = null
         logger.debug("associatedBuild: $associatedBuild")
-        if (associatedBuild != null) {
-          associatedBuildDeploymentId = findDeploymentIdInParameters(associatedBuild)
-          associatedGitHubDeploymentId = findDeploymentIdInGitHubDeployments(sha, associatedBuild)
+        val associatedBuildDeploymentId: Long? = associatedBuild?.let { findDeploymentIdInParameters(it) }
+        // GitHub is only asked when none of the local sources knows the deployment
+        val localDeploymentId = ownDeploymentId ?: associatedBuildDeploymentId ?: deploymentIndex?.find(build.buildId, sha, environment)
+        if (localDeploymentId != null) {
+          logger.debug("deploymentId: $localDeploymentId, found locally for buildId: ${build.buildId}")
+          return localDeploymentId
+        }
+
+        // a single query returns the latest deployments for both builds
+        val recentDeploymentIds = if (TeamCityProperties.getBoolean(GRAPHQL_ENABLED_PROPERTY_NAME)) {
+          findDeploymentIdsInCommitDeployments(sha, build, associatedBuild)
+        } else {
+          Pair(null, null)
+        }
+        // the REST API covers all deployments of the commit, it is asked for whatever the query has missed
+        val (ownGitHubDeploymentId, associatedGitHubDeploymentId) = if (recentDeploymentIds.first != null) recentDeploymentIds else runBlocking {
+          // both GitHub lookups are independent of each other, so we let them run concurrently without blocking a thread each
+          val own = async { findDeploymentIdInGitHubDeployments(sha, build) }
+          val associated = async { recentDeploymentIds.second ?: associatedBuild?.let { findDeploymentIdInGitHubDeployments(sha, it) } }
+          Pair(own.await(), associated.await())
         }
 
-        logger.debug("deploymentIds: own($ownDeploymentId)/associated($associatedBuildDeploymentId)/gitHubOwn($ownGitHubDeploymentId)/githubAssociated($associatedGitHubDeploymentId)")
-        return ownDeploymentId ?: associatedBuildDeploymentId ?: ownGitHubDeploymentId ?: associatedGitHubDeploymentId
+        logger.debug("deploymentIds: gitHubOwn($ownGitHubDeploymentId)/githubAssociated($associatedGitHubDeploymentId)")
+        ownGitHubDeploymentId?.let { deploymentIndex?.put(build.buildId, it, sha, environment) }
+        return ownGitHubDeploymentId ?: associatedGitHubDeploymentId
       }
 
       private fun runDeploymentCreation(
         version: RepositoryVersion,
-        build: SBuild,
+        buildId: Long,
+        buildDescription: String,
         message: String,
         status: DeploymentStatusState,
         environment: String
@@ -220,33 +308,28 @@ class DeploymentsStatusUpdater(
           "Creating GitHub deployment for " +
             "hash: " + version.version + ", " +
             "branch: " + version.vcsBranch + ", " +
-            "buildId: " + build.buildId + ", " +
+            "buildId: " + buildId + ", " +
             "status: " + status
         )
-        val hash = resolveCommitHash(version, build, status)
-        val lock: Lock = publisher.getLocks()[publisher.getBuildType().externalId]
+        val hash = resolveCommitHash(version, buildId, status)
         val problems: DeploymentsStatusPublisherProblems = publisher.getProblems()
         val prMergeBranch = hash != version.version
-        lock.lock()
         try {
-          try {
-            val deployment = api.createDeployment(
-              repositoryOwner,
-              repositoryName,
-              DeploymentRequest(hash).apply {
-                this.auto_merge = false
-                this.environment = environment
-                this.payload = moshi.adapter(Map::class.java).toJson(mapOf(BUILD_ID_KEY to build.buildId.toString()))
-                this.description = "$message (${if (prMergeBranch) "$context - merge" else context})"
-              })
-            logger.info("Created GitHub deployment ${deployment?.id} for hash: $hash, buildId: ${build.buildId}, status: $status")
-            return deployment
-          } catch (e: IOException) {
-            problems.reportProblem(String.format("Deployments Status Publisher error. GitHub status: '%s'", status.toString()), publisher, LogUtil.describe(build), publisher.serverUrl, e, logger)
-            return null
-          }
-        } finally {
-          lock.unlock()
+          val deployment = api.createDeployment(
+            repositoryOwner,
+            repositoryName,
+            DeploymentRequest(hash).apply {
+              this.auto_merge = false
+              this.environment = environment
+              this.payload = DeploymentPayload(buildId.toString()).toJson()
+              this.description = "$message (${if (prMergeBranch) "$context - merge" else context})"
+            })
+          logger.info("Created GitHub deployment ${deployment?.id} for hash: $hash, buildId: $buildId, status: $status")
+          deployment?.id?.let { deploymentIndex?.put(buildId, it, hash, environment) }
+          return deployment
+        } catch (e: IOException) {
+          problems.reportProblem(String.format("Deployments Status Publisher error. GitHub status: '%s'", status.toString()), publisher, buildDescription, publisher.serverUrl, e, logger)
+          return null
         }
       }
 
@@ -264,49 +347,119 @@ class DeploymentsStatusUpdater(
             "buildId: " + build.buildId + ", " +
             "status: " + status
         )
-        executor.submit(ExceptionUtil.catchAll("set deployment status on github", object : Runnable {
-
-          override fun run() {
-            val hash = resolveCommitHash(version, build, status)
-            val lock: Lock = publisher.getLocks()[publisher.getBuildType().externalId]
-            val problems: DeploymentsStatusPublisherProblems = publisher.getProblems()
-            val prMergeBranch = hash != version.version
-            lock.lock()
-            val url: String
-            try {
-              try {
-                var deploymentId: Long? = findDeploymentId(hash, build)
-                if (deploymentId == null) {
-                  problems.reportProblem(
-                    "Deployments Status Publisher error. DeploymentId not found for hash: $hash, environment: $environment, build: ${LogUtil.describe(build)}",
-                    publisher,
-                    LogUtil.describe(build),
-                    publisher.serverUrl,
-                    null,
-                    logger
-                  )
-                  return
-                }
-                url = getViewResultsUrl(build)
-                api.updateDeploymentStatus(
-                  repositoryOwner,
-                  repositoryName,
-                  deploymentId,
-                  DeploymentStatusRequest(status).apply {
-                    this.environment = environment
-                    this.description = "$message (${if (prMergeBranch) "$context - merge" else context})"
-                    this.log_url = url
-                  },
-                )
-                logger.info("Updated GitHub deployment status for hash: $hash, buildId: ${build.buildId}, status: $status")
-              } catch (e: IOException) {
-                problems.reportProblem(String.format("Deployments Status Publisher error. GitHub status: '%s'", status.toString()), publisher, LogUtil.describe(build), publisher.serverUrl, e, logger)
-              }
-            } finally {
-              lock.unlock()
-            }
+        val update = DeploymentStatusUpdate(
+          build.buildId,
+          publisher.getBuildFeatureId(),
+          root.id,
+          version.version,
+          version.vcsBranch,
+          status,
+          message,
+          environment,
+          System.currentTimeMillis()
+        )
+        if (outbox != null && outbox.enabled) {
+          try {
+            outbox.append(update)
+            return
+          } catch (e: IOException) {
+            logger.warn("Failed to persist GitHub deployment status update for buildId: ${build.buildId}, sending it directly: ${e.message}")
+          }
+        }
+        directUpdates[update.deploymentKey] = update
+        sendDirectly(update, version, build)
+      }
+
+      /**
+       * Sends an [update] without the outbox. Intermediate states which are deferred to keep the rate limit budget
+       * for final ones are scheduled again for the reset of the rate limit, unless a later update supersedes them.
+       */
+      private fun sendDirectly(update: DeploymentStatusUpdate, version: RepositoryVersion, build: SBuild, deferred: Boolean = false) {
+        val delivery = ExceptionUtil.catchAll("set deployment status on github", Runnable {
+          val latest = directUpdates[update.deploymentKey]
+          // any later update supersedes a deferred intermediate state, even when it has already been sent
+          val superseded = if (deferred) latest !== update else latest != null && latest !== update && latest.supersedes(update)
+          if (superseded) {
+            logger.debug("Skipping superseded GitHub deployment status update for buildId: ${build.buildId}, status: ${update.status}")
+            return@Runnable
+          }
+          val deferredUntil = deferredUntil(update.status)
+          if (deferredUntil != null) {
+            val delayMillis = (deferredUntil - System.currentTimeMillis()).coerceIn(MIN_DEFERRAL_MILLIS, MAX_DEFERRAL_MILLIS)
+            logger.info("Deferring GitHub deployment status update for buildId: ${build.buildId}, status: ${update.status} by ${delayMillis}ms to keep the rate limit budget")
+            scheduler.schedule(Runnable { sendDirectly(update, version, build, true) }, delayMillis, TimeUnit.MILLISECONDS)
+            return@Runnable
+          }
+          try {
+            deliverDeploymentStatus(version, build, update.message, update.status, update.environment)
+          } finally {
+            directUpdates.remove(update.deploymentKey, update)
           }
-        }))
+        })
+        if (publishingExecutor != null) {
+          publishingExecutor.execute(update, delivery)
+        } else {
+          serialExecutor.execute(update.deploymentKey, delivery)
+        }
+      }
+
+      /**
+       * @return when to send an intermediate [status] while the rate limit budget is low, so that it's kept for final states,
+       * or null when the [status] can be sent now
+       */
+      private fun deferredUntil(status: DeploymentStatusState): Long? {
+        if (status.terminal) {
+          return null
+        }
+        val rateLimit = api.getRateLimit(repositoryOwner, repositoryName) ?: return null
+        return if (rateLimit.isBelow(TeamCityProperties.getInteger(LOW_RATE_LIMIT_BUDGET_PROPERTY_NAME, 200))) rateLimit.resetAtMillis else null
+      }
+
+      override fun deliverDeploymentStatus(
+        version: RepositoryVersion,
+        build: SBuild,
+        message: String,
+        status: DeploymentStatusState,
+        environment: String
+      ): Boolean {
+        if (deferredUntil(status) != null) {
+          // keep the remaining budget for the final status, the outbox retries this one unless the final status supersedes it
+          logger.info("Deferring GitHub deployment status update for buildId: ${build.buildId}, status: $status to keep the rate limit budget")
+          return false
+        }
+        val hash = resolveCommitHash(version, build.buildId, status)
+        val problems: DeploymentsStatusPublisherProblems = publisher.getProblems()
+        val prMergeBranch = hash != version.version
+        try {
+          val deploymentId: Long? = findDeploymentId(version, hash, build, environment)
+          if (deploymentId == null) {
+            problems.reportProblem(
+              "Deployments Status Publisher error. DeploymentId not found for hash: $hash, environment: $environment, build: ${LogUtil.describe(build)}",
+              publisher,
+              LogUtil.describe(build),
+              publisher.serverUrl,
+              null,
+              logger
+            )
+            return true
+          }
+          val url = getViewResultsUrl(build)
+          api.updateDeploymentStatus(
+            repositoryOwner,
+            repositoryName,
+            deploymentId,
+            DeploymentStatusRequest(status).apply {
+              this.environment = environment
+              this.description = "$message (${if (prMergeBranch) "$context - merge" else context})"
+              this.log_url = url
+            },
+          )
+          logger.info("Updated GitHub deployment status for hash: $hash, buildId: ${build.buildId}, status: $status")
+          return true
+        } catch (e: IOException) {
+          problems.reportProblem(String.format("Deployments Status Publisher error. GitHub status: '%s'", status.toString()), publisher, LogUtil.describe(build), publisher.serverUrl, e, logger)
+          return false
+        }
       }
     }
   }
@@ -315,8 +468,25 @@ class DeploymentsStatusUpdater(
 
     fun shouldReportOnStart(): Boolean
     fun shouldReportOnFinish(): Boolean
-    fun runCreateDeployment(hash: RepositoryVersion, build: SBuild, environment: String): Deployment?
+
+    /**
+     * Creates the deployment in the background, e.g. while the build is still queued.
+     * The build id of a queued build is the id of its promotion.
+     */
+    fun startCreateDeployment(version: RepositoryVersion, buildId: Long, buildDescription: String, environment: String): CompletableFuture<Deployment?>
+
+    /**
+     * Marks a deployment of a build which won't run anymore as failed.
+     */
+    fun cancelDeployment(deploymentId: Long, environment: String)
     fun scheduleChangeStarted(hash: RepositoryVersion, build: SBuild, environment: String)
     fun scheduleChangeCompleted(hash: RepositoryVersion, build: SBuild, environment: String)
+
+    /**
+     * Sends a deployment status update right away.
+     * @return false when GitHub couldn't be reached, or an intermediate state has been deferred while the rate limit budget is low,
+     * so that the update should be retried later
+     */
+    fun deliverDeploymentStatus(version: RepositoryVersion, build: SBuild, message: String, status: DeploymentStatusState, environment: String): Boolean
   }
 }
@@ -0,0 +1,102 @@
+package de.gesellix.teamcity.deployments.server.github
+
+import com.squareup.moshi.JsonWriter
+import de.gesellix.github.client.GitHubClientRegistry
+import de.gesellix.teamcity.deployments.server.outbox.DeploymentStatusOutbox
+import jetbrains.buildServer.controllers.BaseController
+import jetbrains.buildServer.serverSide.auth.Permission
+import jetbrains.buildServer.web.openapi.PluginDescriptor
+import jetbrains.buildServer.web.openapi.WebControllerManager
+import jetbrains.buildServer.web.util.SessionUser
+import okio.buffer
+import okio.sink
+import org.springframework.web.servlet.ModelAndView
+import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
+
+/**
+ * Serves the HTTP call metrics of all GitHub clients as JSON to server administrators,
+ * e.g. to verify how often connections are reused and where time is spent,
+ * together with the backlog of deployment status updates.
+ */
+class GitHubClientMetricsController(
+  controllerManager: WebControllerManager,
+  descriptor: PluginDescriptor,
+  private val clientRegistry: GitHubClientRegistry,
+  private val publishingExecutor: PublishingExecutor,
+  private val outbox: DeploymentStatusOutbox
+) : BaseController() {
+
+  private val resourceUrl: String = descriptor.getPluginResourcesPath("githubClientMetrics.html")
+
+  val url: String
+    get() {
+      return resourceUrl
+    }
+
+  init {
+    controllerManager.registerController(resourceUrl, this)
+  }
+
+  override fun doHandle(request: HttpServletRequest, response: HttpServletResponse): ModelAndView? {
+    val user = SessionUser.getUser(request)
+    if (user == null || !user.isPermissionGrantedGlobally(Permission.VIEW_SERVER_SETTINGS)) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN)
+      return null
+    }
+    if (request.getParameter("reset") == "true" && user.isPermissionGrantedGlobally(Permission.CHANGE_SERVER_SETTINGS)) {
+      clientRegistry.metrics.reset()
+    }
+
+    response.contentType = "application/json"
+    response.characterEncoding = "UTF-8"
+    JsonWriter.of(response.outputStream.sink().buffer()).use { writer ->
+      writer.indent = "  "
+      writer.beginObject()
+      writer.name("endpoints").beginObject()
+      clientRegistry.metrics.snapshot().forEach { (endpoint, metrics) ->
+        writer.name(endpoint).beginObject()
+        writer.name("calls").value(metrics.calls)
+        writer.name("failures").value(metrics.failures)
+        writer.name("reusedConnections").value(metrics.reusedConnections)
+        writer.name("newConnections").value(metrics.newConnections)
+        writer.name("connectionReuseRatio").value(metrics.connectionReuseRatio)
+        writer.name("http2Calls").value(metrics.http2Calls)
+        writer.name("bytesSent").value(metrics.bytesSent)
+        writer.name("bytesReceived").value(metrics.bytesReceived)
+        writer.name("phases").beginObject()
+        metrics.phases.forEach { (phase, timing) ->
+          writer.name(phase.name.toLowerCase()).beginObject()
+          writer.name("count").value(timing.count)
+          writer.name("averageMicros").value(timing.averageMicros)
+          writer.name("maxMicros").value(timing.maxMicros)
+          writer.endObject()
+        }
+        writer.endObject()
+        writer.endObject()
+      }
+      writer.endObject()
+      writer.name("rateLimits").beginObject()
+      clientRegistry.rateLimitTracker.snapshot().forEach { (key, rateLimit) ->
+        // keys contain a token fingerprint only, never the token itself
+        writer.name(key).beginObject()
+        writer.name("limit").value(rateLimit.limit)
+        writer.name("remaining").value(rateLimit.remaining)
+        writer.name("reset").value(rateLimit.resetEpochSeconds)
+        writer.endObject()
+      }
+      writer.endObject()
+      writer.name("publishing").beginObject()
+      writer.name("queued").value(publishingExecutor.queueSize)
+      writer.name("active").value(publishingExecutor.activeCount)
+      writer.name("overflows").value(publishingExecutor.overflowCount)
+      writer.name("dropped").value(publishingExecutor.droppedCount)
+      writer.name("coalesced").value(publishingExecutor.coalescedCount)
+      writer.name("outboxCoalesced").value(outbox.coalescedCount)
+      writer.name("outboxPending").value(outbox.pendingCount())
+      writer.endObject()
+      writer.endObject()
+    }
+    return null
+  }
+}
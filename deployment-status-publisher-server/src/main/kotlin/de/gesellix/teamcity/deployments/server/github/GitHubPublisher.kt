@@ -12,11 +12,17 @@ import de.gesellix.teamcity.deployments.server.PublisherException
 import de.gesellix.teamcity.deployments.server.TARGET_ENVIRONMENT_DEFAULT
 import de.gesellix.teamcity.deployments.server.TARGET_ENVIRONMENT_PARAM
 import de.gesellix.teamcity.deployments.server.logger
+import de.gesellix.teamcity.deployments.server.outbox.DeploymentStatusUpdate
+import jetbrains.buildServer.parameters.ReferencesResolverUtil
 import jetbrains.buildServer.serverSide.BuildRevision
 import jetbrains.buildServer.serverSide.SBuild
 import jetbrains.buildServer.serverSide.SBuildType
 import jetbrains.buildServer.serverSide.SFinishedBuild
+import jetbrains.buildServer.serverSide.SQueuedBuild
 import jetbrains.buildServer.serverSide.SRunningBuild
+import jetbrains.buildServer.serverSide.TeamCityProperties
+import jetbrains.buildServer.serverSide.impl.LogUtil
+import jetbrains.buildServer.users.User
 import java.util.*
 
 class GitHubPublisher(
@@ -37,6 +43,34 @@ class GitHubPublisher(
   override val id: String
     get() = GITHUB_PUBLISHER_ID
 
+  /**
+   * Starts creating the deployment while the build is queued, so that the build start doesn't wait for GitHub.
+   * Only builds whose revision is already pinned qualify, others might start with a different commit.
+   */
+  @Throws(PublisherException::class)
+  override fun buildQueued(build: SQueuedBuild, revision: BuildRevision): Boolean {
+    if (!isCreatingDeploymentEnabled() || revision.root.vcsName != "jetbrains.git") return false
+    val promotion = build.buildPromotion
+    if (promotion.revisions.none { it.root.id == revision.root.id && it.revision == revision.revision }) return false
+    val customContext = promotion.parameters[GITHUB_CUSTOM_CONTEXT_BUILD_PARAM]
+    // references can only be resolved for the running build
+    if (customContext != null && ReferencesResolverUtil.containsReference(customContext)) return false
+    val h = updater.getUpdateHandler(revision.root, getParams(build.buildType, customContext), this)
+    if (!h.shouldReportOnStart()) return false
+    val environment = params[TARGET_ENVIRONMENT_PARAM] ?: TARGET_ENVIRONMENT_DEFAULT
+    h.startCreateDeployment(revision.repositoryVersion, promotion.id, LogUtil.describe(build), environment)
+    return false
+  }
+
+  @Throws(PublisherException::class)
+  override fun buildRemovedFromQueue(build: SQueuedBuild, revision: BuildRevision, user: User?, comment: String?): Boolean {
+    val creation = updater.deploymentCreations.remove(build.buildPromotion.id, getBuildFeatureId(), revision.root.id) ?: return false
+    val h = updater.getUpdateHandler(revision.root, getParams(build.buildType, null), this)
+    val environment = params[TARGET_ENVIRONMENT_PARAM] ?: TARGET_ENVIRONMENT_DEFAULT
+    creation.thenAccept { deployment -> deployment?.id?.let { h.cancelDeployment(it, environment) } }
+    return true
+  }
+
   @Throws(PublisherException::class)
   override fun buildStarting(build: SRunningBuild, revision: BuildRevision): String? {
     return createDeployment(build, revision)?.id?.toString()
@@ -78,7 +112,15 @@ class GitHubPublisher(
       return null
     }
     val environment = params[TARGET_ENVIRONMENT_PARAM] ?: TARGET_ENVIRONMENT_DEFAULT
-    return h.runCreateDeployment(revision.repositoryVersion, build, environment)
+    // an early creation which has failed isn't found, so that the deployment is created again
+    val creation = updater.deploymentCreations.find(build.buildId, getBuildFeatureId(), revision.root.id, revision.repositoryVersion.version)
+      ?: h.startCreateDeployment(revision.repositoryVersion, build.buildId, LogUtil.describe(build), environment)
+    // status updates wait for a creation which is still in flight, or look the deployment up on GitHub
+    val deployment = updater.deploymentCreations.await(creation, TeamCityProperties.getInteger(DEPLOYMENT_CREATION_WAIT_MILLIS_PROPERTY_NAME, 5000).toLong())
+    if (deployment == null && !creation.isDone) {
+      logger.info("GitHub deployment for ${LogUtil.describe(build)} is still being created, continuing the build start without its id")
+    }
+    return deployment
   }
 
   @Throws(PublisherException::class)
@@ -98,16 +140,27 @@ class GitHubPublisher(
     }
   }
 
+  /**
+   * Sends an update drained from the [de.gesellix.teamcity.deployments.server.outbox.DeploymentStatusOutbox].
+   * @return false when GitHub couldn't be reached and the update should be retried
+   */
+  @Throws(PublisherException::class)
+  fun deliverDeploymentStatus(build: SBuild, revision: BuildRevision, update: DeploymentStatusUpdate): Boolean {
+    val h = updater.getUpdateHandler(revision.root, getParams(build), this)
+    return h.deliverDeploymentStatus(revision.repositoryVersion, build, update.message, update.status, update.environment)
+  }
+
   private fun getParams(build: SBuild): Map<String, String> {
-    var context = getCustomContextFromParameter(build)
-    if (context == null) context = getDefaultContext(build)
+    return getParams(build.buildType, getCustomContextFromParameter(build))
+  }
+
+  private fun getParams(buildType: SBuildType?, customContext: String?): Map<String, String> {
     val result: MutableMap<String, String> = HashMap(params)
-    result[GITHUB_CONTEXT] = context
+    result[GITHUB_CONTEXT] = customContext ?: getDefaultContext(buildType)
     return result
   }
 
-  private fun getDefaultContext(build: SBuild): String {
-    val buildType = build.buildType
+  private fun getDefaultContext(buildType: SBuildType?): String {
     return if (buildType != null) {
       "${buildType.name} (${buildType.project.name})"
     } else {
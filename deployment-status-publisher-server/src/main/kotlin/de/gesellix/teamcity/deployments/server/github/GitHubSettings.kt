@@ -3,6 +3,9 @@ package de.gesellix.teamcity.deployments.server.github
 import de.gesellix.teamcity.deployments.server.DeploymentsStatusPublisher
 import de.gesellix.teamcity.deployments.server.DeploymentsStatusPublisherProblems
 import de.gesellix.teamcity.deployments.server.DeploymentsStatusPublisherSettingsBase
+import de.gesellix.teamcity.deployments.server.GITHUB_APP_ID
+import de.gesellix.teamcity.deployments.server.GITHUB_APP_INSTALLATION_ID
+import de.gesellix.teamcity.deployments.server.GITHUB_APP_PRIVATE_KEY
 import de.gesellix.teamcity.deployments.server.GITHUB_AUTH_TYPE
 import de.gesellix.teamcity.deployments.server.GITHUB_OAUTH_PROVIDER_ID
 import de.gesellix.teamcity.deployments.server.GITHUB_OAUTH_USER
@@ -19,6 +22,7 @@ import jetbrains.buildServer.serverSide.InvalidProperty
 import jetbrains.buildServer.serverSide.PropertiesProcessor
 import jetbrains.buildServer.serverSide.SBuildType
 import jetbrains.buildServer.serverSide.SProject
+import jetbrains.buildServer.serverSide.TeamCityProperties
 import jetbrains.buildServer.serverSide.auth.SecurityContext
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionDescriptor
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager
@@ -158,6 +162,15 @@ class GitHubSettings(
           }
           checkNotEmpty(p, GITHUB_TOKEN, "Personal Access Token must be specified", result)
         }
+        if (authenticationType === GitHubApiAuthenticationType.APP_AUTH) {
+          checkNotEmpty(p, GITHUB_APP_ID, "GitHub App ID must be specified", result)
+          checkNotEmpty(p, GITHUB_APP_PRIVATE_KEY, "GitHub App private key must be specified", result)
+          val installationId = p[GITHUB_APP_INSTALLATION_ID]
+          if (installationId != null && !StringUtil.isEmptyOrSpaces(installationId)
+            && !ReferencesResolverUtil.mayContainReference(installationId) && installationId.trim().toLongOrNull() == null) {
+            result.add(InvalidProperty(GITHUB_APP_INSTALLATION_ID, "GitHub App installation ID must be a number"))
+          }
+        }
         if (!checkNotEmpty(p, constants.getServerKey(), "GitHub API URL must be specified", result)) {
           val url = "" + p[constants.getServerKey()]
           if (!ReferencesResolverUtil.mayContainReference(url) && !(url.startsWith("http://") || url.startsWith("https://"))) {
@@ -178,6 +191,10 @@ class GitHubSettings(
   }
 
   override fun isEventSupported(event: DeploymentsStatusPublisher.Event): Boolean {
+    if (event == DeploymentsStatusPublisher.Event.QUEUED || event == DeploymentsStatusPublisher.Event.REMOVED_FROM_QUEUE) {
+      // queue events only create deployments ahead of the build start, see GitHubPublisher.buildQueued
+      return TeamCityProperties.getBoolean(EARLY_DEPLOYMENT_CREATION_PROPERTY_NAME)
+    }
     return supportedEvents.contains(event)
   }
 }
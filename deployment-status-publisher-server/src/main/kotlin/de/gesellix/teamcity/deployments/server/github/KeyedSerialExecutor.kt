@@ -0,0 +1,178 @@
+package de.gesellix.teamcity.deployments.server.github
+
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Runs tasks with the same key one after another, in the order they were submitted,
+ * while tasks with different keys run in parallel on the [executor].
+ *
+ * The hand-off is lock-free: every key has a queue and a counter of its unfinished tasks.
+ * Whoever moves the counter away from zero submits the queue to the [executor],
+ * which then runs the queued tasks until the counter drops back to zero. No thread blocks while waiting for its turn.
+ *
+ * Queues handed to the [executor] are [Ranked] by their most urgent task, so that a priority queue
+ * in the [executor] can pick the most urgent key first. When a more urgent task joins a queue which is
+ * still [waiting] for a thread, the queue is taken out of [waiting] and put back with the new rank,
+ * a priority queue doesn't notice ranks changing while it holds an element.
+ * Ranks only ever decrease while a queue waits, so a queue never falls behind the keys which came after it.
+ */
+class KeyedSerialExecutor<K : Any> @JvmOverloads constructor(
+  private val executor: Executor,
+  private val waiting: BlockingQueue<Runnable>? = null
+) {
+
+  private val queues = ConcurrentHashMap<K, SerialQueue>()
+
+  val activeKeys: Int
+    get() = queues.size
+
+  /**
+   * @throws RejectedExecutionException when the [executor] doesn't accept tasks anymore, the [task] won't run then
+   */
+  fun execute(key: K, task: Runnable) {
+    while (true) {
+      val queue = queues.computeIfAbsent(key) { SerialQueue(it) }
+      if (queue.offer(task)) {
+        return
+      }
+      // the queue has just been retired, the next lookup creates a new one
+      Thread.yield()
+    }
+  }
+
+  /**
+   * Removes queued tasks of [key] which haven't started yet and match the [predicate].
+   * @return the removed tasks
+   */
+  fun removeQueued(key: K, predicate: (Runnable) -> Boolean): List<Runnable> {
+    return queues[key]?.removeQueued(predicate).orEmpty()
+  }
+
+  /**
+   * Removes all queued tasks which haven't started yet, e.g. to hand them over elsewhere on shutdown.
+   */
+  fun drainQueued(): List<Runnable> {
+    return queues.values.flatMap { it.removeQueued { true } }
+  }
+
+  /**
+   * Tasks with a lower rank should run first.
+   */
+  interface Ranked {
+
+    val rank: Long
+  }
+
+  private inner class SerialQueue(private val key: K) : Runnable, Ranked {
+
+    @Volatile
+    override var rank = 0L
+      private set
+
+    private val tasks = ConcurrentLinkedQueue<Entry>()
+
+    // unfinished tasks, -1 once the queue has been retired
+    private val pending = AtomicInteger()
+
+    fun offer(task: Runnable): Boolean {
+      while (true) {
+        val count = pending.get()
+        if (count < 0) {
+          return false
+        }
+        if (pending.compareAndSet(count, count + 1)) {
+          val entry = Entry(task)
+          tasks.add(entry)
+          if (count == 0) {
+            rank = rankOf(task)
+            try {
+              executor.execute(this)
+            } catch (e: RejectedExecutionException) {
+              entry.claim()
+              retire()
+              throw e
+            }
+          } else {
+            rerank(rankOf(task))
+          }
+          return true
+        }
+      }
+    }
+
+    private fun rankOf(task: Runnable): Long {
+      return (task as? Ranked)?.rank ?: System.currentTimeMillis()
+    }
+
+    /**
+     * Moves the queue ahead when [taskRank] is more urgent than its current rank.
+     * A queue which has already been taken by a thread isn't in [waiting] anymore and keeps its rank.
+     */
+    private fun rerank(taskRank: Long) {
+      val waiting = waiting ?: return
+      if (taskRank >= rank) {
+        return
+      }
+      synchronized(this) {
+        if (taskRank < rank && waiting.remove(this)) {
+          rank = taskRank
+          waiting.add(this)
+        }
+      }
+    }
+
+    /**
+     * Retires a queue which the [executor] has rejected, so that the next task of its key gets a new queue,
+     * which is either accepted or rejected again, instead of waiting behind a queue which never runs.
+     * Tasks offered concurrently meanwhile won't run either, the [executor] is shutting down.
+     */
+    private fun retire() {
+      pending.set(-1)
+      queues.remove(key, this)
+    }
+
+    fun removeQueued(predicate: (Runnable) -> Boolean): List<Runnable> {
+      // claimed entries stay in the queue and are skipped, so that the counter stays consistent
+      return tasks.filter { predicate(it.task) && it.claim() }.map { it.task }
+    }
+
+    override fun run() {
+      while (true) {
+        val entry = tasks.poll()
+        if (entry == null) {
+          // a submitter has counted its task, but not yet added it
+          Thread.yield()
+          continue
+        }
+        try {
+          if (entry.claim()) {
+            entry.task.run()
+          }
+        } finally {
+          if (pending.decrementAndGet() == 0) {
+            // a concurrent offer would have moved the counter away from zero and submitted the queue again
+            if (pending.compareAndSet(0, -1)) {
+              queues.remove(key, this)
+            }
+            return
+          }
+        }
+      }
+    }
+  }
+
+  private class Entry(val task: Runnable) {
+
+    private val claimed = AtomicBoolean()
+
+    fun claim(): Boolean {
+      return claimed.compareAndSet(false, true)
+    }
+  }
+}
@@ -0,0 +1,230 @@
+package de.gesellix.teamcity.deployments.server.github
+
+import de.gesellix.teamcity.deployments.server.logger
+import de.gesellix.teamcity.deployments.server.outbox.DeploymentStatusOutbox
+import de.gesellix.teamcity.deployments.server.outbox.DeploymentStatusUpdate
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.PriorityBlockingQueue
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+enum class OverflowPolicy {
+
+  /**
+   * Appends the update to the [DeploymentStatusOutbox], or runs it on the caller when there's no outbox.
+   */
+  SPILL,
+
+  /**
+   * Replaces queued updates of the same deployment which the update [supersedes][DeploymentStatusUpdate.supersedes],
+   * or drops the update unless it is a final one. Queued final states are never replaced by intermediate ones.
+   */
+  DROP_SUPERSEDED,
+
+  /**
+   * Sends the update on the calling thread, which slows down the event processing instead of losing updates.
+   */
+  CALLER_RUNS;
+
+  companion object {
+
+    fun parse(value: String?): OverflowPolicy {
+      return values().find { it.name.replace("_", "").equals(value?.replace("_", "")?.replace("-", ""), ignoreCase = true) } ?: SPILL
+    }
+  }
+}
+
+/**
+ * Plugin-owned pool sending deployment status updates, so that a slow or unreachable GitHub
+ * doesn't compete with other server work on TeamCity's shared executors, and vice versa.
+ *
+ * Updates of the same deployment are sent one after another in the order they were scheduled,
+ * updates of different deployments are sent in parallel, see [KeyedSerialExecutor].
+ * Queued updates which are [superseded][DeploymentStatusUpdate.supersedes] by a new one are not sent at all.
+ * Deployments waiting for a final state are served before those waiting for an intermediate one,
+ * unless the intermediate one has been waiting for more than [intermediateStateDelayMillis], see [DeploymentStatusUpdate.rank].
+ * The number of queued updates is bounded, updates which don't fit are handled by the [overflowPolicy].
+ * On [shutdown], queued updates are sent for up to [shutdownTimeoutMillis], what's left is spilled to the [outbox].
+ */
+open class PublishingExecutor(
+  threads: Int = 4,
+  private val queueCapacity: Int = 1000,
+  private val overflowPolicy: OverflowPolicy = OverflowPolicy.SPILL,
+  private val outbox: DeploymentStatusOutbox? = null,
+  private val shutdownTimeoutMillis: Long = TimeUnit.SECONDS.toMillis(30),
+  private val intermediateStateDelayMillis: Long = TimeUnit.SECONDS.toMillis(30)
+) {
+
+  private val logger by logger(PublishingExecutor::class.java.name)
+
+  private val threadCount = AtomicInteger()
+
+  // holds at most one task per deployment, the updates themselves wait in the serial queues
+  private val executor = ThreadPoolExecutor(
+    threads,
+    threads,
+    0,
+    TimeUnit.MILLISECONDS,
+    PriorityBlockingQueue(64, compareBy<Runnable> { (it as? KeyedSerialExecutor.Ranked)?.rank ?: Long.MAX_VALUE })
+  ) { runnable ->
+    Thread(runnable, "deployments-status-publisher ${threadCount.incrementAndGet()}").apply { isDaemon = true }
+  }
+  private val serialExecutor = KeyedSerialExecutor<String>(executor, executor.queue)
+  private val queued = AtomicInteger()
+
+  private val overflows = AtomicLong()
+  private val dropped = AtomicLong()
+  private val coalesced = AtomicLong()
+
+  val queueSize: Int
+    get() = queued.get()
+
+  val activeCount: Int
+    get() = executor.activeCount
+
+  val overflowCount: Long
+    get() = overflows.get()
+
+  val droppedCount: Long
+    get() = dropped.get()
+
+  val coalescedCount: Long
+    get() = coalesced.get()
+
+  fun execute(update: DeploymentStatusUpdate, delivery: Runnable) {
+    val task = UpdateTask(update, delivery)
+    val superseded = serialExecutor.removeQueued(update.deploymentKey) { it is UpdateTask && update.supersedes(it.update) }
+    if (superseded.isNotEmpty()) {
+      queued.addAndGet(-superseded.size)
+      coalesced.addAndGet(superseded.size.toLong())
+      logger.debug("Coalesced ${superseded.size} queued deployment status updates for buildId: ${update.buildId} into status: ${update.status}")
+    }
+    if (queued.incrementAndGet() > queueCapacity) {
+      queued.decrementAndGet()
+      overflow(task)
+      return
+    }
+    enqueue(task)
+  }
+
+  private fun enqueue(task: UpdateTask) {
+    try {
+      serialExecutor.execute(task.update.deploymentKey, task)
+    } catch (e: RejectedExecutionException) {
+      queued.decrementAndGet()
+      overflow(task)
+    }
+  }
+
+  /**
+   * Runs [task] ahead of all queued updates, e.g. a deployment creation which a build start is waiting for.
+   */
+  fun <T> supplyUrgently(task: () -> T): CompletableFuture<T> {
+    val future = CompletableFuture<T>()
+    val urgent = object : Runnable, KeyedSerialExecutor.Ranked {
+
+      override val rank = Long.MIN_VALUE
+
+      override fun run() {
+        try {
+          future.complete(task())
+        } catch (e: Throwable) {
+          future.completeExceptionally(e)
+        }
+      }
+    }
+    try {
+      executor.execute(urgent)
+    } catch (e: RejectedExecutionException) {
+      future.completeExceptionally(e)
+    }
+    return future
+  }
+
+  /**
+   * Waits for queued updates to be sent, and spills those which couldn't be sent in time.
+   */
+  fun shutdown() {
+    executor.shutdown()
+    try {
+      if (executor.awaitTermination(shutdownTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        return
+      }
+    } catch (e: InterruptedException) {
+      Thread.currentThread().interrupt()
+    }
+    executor.shutdownNow()
+    val remaining = serialExecutor.drainQueued().filterIsInstance<UpdateTask>()
+    queued.addAndGet(-remaining.size)
+    val spilled = remaining.count { spill(it.update) }
+    if (spilled < remaining.size) {
+      logger.warn("Dropped ${remaining.size - spilled} GitHub deployment status updates on shutdown")
+    }
+  }
+
+  private fun overflow(task: UpdateTask) {
+    overflows.incrementAndGet()
+    val update = task.update
+    when (overflowPolicy) {
+      OverflowPolicy.SPILL -> {
+        if (spill(update)) {
+          logger.debug("Publishing queue is full, spilled deployment status update for buildId: ${update.buildId} to the outbox")
+          return
+        }
+      }
+      OverflowPolicy.DROP_SUPERSEDED -> {
+        val superseded = if (executor.isShutdown) emptyList() else serialExecutor.removeQueued(update.deploymentKey) { it is UpdateTask && update.supersedes(it.update) }
+        if (superseded.isNotEmpty()) {
+          // the new update takes the place of the superseded ones
+          queued.addAndGet(1 - superseded.size)
+          dropped.addAndGet(superseded.size.toLong())
+          logger.debug("Publishing queue is full, replaced ${superseded.size} queued deployment status updates for buildId: ${update.buildId}")
+          enqueue(task)
+          return
+        }
+        if (!update.status.terminal) {
+          dropped.incrementAndGet()
+          logger.warn("Publishing queue is full, dropped deployment status update for buildId: ${update.buildId}, status: ${update.status}")
+          return
+        }
+      }
+      OverflowPolicy.CALLER_RUNS -> {
+      }
+    }
+    logger.debug("Publishing queue is full, sending deployment status update for buildId: ${update.buildId} on the calling thread")
+    delivery(task)
+  }
+
+  private fun spill(update: DeploymentStatusUpdate): Boolean {
+    if (outbox == null || !outbox.enabled) {
+      return false
+    }
+    return try {
+      outbox.append(update)
+      true
+    } catch (e: Exception) {
+      logger.warn("Failed to spill deployment status update for buildId: ${update.buildId} to the outbox: ${e.message}")
+      false
+    }
+  }
+
+  private fun delivery(task: UpdateTask) {
+    task.delivery.run()
+  }
+
+  private inner class UpdateTask(val update: DeploymentStatusUpdate, val delivery: Runnable) : Runnable, KeyedSerialExecutor.Ranked {
+
+    override val rank = update.rank(intermediateStateDelayMillis)
+
+    override fun run() {
+      try {
+        delivery.run()
+      } finally {
+        queued.decrementAndGet()
+      }
+    }
+  }
+}
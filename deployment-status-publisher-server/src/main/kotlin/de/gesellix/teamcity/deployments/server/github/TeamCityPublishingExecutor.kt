@@ -0,0 +1,23 @@
+package de.gesellix.teamcity.deployments.server.github
+
+import de.gesellix.teamcity.deployments.server.outbox.DeploymentStatusOutbox
+import jetbrains.buildServer.serverSide.TeamCityProperties
+
+const val EXECUTOR_THREADS_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.executor.threads"
+const val EXECUTOR_QUEUE_SIZE_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.executor.queueSize"
+const val EXECUTOR_OVERFLOW_POLICY_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.executor.overflowPolicy"
+const val EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.executor.shutdownTimeoutSeconds"
+const val INTERMEDIATE_STATE_DELAY_SECONDS_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.intermediateStateDelaySeconds"
+
+/**
+ * [PublishingExecutor] configured by TeamCity internal properties.
+ * The overflow policy is one of `spill` (default), `drop-superseded` or `caller-runs`.
+ */
+class TeamCityPublishingExecutor(outbox: DeploymentStatusOutbox) : PublishingExecutor(
+  threads = TeamCityProperties.getInteger(EXECUTOR_THREADS_PROPERTY_NAME, 4),
+  queueCapacity = TeamCityProperties.getInteger(EXECUTOR_QUEUE_SIZE_PROPERTY_NAME, 1000),
+  overflowPolicy = OverflowPolicy.parse(TeamCityProperties.getProperty(EXECUTOR_OVERFLOW_POLICY_PROPERTY_NAME, "spill")),
+  outbox = outbox,
+  shutdownTimeoutMillis = TeamCityProperties.getInteger(EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS_PROPERTY_NAME, 30) * 1000L,
+  intermediateStateDelayMillis = TeamCityProperties.getInteger(INTERMEDIATE_STATE_DELAY_SECONDS_PROPERTY_NAME, 30) * 1000L
+)
@@ -1,6 +1,8 @@
 package de.gesellix.teamcity.deployments.server.github.api
 
+import de.gesellix.github.client.RateLimit
 import de.gesellix.github.client.data.Deployment
+import de.gesellix.github.client.data.DeploymentRef
 import de.gesellix.github.client.data.DeploymentRequest
 import de.gesellix.github.client.data.DeploymentStatus
 import de.gesellix.github.client.data.DeploymentStatusRequest
@@ -18,6 +20,19 @@ interface GitHubApi {
     filters: Map<String, String>
   ): List<Deployment>?
 
+  /**
+   * looks up a deployment by a key/value pair of its payload, across all pages.
+   * Suspends instead of blocking a thread, so that concurrent lookups don't need a thread each.
+   * @return id of the first matching deployment or null, when none matches
+   */
+  suspend fun findDeploymentIdByPayload(
+    owner: String,
+    repo: String,
+    filters: Map<String, String>,
+    payloadKey: String,
+    payloadValue: String
+  ): Long?
+
   fun createDeployment(
     owner: String,
     repo: String,
@@ -39,6 +54,14 @@ interface GitHubApi {
    */
   fun isPullRequestMergeBranch(branchName: String): Boolean
 
+  /**
+   * rate limit budget of the underlying credentials for the given repository as reported with the latest response
+   * @param repoOwner repository owner name
+   * @param repoName repository name
+   * @return current budget or null, when no request has been made yet
+   */
+  fun getRateLimit(repoOwner: String, repoName: String): RateLimit?
+
   /**
    * this method parses branch name and attempts to detect
    * /refs/pull/X/head revision for given branch
@@ -59,6 +82,17 @@ interface GitHubApi {
     branchName: String
   ): String?
 
+  /**
+   * looks up the latest deployments of several commits with a single GraphQL query
+   * @return deployments keyed by commit sha, unknown commits are missing
+   */
+  @Throws(IOException::class)
+  fun getCommitDeployments(
+    repoOwner: String,
+    repoName: String,
+    shas: Collection<String>
+  ): Map<String, List<DeploymentRef>>
+
   /**
    * return parent commits for given commit
    * @param repoOwner repo owner
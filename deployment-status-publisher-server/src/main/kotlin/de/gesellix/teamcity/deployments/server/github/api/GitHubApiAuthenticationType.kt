@@ -3,7 +3,8 @@ package de.gesellix.teamcity.deployments.server.github.api
 import jetbrains.buildServer.util.StringUtil
 
 enum class GitHubApiAuthenticationType(val value: String) {
-  TOKEN_AUTH("token");
+  TOKEN_AUTH("token"),
+  APP_AUTH("app");
 
   companion object {
 
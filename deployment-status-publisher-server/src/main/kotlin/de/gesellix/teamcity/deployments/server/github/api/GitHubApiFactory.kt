@@ -11,6 +11,27 @@ interface GitHubApiFactory {
     timeout: Timeout = Timeout(10, TimeUnit.SECONDS)
   ): GitHubApi
 
+  /**
+   * Spreads requests over several personal access [tokens], preferring the one with the most remaining rate limit.
+   */
+  fun openGitHubForTokens(
+    url: String,
+    tokens: List<String>,
+    timeout: Timeout = Timeout(10, TimeUnit.SECONDS)
+  ): GitHubApi
+
+  /**
+   * Authenticates as installation of a GitHub App. Without an [installationId]
+   * each repository is routed to the installation on its owner's account.
+   */
+  fun openGitHubForApp(
+    url: String,
+    appId: String,
+    privateKey: String,
+    installationId: Long? = null,
+    timeout: Timeout = Timeout(10, TimeUnit.SECONDS)
+  ): GitHubApi
+
   companion object {
 
     const val DEFAULT_URL = "https://api.github.com"
@@ -1,12 +1,14 @@
 package de.gesellix.teamcity.deployments.server.github.api.impl
 
-import de.gesellix.github.client.GitHubClient
+import de.gesellix.github.client.GitHubClientRegistry
 import de.gesellix.github.client.Timeout
 import de.gesellix.teamcity.deployments.server.github.api.GitHubApi
 import de.gesellix.teamcity.deployments.server.github.api.GitHubApiFactory
 import jetbrains.buildServer.version.ServerVersionHolder
 
-class GitHubApiFactoryImpl() : GitHubApiFactory {
+class GitHubApiFactoryImpl(
+  private val clientRegistry: GitHubClientRegistry = GitHubClientRegistry()
+) : GitHubApiFactory {
 
   override fun openGitHubForToken(
     url: String,
@@ -14,13 +16,53 @@ class GitHubApiFactoryImpl() : GitHubApiFactory {
     timeout: Timeout
   ): GitHubApi {
     return object : GitHubApiImpl(
-      GitHubClient(
+      clientRegistry.getClient(
         baseUrl = url,
         token = token,
-        userAgentString = "TeamCity Server ${ServerVersionHolder.getVersion().displayVersion}",
+        userAgentString = userAgentString(),
         timeout = timeout
       )
     ) {
     }
   }
+
+  override fun openGitHubForTokens(
+    url: String,
+    tokens: List<String>,
+    timeout: Timeout
+  ): GitHubApi {
+    return object : GitHubApiImpl(
+      clientRegistry.getClient(
+        baseUrl = url,
+        tokens = tokens,
+        userAgentString = userAgentString(),
+        timeout = timeout
+      )
+    ) {
+    }
+  }
+
+  override fun openGitHubForApp(
+    url: String,
+    appId: String,
+    privateKey: String,
+    installationId: Long?,
+    timeout: Timeout
+  ): GitHubApi {
+    return object : GitHubApiImpl(
+      clientRegistry.getAppClient(
+        baseUrl = url,
+        appId = appId,
+        privateKey = privateKey,
+        installationId = installationId,
+        userAgentString = userAgentString(),
+        timeout = timeout
+      )
+    ) {
+    }
+  }
+
+  private fun userAgentString(): String {
+    return "TeamCity Server ${ServerVersionHolder.getVersion().displayVersion}"
+  }
 }
@@ -2,8 +2,11 @@ package de.gesellix.teamcity.deployments.server.github.api.impl
 
 import de.gesellix.github.client.GitHubClient
 import de.gesellix.github.client.HttpStatusException
+import de.gesellix.github.client.RateLimit
+import de.gesellix.github.client.data.CommitRef
 import de.gesellix.github.client.data.CommitCommentRequest
 import de.gesellix.github.client.data.Deployment
+import de.gesellix.github.client.data.DeploymentRef
 import de.gesellix.github.client.data.DeploymentRequest
 import de.gesellix.github.client.data.DeploymentStatus
 import de.gesellix.github.client.data.DeploymentStatusRequest
@@ -59,6 +62,20 @@ abstract class GitHubApiImpl(private val gh: GitHubClient) : GitHubApi {
     return gh.updateDeploymentStatus(owner, repo, deploymentId, deploymentStatusRequest)
   }
 
+  override suspend fun findDeploymentIdByPayload(
+    owner: String,
+    repo: String,
+    filters: Map<String, String>,
+    payloadKey: String,
+    payloadValue: String
+  ): Long? {
+    return gh.coroutines.findDeploymentIdByPayload(owner, repo, filters, payloadKey, payloadValue)
+  }
+
+  override fun getRateLimit(repoOwner: String, repoName: String): RateLimit? {
+    return gh.getRateLimit(repoOwner, repoName)
+  }
+
   override fun isPullRequestMergeBranch(branchName: String): Boolean {
     val match = PULL_REQUEST_BRANCH.matcher(branchName)
     return match.matches() && "merge" == match.group(2)
@@ -71,20 +88,30 @@ abstract class GitHubApiImpl(private val gh: GitHubClient) : GitHubApi {
     branchName: String
   ): String? {
     val pullRequestId = getPullRequestId(repoName, branchName) ?: return null
-    val pullRequest = gh.getPullRequest(repoOwner, repoName, pullRequestId)
+    val pullRequest = gh.getPullRequestHead(repoOwner, repoName, pullRequestId)
     return pullRequest?.head?.sha
   }
 
+  @Throws(IOException::class)
+  override fun getCommitDeployments(
+    repoOwner: String,
+    repoName: String,
+    shas: Collection<String>
+  ): Map<String, List<DeploymentRef>> {
+    return gh.graphQL.getCommitDeployments(repoOwner, repoName, shas)
+  }
+
   @Throws(IOException::class, PublisherException::class)
   override fun getCommitParents(repoOwner: String, repoName: String, hash: String): Collection<String> {
-    val commit = gh.getCommit(repoOwner, repoName, hash)
+    val commit = gh.getCommitRef(repoOwner, repoName, hash)
+    return collectParents(commit)
+  }
+
+  private fun collectParents(commit: CommitRef?): Collection<String> {
     if (commit?.parents != null) {
       val parents: MutableSet<String> = HashSet()
       commit.parents?.forEach { p ->
-        val sha: String? = p.sha
-        if (sha != null) {
-          parents.add(sha)
-        }
+        parents.add(p.sha)
       }
       return parents
     }
@@ -0,0 +1,38 @@
+package de.gesellix.teamcity.deployments.server.github.api.impl
+
+import de.gesellix.github.client.GitHubClientRegistry
+import de.gesellix.github.client.RequestHedging
+import jetbrains.buildServer.serverSide.ServerPaths
+import jetbrains.buildServer.serverSide.TeamCityProperties
+import java.io.File
+
+const val DISK_CACHE_ENABLED_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.github.diskCache.enabled"
+const val DISK_CACHE_MAX_SIZE_MB_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.github.diskCache.maxSizeMb"
+const val CIRCUIT_BREAKER_FAILURE_THRESHOLD_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.github.circuitBreaker.failureThreshold"
+const val CIRCUIT_BREAKER_OPEN_SECONDS_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.github.circuitBreaker.openSeconds"
+const val HEDGING_ENABLED_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.github.hedging.enabled"
+const val HEDGING_PERCENTILE_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.github.hedging.percentile"
+const val HEDGING_MAX_RATIO_PERCENT_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.github.hedging.maxRatioPercent"
+
+/**
+ * [GitHubClientRegistry] configured by TeamCity internal properties.
+ * The optional HTTP disk cache lives in the plugin data directory, request hedging is disabled by default.
+ */
+class TeamCityGitHubClientRegistry(serverPaths: ServerPaths) : GitHubClientRegistry(
+  cacheDirectory = if (TeamCityProperties.getBoolean(DISK_CACHE_ENABLED_PROPERTY_NAME)) {
+    File(serverPaths.pluginDataDirectory, "deployments-status-publisher/http-cache")
+  } else {
+    null
+  },
+  cacheMaxSize = TeamCityProperties.getInteger(DISK_CACHE_MAX_SIZE_MB_PROPERTY_NAME, 10) * 1024L * 1024L,
+  circuitBreakerFailureThreshold = TeamCityProperties.getInteger(CIRCUIT_BREAKER_FAILURE_THRESHOLD_PROPERTY_NAME, 5),
+  circuitBreakerOpenMillis = TeamCityProperties.getInteger(CIRCUIT_BREAKER_OPEN_SECONDS_PROPERTY_NAME, 30) * 1000L,
+  hedging = if (TeamCityProperties.getBoolean(HEDGING_ENABLED_PROPERTY_NAME)) {
+    RequestHedging(
+      percentile = TeamCityProperties.getInteger(HEDGING_PERCENTILE_PROPERTY_NAME, 95) / 100.0,
+      maxHedgeRatio = TeamCityProperties.getInteger(HEDGING_MAX_RATIO_PERCENT_PROPERTY_NAME, 5) / 100.0
+    )
+  } else {
+    null
+  }
+)
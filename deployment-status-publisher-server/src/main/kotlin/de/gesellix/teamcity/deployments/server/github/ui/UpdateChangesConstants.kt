@@ -1,5 +1,8 @@
 package de.gesellix.teamcity.deployments.server.github.ui
 
+import de.gesellix.teamcity.deployments.server.GITHUB_APP_ID
+import de.gesellix.teamcity.deployments.server.GITHUB_APP_INSTALLATION_ID
+import de.gesellix.teamcity.deployments.server.GITHUB_APP_PRIVATE_KEY
 import de.gesellix.teamcity.deployments.server.GITHUB_AUTH_TYPE
 import de.gesellix.teamcity.deployments.server.GITHUB_OAUTH_PROVIDER_ID
 import de.gesellix.teamcity.deployments.server.GITHUB_OAUTH_USER
@@ -15,4 +18,8 @@ class UpdateChangesConstants() {
   fun getOAuthProviderIdKey(): String = GITHUB_OAUTH_PROVIDER_ID
   fun getAuthenticationTypeKey(): String = GITHUB_AUTH_TYPE
   fun getAuthenticationTypeTokenValue(): String = GitHubApiAuthenticationType.TOKEN_AUTH.value
+  fun getAuthenticationTypeAppValue(): String = GitHubApiAuthenticationType.APP_AUTH.value
+  fun getAppIdKey(): String = GITHUB_APP_ID
+  fun getAppPrivateKeyKey(): String = GITHUB_APP_PRIVATE_KEY
+  fun getAppInstallationIdKey(): String = GITHUB_APP_INSTALLATION_ID
 }
@@ -0,0 +1,284 @@
+package de.gesellix.teamcity.deployments.server.index
+
+import de.gesellix.teamcity.deployments.server.logger
+import java.io.BufferedInputStream
+import java.io.Closeable
+import java.io.DataInputStream
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption.CREATE
+import java.nio.file.StandardOpenOption.WRITE
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.zip.CRC32
+
+/**
+ * Deployments created by this plugin, so that status updates don't have to look them up on GitHub.
+ *
+ * Entries map a build id, which is the promotion id for queued builds, to its deployment id.
+ * The key also covers the commit and environment the deployment has been created for,
+ * so that lookups for another commit or environment miss, callers then fall back to GitHub.
+ * Entries live in a [LongLongMap], least recently used ones are evicted beyond [maxEntries],
+ * and entries which haven't been used for [maxAgeMillis] are evicted on compaction.
+ *
+ * Entries are written through to an append-only [file], which is replayed when the index is first used.
+ * Writes aren't forced to disk, an entry lost in a crash only costs a GitHub lookup.
+ * Once the file holds more records than the index, it is compacted into a snapshot of the map,
+ * or into the map itself when it is [mapped] to a file.
+ * Without a [file], or when it can't be written, the index is kept in memory only.
+ */
+open class DeploymentIndex @JvmOverloads constructor(
+  private val file: File? = null,
+  private val maxEntries: Int = 100_000,
+  private val maxAgeMillis: Long = TimeUnit.DAYS.toMillis(30),
+  private val mapped: Boolean = false,
+  private val clock: () -> Long = System::currentTimeMillis
+) : Closeable {
+
+  private val logger by logger(DeploymentIndex::class.java.name)
+
+  private lateinit var entries: LongLongMap
+  private var channel: FileChannel? = null
+  private var records = 0
+  private var opened = false
+  private var closed = false
+
+  private val hits = AtomicLong()
+  private val misses = AtomicLong()
+
+  val hitCount: Long
+    get() = hits.get()
+
+  val missCount: Long
+    get() = misses.get()
+
+  /**
+   * @return the id of the deployment of [buildId] for [sha] and [environment], or null when it isn't known
+   */
+  @Synchronized
+  fun find(buildId: Long, sha: String, environment: String): Long? {
+    open()
+    val deploymentId = entries.get(key(buildId, sha, environment), NO_DEPLOYMENT)
+    if (deploymentId == NO_DEPLOYMENT) {
+      misses.incrementAndGet()
+      return null
+    }
+    hits.incrementAndGet()
+    return deploymentId
+  }
+
+  @Synchronized
+  fun put(buildId: Long, deploymentId: Long, sha: String, environment: String) {
+    open()
+    val key = key(buildId, sha, environment)
+    if (entries.get(key, NO_DEPLOYMENT) == deploymentId) {
+      return
+    }
+    entries.put(key, deploymentId)
+    append(Record(buildId, deploymentId, sha, environment))
+  }
+
+  @Synchronized
+  fun size(): Int {
+    open()
+    return entries.size()
+  }
+
+  @Synchronized
+  override fun close() {
+    if (closed) {
+      return
+    }
+    closed = true
+    closeChannel()
+    if (opened) {
+      entries.close()
+    }
+  }
+
+  private fun open() {
+    check(!closed) { "deployment index has been closed" }
+    if (opened) {
+      return
+    }
+    opened = true
+    if (file == null) {
+      entries = LongLongMap(maxEntries, clock = clock)
+      return
+    }
+    try {
+      file.parentFile?.mkdirs()
+      entries = LongLongMap(maxEntries, if (mapped) mapFile(file) else null, clock)
+      val snapshot = snapshotFile(file)
+      if (entries.size() == 0 && snapshot.isFile) {
+        restore(snapshot)
+      }
+      val validLength = replay()
+      channel = FileChannel.open(file.toPath(), CREATE, WRITE).also {
+        if (validLength < it.size()) {
+          logger.warn("Truncating torn records at the end of $file")
+          it.truncate(validLength)
+        }
+        it.position(validLength)
+      }
+      compactIfLarge()
+    } catch (e: IOException) {
+      logger.warn("Failed to open the deployment index $file, keeping it in memory only: ${e.message}")
+      closeChannel()
+      if (!this::entries.isInitialized) {
+        entries = LongLongMap(maxEntries, clock = clock)
+      }
+    }
+  }
+
+  private fun restore(snapshot: File) {
+    try {
+      entries.restore(snapshot)
+    } catch (e: IOException) {
+      logger.warn("Ignoring the unreadable deployment index snapshot $snapshot: ${e.message}")
+    }
+  }
+
+  /**
+   * Reads `length | payload | crc32` records and stops at the first torn or corrupt one.
+   * @return the length of the valid records
+   */
+  private fun replay(): Long {
+    if (file == null || !file.isFile) {
+      return 0
+    }
+    var validLength = 0L
+    DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+      try {
+        while (true) {
+          val length = input.readInt()
+          if (length < MIN_RECORD_LENGTH || length > MAX_RECORD_LENGTH) {
+            break
+          }
+          val payload = ByteArray(length)
+          input.readFully(payload)
+          val crc = CRC32().apply { update(payload) }
+          if (input.readInt() != crc.value.toInt()) {
+            break
+          }
+          val buffer = ByteBuffer.wrap(payload)
+          val record = Record(buffer.long, buffer.long, readString(buffer), readString(buffer))
+          entries.put(key(record.buildId, record.sha, record.environment), record.deploymentId)
+          records++
+          validLength += 4 + length + 4
+        }
+      } catch (e: EOFException) {
+        // a torn record at the end
+      }
+    }
+    return validLength
+  }
+
+  private fun append(record: Record) {
+    val channel = channel ?: return
+    try {
+      write(channel, record)
+      records++
+      compactIfLarge()
+    } catch (e: IOException) {
+      logger.warn("Failed to write the deployment index $file, keeping it in memory only: ${e.message}")
+      closeChannel()
+    }
+  }
+
+  /**
+   * Moves the records into a snapshot of the map, or forces the mapped map to disk, and truncates the file.
+   * A crash in between only replays records which are already known.
+   */
+  private fun compactIfLarge() {
+    val channel = channel ?: return
+    if (file == null || records <= entries.size() + COMPACTION_SLACK) {
+      return
+    }
+    val evicted = entries.evictOlderThan(clock() - maxAgeMillis)
+    if (evicted > 0) {
+      logger.info("Evicted $evicted deployments which haven't been used for ${TimeUnit.MILLISECONDS.toDays(maxAgeMillis)} days")
+    }
+    if (mapped) {
+      entries.force()
+    } else {
+      entries.snapshot(snapshotFile(file))
+    }
+    channel.truncate(0)
+    channel.position(0)
+    records = 0
+  }
+
+  private fun write(target: FileChannel, record: Record) {
+    val sha = record.sha.toByteArray(Charsets.UTF_8)
+    val environment = record.environment.toByteArray(Charsets.UTF_8)
+    val length = 8 + 8 + 2 + sha.size + 2 + environment.size
+    val buffer = ByteBuffer.allocate(4 + length + 4)
+    buffer.putInt(length)
+      .putLong(record.buildId)
+      .putLong(record.deploymentId)
+      .putShort(sha.size.toShort()).put(sha)
+      .putShort(environment.size.toShort()).put(environment)
+    val crc = CRC32()
+    crc.update(buffer.array(), 4, length)
+    buffer.putInt(crc.value.toInt())
+    buffer.flip()
+    while (buffer.hasRemaining()) {
+      target.write(buffer)
+    }
+  }
+
+  private fun readString(buffer: ByteBuffer): String {
+    val bytes = ByteArray(buffer.short.toInt() and 0xffff)
+    buffer.get(bytes)
+    return String(bytes, Charsets.UTF_8)
+  }
+
+  private fun closeChannel() {
+    try {
+      channel?.close()
+    } catch (e: IOException) {
+      logger.warn("Failed to close the deployment index $file: ${e.message}")
+    }
+    channel = null
+  }
+
+  private class Record(val buildId: Long, val deploymentId: Long, val sha: String, val environment: String)
+
+  companion object {
+
+    private const val NO_DEPLOYMENT = Long.MIN_VALUE
+    private const val FNV_PRIME = 0x100000001b3L
+
+    private const val MIN_RECORD_LENGTH = 8 + 8 + 2 + 2
+    private const val MAX_RECORD_LENGTH = MIN_RECORD_LENGTH + 2 * 0xffff
+    private const val COMPACTION_SLACK = 1024
+
+    private fun snapshotFile(file: File): File {
+      return File(file.parentFile, "${file.name}.snapshot")
+    }
+
+    private fun mapFile(file: File): File {
+      return File(file.parentFile, "${file.name}.map")
+    }
+
+    /**
+     * 64 bit hash of the build id, commit and environment.
+     */
+    private fun key(buildId: Long, sha: String, environment: String): Long {
+      var hash = LongLongMap.mix(buildId)
+      for (c in sha) {
+        hash = (hash xor c.toLong()) * FNV_PRIME
+      }
+      hash = (hash xor '|'.toLong()) * FNV_PRIME
+      for (c in environment) {
+        hash = (hash xor c.toLong()) * FNV_PRIME
+      }
+      return LongLongMap.mix(hash)
+    }
+  }
+}
@@ -0,0 +1,340 @@
+package de.gesellix.teamcity.deployments.server.index
+
+import java.io.BufferedOutputStream
+import java.io.Closeable
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.nio.Buffer
+import java.nio.ByteBuffer
+import java.nio.LongBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption.ATOMIC_MOVE
+import java.nio.file.StandardCopyOption.REPLACE_EXISTING
+import java.nio.file.StandardOpenOption.CREATE
+import java.nio.file.StandardOpenOption.READ
+import java.nio.file.StandardOpenOption.WRITE
+import java.util.zip.CRC32
+import java.util.zip.CheckedOutputStream
+
+/**
+ * Open-addressing map of primitive `long` keys to `long` values.
+ *
+ * Slots of `key | value | stamp` live in a direct buffer outside of the Java heap,
+ * or in the memory-mapped [file], which then keeps the entries across restarts.
+ * The table is sized once for [maxEntries] at a load factor of at most 0.5 and never grows,
+ * so its memory is taken up front, at 24 bytes per slot and two slots per entry at least.
+ * How that compares to a boxed map in speed and footprint hasn't been measured yet, see `LongLongMapBenchmark`.
+ * Collisions are resolved by linear probing, removals shift the following entries back instead of leaving tombstones.
+ *
+ * Every access stamps the entry with the current time in milliseconds, bumped to keep stamps unique.
+ * When the map is full, the least recently used entry out of a sample of [EVICTION_SAMPLE] entries is evicted,
+ * which approximates LRU without keeping a linked list. [evictOlderThan] evicts all entries by age.
+ *
+ * The map isn't thread-safe.
+ */
+class LongLongMap @Throws(IOException::class) constructor(
+  maxEntries: Int,
+  private val file: File? = null,
+  private val clock: () -> Long = System::currentTimeMillis
+) : Closeable {
+
+  val capacity = tableSize(maxEntries)
+  val maxEntries = minOf(maxEntries, capacity / 2)
+  private val mask = capacity - 1
+
+  private val mapped: MappedByteBuffer?
+  private val slots: LongBuffer
+
+  private var size = 0
+  private var lastStamp = 0L
+  private var evictionCursor = 0
+
+  init {
+    require(maxEntries > 0) { "maxEntries must be positive" }
+    if (file == null) {
+      mapped = null
+      slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES).asLongBuffer()
+    } else {
+      file.parentFile?.mkdirs()
+      val length = HEADER_BYTES + capacity.toLong() * SLOT_BYTES
+      val buffer = FileChannel.open(file.toPath(), CREATE, READ, WRITE).use { channel ->
+        val reusable = channel.size() == length && readHeader(channel)
+        if (!reusable) {
+          // another capacity or an unknown file, so the entries can't be found at their slots
+          channel.truncate(0)
+        }
+        channel.map(FileChannel.MapMode.READ_WRITE, 0, length).also {
+          it.putInt(0, MAGIC)
+          it.putInt(4, VERSION)
+          it.putInt(8, capacity)
+        }
+      }
+      (buffer as Buffer).position(HEADER_BYTES)
+      mapped = buffer
+      slots = buffer.slice().asLongBuffer()
+      for (slot in 0 until capacity) {
+        if (isOccupied(slot)) {
+          size++
+          lastStamp = maxOf(lastStamp, stamp(slot))
+        }
+      }
+    }
+  }
+
+  fun size(): Int {
+    return size
+  }
+
+  /**
+   * @return the value of [key], or [defaultValue] when there's none
+   */
+  fun get(key: Long, defaultValue: Long): Long {
+    val slot = find(key)
+    if (slot < 0) {
+      return defaultValue
+    }
+    slots.put(slot * SLOT_LONGS + 2, nextStamp())
+    return slots.get(slot * SLOT_LONGS + 1)
+  }
+
+  fun containsKey(key: Long): Boolean {
+    return find(key) >= 0
+  }
+
+  fun put(key: Long, value: Long) {
+    put(key, value, nextStamp())
+  }
+
+  fun remove(key: Long): Boolean {
+    val slot = find(key)
+    if (slot < 0) {
+      return false
+    }
+    removeAt(slot)
+    return true
+  }
+
+  /**
+   * Evicts all entries which haven't been accessed since [stampMillis].
+   * @return the number of evicted entries
+   */
+  fun evictOlderThan(stampMillis: Long): Int {
+    var evicted = 0
+    var slot = 0
+    while (slot < capacity) {
+      if (isOccupied(slot) && stamp(slot) < stampMillis) {
+        // the next entry may have been shifted into this slot
+        removeAt(slot)
+        evicted++
+      } else {
+        slot++
+      }
+    }
+    return evicted
+  }
+
+  /**
+   * Writes all entries with their stamps to [target], replacing it atomically.
+   */
+  @Throws(IOException::class)
+  fun snapshot(target: File) {
+    val temp = File(target.parentFile, "${target.name}.tmp")
+    val crc = CRC32()
+    FileOutputStream(temp).use { stream ->
+      val output = DataOutputStream(BufferedOutputStream(CheckedOutputStream(stream, crc)))
+      output.writeInt(MAGIC)
+      output.writeInt(VERSION)
+      output.writeInt(size)
+      for (slot in 0 until capacity) {
+        if (isOccupied(slot)) {
+          output.writeLong(key(slot))
+          output.writeLong(slots.get(slot * SLOT_LONGS + 1))
+          output.writeLong(stamp(slot))
+        }
+      }
+      output.flush()
+      DataOutputStream(stream).writeInt(crc.value.toInt())
+      stream.fd.sync()
+    }
+    Files.move(temp.toPath(), target.toPath(), REPLACE_EXISTING, ATOMIC_MOVE)
+  }
+
+  /**
+   * Puts all entries of a [snapshot], keeping their stamps.
+   * @throws IOException when the snapshot is unreadable or corrupt, nothing is put then
+   */
+  @Throws(IOException::class)
+  fun restore(source: File) {
+    val bytes = source.readBytes()
+    if (bytes.size < 16) {
+      throw IOException("$source is truncated")
+    }
+    val crc = CRC32().apply { update(bytes, 0, bytes.size - 4) }
+    val buffer = ByteBuffer.wrap(bytes)
+    if (buffer.getInt(bytes.size - 4) != crc.value.toInt()) {
+      throw IOException("$source is corrupt")
+    }
+    if (buffer.int != MAGIC || buffer.int != VERSION) {
+      throw IOException("$source isn't a snapshot")
+    }
+    val count = buffer.int
+    if (count < 0 || count.toLong() * SLOT_BYTES != bytes.size - 16L) {
+      throw IOException("$source has an invalid entry count $count")
+    }
+    val entries = buffer.asLongBuffer()
+    // oldest first, so that evictions keep the newest ones
+    (0 until count).sortedBy { entries.get(it * SLOT_LONGS + 2) }.forEach {
+      val stamp = maxOf(entries.get(it * SLOT_LONGS + 2), 1)
+      put(entries.get(it * SLOT_LONGS), entries.get(it * SLOT_LONGS + 1), stamp)
+      lastStamp = maxOf(lastStamp, stamp)
+    }
+  }
+
+  /**
+   * Forces the entries of a memory-mapped map to disk.
+   */
+  fun force() {
+    mapped?.force()
+  }
+
+  override fun close() {
+    force()
+  }
+
+  private fun put(key: Long, value: Long, stamp: Long) {
+    var slot = find(key)
+    if (slot < 0) {
+      if (size >= maxEntries) {
+        evictLeastRecentlyUsed()
+      }
+      slot = home(key)
+      while (isOccupied(slot)) {
+        slot = (slot + 1) and mask
+      }
+      size++
+    }
+    slots.put(slot * SLOT_LONGS, key)
+    slots.put(slot * SLOT_LONGS + 1, value)
+    slots.put(slot * SLOT_LONGS + 2, stamp)
+  }
+
+  private fun find(key: Long): Int {
+    var slot = home(key)
+    while (isOccupied(slot)) {
+      if (key(slot) == key) {
+        return slot
+      }
+      slot = (slot + 1) and mask
+    }
+    return -1
+  }
+
+  private fun evictLeastRecentlyUsed() {
+    var oldest = -1
+    var seen = 0
+    var scanned = 0
+    while (seen < EVICTION_SAMPLE && scanned < capacity) {
+      val slot = evictionCursor
+      evictionCursor = (evictionCursor + 1) and mask
+      scanned++
+      if (isOccupied(slot)) {
+        seen++
+        if (oldest < 0 || stamp(slot) < stamp(oldest)) {
+          oldest = slot
+        }
+      }
+    }
+    if (oldest >= 0) {
+      removeAt(oldest)
+    }
+  }
+
+  /**
+   * Backward shift deletion: entries after the removed one move up as long as that doesn't put them before their home slot.
+   */
+  private fun removeAt(removed: Int) {
+    var gap = removed
+    var slot = removed
+    while (true) {
+      slot = (slot + 1) and mask
+      if (!isOccupied(slot)) {
+        break
+      }
+      val home = home(key(slot))
+      val staysBehindGap = if (gap <= slot) home in (gap + 1)..slot else home > gap || home <= slot
+      if (!staysBehindGap) {
+        slots.put(gap * SLOT_LONGS, key(slot))
+        slots.put(gap * SLOT_LONGS + 1, slots.get(slot * SLOT_LONGS + 1))
+        slots.put(gap * SLOT_LONGS + 2, stamp(slot))
+        gap = slot
+      }
+    }
+    slots.put(gap * SLOT_LONGS + 2, EMPTY)
+    size--
+  }
+
+  private fun nextStamp(): Long {
+    lastStamp = maxOf(clock(), lastStamp + 1)
+    return lastStamp
+  }
+
+  private fun home(key: Long): Int {
+    return (mix(key) and mask.toLong()).toInt()
+  }
+
+  private fun key(slot: Int): Long {
+    return slots.get(slot * SLOT_LONGS)
+  }
+
+  private fun stamp(slot: Int): Long {
+    return slots.get(slot * SLOT_LONGS + 2)
+  }
+
+  private fun isOccupied(slot: Int): Boolean {
+    return stamp(slot) != EMPTY
+  }
+
+  private fun readHeader(channel: FileChannel): Boolean {
+    val header = ByteBuffer.allocate(12)
+    channel.read(header, 0)
+    return header.getInt(0) == MAGIC && header.getInt(4) == VERSION && header.getInt(8) == capacity
+  }
+
+  companion object {
+
+    const val EVICTION_SAMPLE = 16
+
+    private const val MAGIC = 0x4c4c4d50 // "LLMP"
+    private const val VERSION = 1
+    private const val HEADER_BYTES = 64
+    private const val SLOT_LONGS = 3
+    private const val SLOT_BYTES = SLOT_LONGS * 8
+    private const val EMPTY = 0L
+    private const val MAX_CAPACITY = 1 shl 26
+
+    private fun tableSize(maxEntries: Int): Int {
+      var capacity = 16
+      while (capacity < 2L * maxEntries && capacity < MAX_CAPACITY) {
+        capacity = capacity shl 1
+      }
+      return capacity
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreads sequential ids over the table.
+     */
+    fun mix(key: Long): Long {
+      var h = key
+      h = h xor (h ushr 33)
+      h *= -0xae502812aa7333L
+      h = h xor (h ushr 33)
+      h *= -0x3b314601e57a13adL
+      h = h xor (h ushr 33)
+      return h
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package de.gesellix.teamcity.deployments.server.index
+
+import jetbrains.buildServer.serverSide.ServerPaths
+import jetbrains.buildServer.serverSide.TeamCityProperties
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+const val DEPLOYMENT_INDEX_PERSISTED_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.deploymentIndex.persisted"
+const val DEPLOYMENT_INDEX_MAX_ENTRIES_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.deploymentIndex.maxEntries"
+const val DEPLOYMENT_INDEX_MAX_AGE_DAYS_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.deploymentIndex.maxAgeDays"
+const val DEPLOYMENT_INDEX_MAPPED_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.deploymentIndex.mapped"
+
+/**
+ * [DeploymentIndex] configured by TeamCity internal properties, its files live in the plugin data directory.
+ * An index which isn't persisted is kept in memory only.
+ */
+class TeamCityDeploymentIndex(serverPaths: ServerPaths) : DeploymentIndex(
+  file = if (TeamCityProperties.getBooleanOrTrue(DEPLOYMENT_INDEX_PERSISTED_PROPERTY_NAME)) {
+    File(serverPaths.pluginDataDirectory, "deployments-status-publisher/deployments.index")
+  } else null,
+  maxEntries = TeamCityProperties.getInteger(DEPLOYMENT_INDEX_MAX_ENTRIES_PROPERTY_NAME, 100_000),
+  maxAgeMillis = TimeUnit.DAYS.toMillis(TeamCityProperties.getInteger(DEPLOYMENT_INDEX_MAX_AGE_DAYS_PROPERTY_NAME, 30).toLong()),
+  mapped = TeamCityProperties.getBoolean(DEPLOYMENT_INDEX_MAPPED_PROPERTY_NAME)
+)
@@ -0,0 +1,389 @@
+package de.gesellix.teamcity.deployments.server.outbox
+
+import de.gesellix.teamcity.deployments.server.logger
+import java.io.BufferedInputStream
+import java.io.Closeable
+import java.io.DataInputStream
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileNotFoundException
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.ClosedChannelException
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption.CREATE
+import java.nio.file.StandardOpenOption.WRITE
+import java.util.BitSet
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.zip.CRC32
+
+/**
+ * [PublishJournal] in a directory of append-only segment files.
+ *
+ * Appends and deliveries are written as checksummed records to the newest segment.
+ * Writes are forced to disk every [syncIntervalMillis] at most, so that a burst of updates costs one fsync,
+ * while a crash loses no more than the records of the last interval.
+ *
+ * Only one bit per entry is kept in memory to know whether it is pending, entries are read back from disk on demand.
+ * Segments are rolled at [maxSegmentBytes], the oldest ones are deleted as soon as all their entries are delivered.
+ * A torn record at the end of the newest segment, e.g. after a crash, is truncated when the journal is opened.
+ */
+class AppendOnlyPublishJournal(
+  private val directory: File,
+  private val maxSegmentBytes: Long = 4L * 1024 * 1024,
+  syncIntervalMillis: Long = 50
+) : PublishJournal {
+
+  private val logger by logger(AppendOnlyPublishJournal::class.java.name)
+
+  // oldest first, the last one is appended to
+  private val segments = ArrayList<Segment>()
+  private var nextSegmentSequence = 1L
+  private var nextId = 1L
+
+  // bit i is set while entry `pendingBase + i` is pending
+  private var pending = BitSet()
+  private var pendingBase = 1L
+  private var pendingCount = 0
+
+  @Volatile
+  private var dirty = false
+  private var closed = false
+
+  private val syncer = Executors.newSingleThreadScheduledExecutor { runnable ->
+    Thread(runnable, "deployments-status-publisher journal sync").apply { isDaemon = true }
+  }
+
+  init {
+    recover()
+    syncer.scheduleWithFixedDelay({ syncQuietly() }, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS)
+  }
+
+  @Synchronized
+  override fun append(update: DeploymentStatusUpdate): Long {
+    check(!closed) { "journal has been closed" }
+    val payload = update.encode()
+    rollIfFull()
+    val id = nextId++
+    write(ENTRY, id, payload)
+    pending.set(index(id))
+    pendingCount++
+    return id
+  }
+
+  @Synchronized
+  override fun delivered(id: Long) {
+    check(!closed) { "journal has been closed" }
+    if (!isPendingLocked(id)) {
+      return
+    }
+    pending.clear(index(id))
+    pendingCount--
+    rollIfFull()
+    write(DELIVERED, id, EMPTY)
+    compact()
+  }
+
+  override fun readPending(afterId: Long, max: Int): List<JournalEntry> {
+    val views = synchronized(this) {
+      segments.mapIndexed { i, segment ->
+        SegmentView(segment.file, segments.getOrNull(i + 1)?.firstId ?: Long.MAX_VALUE, segment.length)
+      }
+    }
+    val result = ArrayList<JournalEntry>()
+    for (view in views) {
+      if (view.nextFirstId <= afterId + 1) {
+        // all entries of this segment have already been seen
+        continue
+      }
+      try {
+        RecordReader(view.file, view.length).use { reader ->
+          while (reader.next()) {
+            if (reader.type == ENTRY && reader.id > afterId && isPending(reader.id)) {
+              val update = decodeOrDrop(reader.id, reader.payload)
+              if (update != null) {
+                result.add(JournalEntry(reader.id, update))
+              }
+              if (result.size >= max) {
+                return result
+              }
+            }
+          }
+        }
+      } catch (e: FileNotFoundException) {
+        // compacted in the meantime, so there's nothing pending left in it
+      }
+    }
+    return result
+  }
+
+  @Synchronized
+  override fun pendingCount(): Int {
+    return pendingCount
+  }
+
+  override fun sync() {
+    val segment = synchronized(this) {
+      if (!dirty || closed) {
+        return
+      }
+      dirty = false
+      segments.last()
+    }
+    try {
+      segment.force()
+    } catch (e: ClosedChannelException) {
+      // rolled in the meantime, which forces the segment anyway
+    }
+  }
+
+  override fun close() {
+    syncer.shutdown()
+    synchronized(this) {
+      if (closed) {
+        return
+      }
+      closed = true
+      segments.last().force()
+      segments.forEach { it.close() }
+    }
+  }
+
+  private fun decodeOrDrop(id: Long, payload: ByteArray): DeploymentStatusUpdate? {
+    return try {
+      DeploymentStatusUpdate.decode(payload)
+    } catch (e: IOException) {
+      logger.warn("Dropping unreadable journal entry $id: ${e.message}")
+      delivered(id)
+      null
+    }
+  }
+
+  private fun syncQuietly() {
+    try {
+      sync()
+    } catch (e: IOException) {
+      logger.warn("Failed to sync the deployment status journal: ${e.message}")
+    }
+  }
+
+  private fun isPending(id: Long): Boolean {
+    synchronized(this) {
+      return isPendingLocked(id)
+    }
+  }
+
+  private fun isPendingLocked(id: Long): Boolean {
+    return id >= pendingBase && pending.get(index(id))
+  }
+
+  private fun index(id: Long): Int {
+    return (id - pendingBase).toInt()
+  }
+
+  private fun recover() {
+    if (!directory.isDirectory && !directory.mkdirs()) {
+      throw IOException("Failed to create the journal directory $directory")
+    }
+    val files = directory.listFiles { _, name -> SEGMENT_NAME.matches(name) }.orEmpty()
+      .sortedBy { sequence(it) }
+    files.forEachIndexed { i, file ->
+      // segments without entries, i.e. only with deliveries, start where the next one would
+      val segment = Segment(sequence(file), nextId, file)
+      var firstEntryId: Long? = null
+      val validLength = RecordReader(file, file.length()).use { reader ->
+        while (reader.next()) {
+          if (reader.type == ENTRY) {
+            if (firstEntryId == null) {
+              firstEntryId = reader.id
+              if (segments.isEmpty()) {
+                pendingBase = reader.id
+              }
+            }
+            pending.set(index(reader.id))
+            nextId = maxOf(nextId, reader.id + 1)
+          } else if (reader.type == DELIVERED && reader.id >= pendingBase) {
+            pending.clear(index(reader.id))
+          }
+        }
+        reader.position
+      }
+      segment.firstId = firstEntryId ?: segment.firstId
+      if (validLength < file.length()) {
+        if (i == files.lastIndex) {
+          logger.warn("Truncating torn records at the end of $file")
+          segment.truncate(validLength)
+        } else {
+          logger.warn("Ignoring unreadable records at the end of $file")
+        }
+      }
+      segment.length = validLength
+      segments.add(segment)
+      nextSegmentSequence = segment.sequence + 1
+    }
+    pendingCount = pending.cardinality()
+    if (segments.isEmpty()) {
+      pendingBase = nextId
+      segments.add(newSegment())
+    }
+    compact()
+  }
+
+  private fun rollIfFull() {
+    val active = segments.last()
+    if (active.length < maxSegmentBytes) {
+      return
+    }
+    active.force()
+    active.close()
+    segments.add(newSegment())
+    compact()
+  }
+
+  private fun newSegment(): Segment {
+    val sequence = nextSegmentSequence++
+    return Segment(sequence, nextId, File(directory, String.format("segment-%020d.journal", sequence)))
+  }
+
+  /**
+   * Deletes the oldest segments as long as none of their entries is pending.
+   * Deliveries are only ever recorded in the same or a later segment than their entry,
+   * so deleting from the oldest end never resurrects an entry.
+   */
+  private fun compact() {
+    while (segments.size > 1) {
+      val oldest = segments[0]
+      val next = segments[1]
+      val firstPending = pending.nextSetBit(maxOf(0, index(oldest.firstId)))
+      if (firstPending >= 0 && firstPending + pendingBase < next.firstId) {
+        return
+      }
+      oldest.close()
+      if (!oldest.file.delete()) {
+        logger.warn("Failed to delete delivered journal segment ${oldest.file}")
+      }
+      segments.removeAt(0)
+      rebase(next.firstId)
+    }
+  }
+
+  private fun rebase(base: Long) {
+    if (base <= pendingBase) {
+      return
+    }
+    val shift = base - pendingBase
+    pending = if (shift >= pending.length()) BitSet() else pending.get(shift.toInt(), pending.length())
+    pendingBase = base
+  }
+
+  private fun write(type: Int, id: Long, payload: ByteArray) {
+    val length = 1 + 8 + payload.size
+    val buffer = ByteBuffer.allocate(4 + length + 4)
+    buffer.putInt(length).put(type.toByte()).putLong(id).put(payload)
+    val crc = CRC32()
+    crc.update(buffer.array(), 4, length)
+    buffer.putInt(crc.value.toInt())
+    buffer.flip()
+    val segment = segments.last()
+    val channel = segment.channel()
+    while (buffer.hasRemaining()) {
+      channel.write(buffer)
+    }
+    segment.length += buffer.limit()
+    dirty = true
+  }
+
+  private class Segment(val sequence: Long, var firstId: Long, val file: File) {
+
+    var length = file.length()
+
+    private var channel: FileChannel? = null
+
+    fun channel(): FileChannel {
+      return channel ?: FileChannel.open(file.toPath(), CREATE, WRITE).also {
+        it.position(length)
+        channel = it
+      }
+    }
+
+    fun force() {
+      channel?.force(false)
+    }
+
+    fun truncate(length: Long) {
+      FileChannel.open(file.toPath(), WRITE).use { it.truncate(length) }
+      this.length = length
+    }
+
+    fun close() {
+      channel?.close()
+      channel = null
+    }
+  }
+
+  private class SegmentView(val file: File, val nextFirstId: Long, val length: Long)
+
+  /**
+   * Reads `length | type | id | payload | crc32` records up to [limit] and stops at the first torn or corrupt one.
+   */
+  private class RecordReader(file: File, private val limit: Long) : Closeable {
+
+    private val input = DataInputStream(BufferedInputStream(FileInputStream(file)))
+
+    var position = 0L
+      private set
+    var type = 0
+      private set
+    var id = 0L
+      private set
+    var payload: ByteArray = EMPTY
+      private set
+
+    fun next(): Boolean {
+      try {
+        if (position + 4 > limit) {
+          return false
+        }
+        val length = input.readInt()
+        if (length < 9 || position + 4 + length + 4 > limit) {
+          return false
+        }
+        val body = ByteArray(length)
+        input.readFully(body)
+        val checksum = input.readInt()
+        val crc = CRC32()
+        crc.update(body)
+        if (crc.value.toInt() != checksum) {
+          return false
+        }
+        val buffer = ByteBuffer.wrap(body)
+        type = buffer.get().toInt()
+        id = buffer.long
+        payload = body.copyOfRange(9, length)
+        position += 4 + length + 4
+        return true
+      } catch (e: EOFException) {
+        return false
+      }
+    }
+
+    override fun close() {
+      input.close()
+    }
+  }
+
+  companion object {
+
+    private const val ENTRY = 1
+    private const val DELIVERED = 2
+
+    private val EMPTY = ByteArray(0)
+    private val SEGMENT_NAME = Regex("segment-(\\d+)\\.journal")
+
+    private fun sequence(file: File): Long {
+      return SEGMENT_NAME.matchEntire(file.name)!!.groupValues[1].toLong()
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package de.gesellix.teamcity.deployments.server.outbox
+
+/**
+ * Sends the updates drained from a [DeploymentStatusOutbox].
+ */
+interface DeploymentStatusDeliverer {
+
+  fun deliver(update: DeploymentStatusUpdate): DeliveryResult
+}
+
+enum class DeliveryResult {
+
+  DELIVERED,
+
+  /**
+   * GitHub couldn't be reached, the update stays in the outbox.
+   */
+  RETRY,
+
+  /**
+   * The update cannot be sent anymore, e.g. because its build or publisher has been removed.
+   */
+  DISCARDED
+}
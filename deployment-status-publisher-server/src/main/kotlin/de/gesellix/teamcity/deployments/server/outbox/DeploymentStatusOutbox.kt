@@ -0,0 +1,226 @@
+package de.gesellix.teamcity.deployments.server.outbox
+
+import de.gesellix.teamcity.deployments.server.logger
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Decouples deployment status updates from build events: updates are appended to a [PublishJournal]
+ * and sent by a single worker, which drains the journal in the order of appends.
+ * Updates which haven't been delivered before a restart are sent as soon as the outbox is [started][start] again.
+ *
+ * Draining stops at the first update which fails with an [IOException] and resumes after an exponential backoff,
+ * so that a GitHub outage neither turns into a busy loop nor reorders the updates of a deployment.
+ * Updates older than [maxAgeMillis] are dropped.
+ *
+ * Pending updates which are [superseded][DeploymentStatusUpdate.supersedes] by a later one aren't sent at all,
+ * so that a backlog results in one final state per deployment instead of a chain of stale intermediate ones.
+ * Only the latest update per deployment with pending updates is kept in memory for that.
+ *
+ * Within a batch, updates are sent by their [rank][DeploymentStatusUpdate.rank],
+ * so that final states go ahead of intermediate ones which are younger than [intermediateStateDelayMillis].
+ */
+open class DeploymentStatusOutbox(
+  journalFactory: () -> PublishJournal,
+  val enabled: Boolean = true,
+  private val maxAgeMillis: Long = TimeUnit.HOURS.toMillis(24),
+  private val batchSize: Int = 64,
+  private val minBackoffMillis: Long = TimeUnit.SECONDS.toMillis(1),
+  private val maxBackoffMillis: Long = TimeUnit.MINUTES.toMillis(5),
+  private val intermediateStateDelayMillis: Long = TimeUnit.SECONDS.toMillis(30),
+  private val clock: () -> Long = System::currentTimeMillis
+) {
+
+  private val logger by logger(DeploymentStatusOutbox::class.java.name)
+
+  // opened on first use, so that a disabled outbox doesn't touch the disk
+  private val journalDelegate = lazy(journalFactory)
+  private val journal by journalDelegate
+
+  private val signal = Object()
+  private var signalled = false
+
+  @Volatile
+  private var running = false
+  private var worker: Thread? = null
+  private lateinit var deliverer: DeploymentStatusDeliverer
+
+  private val latestUpdates = ConcurrentHashMap<String, JournalEntry>()
+  private val coalesced = AtomicLong()
+
+  val coalescedCount: Long
+    get() = coalesced.get()
+
+  @Throws(IOException::class)
+  fun append(update: DeploymentStatusUpdate) {
+    val id = journal.append(update)
+    remember(JournalEntry(id, update))
+    wakeUp()
+  }
+
+  fun pendingCount(): Int {
+    return if (journalDelegate.isInitialized()) journal.pendingCount() else 0
+  }
+
+  /**
+   * Starts draining, including the updates left over from before a restart.
+   */
+  @Synchronized
+  fun start(deliverer: DeploymentStatusDeliverer) {
+    if (worker != null) {
+      return
+    }
+    this.deliverer = deliverer
+    running = true
+    worker = Thread({ drain() }, "deployments-status-publisher outbox").apply {
+      isDaemon = true
+      start()
+    }
+  }
+
+  /**
+   * Stops the worker. Pending updates stay in the journal.
+   */
+  @Synchronized
+  fun shutdown() {
+    running = false
+    wakeUp()
+    worker?.join(TimeUnit.SECONDS.toMillis(10))
+    worker = null
+    if (journalDelegate.isInitialized()) {
+      try {
+        journal.close()
+      } catch (e: IOException) {
+        logger.warn("Failed to close the deployment status journal: ${e.message}")
+      }
+    }
+  }
+
+  private fun wakeUp() {
+    synchronized(signal) {
+      signalled = true
+      signal.notifyAll()
+    }
+  }
+
+  private fun await(millis: Long, interruptible: Boolean) {
+    val deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis)
+    synchronized(signal) {
+      while (running && !(interruptible && signalled)) {
+        val remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())
+        if (remaining <= 0) {
+          break
+        }
+        signal.wait(remaining)
+      }
+      signalled = false
+    }
+  }
+
+  private fun remember(entry: JournalEntry) {
+    latestUpdates.merge(entry.update.deploymentKey, entry) { current, new -> if (new.id > current.id) new else current }
+  }
+
+  private fun forget(entry: JournalEntry) {
+    latestUpdates.computeIfPresent(entry.update.deploymentKey) { _, current -> if (current.id == entry.id) null else current }
+  }
+
+  private fun isSuperseded(entry: JournalEntry): Boolean {
+    val latest = latestUpdates[entry.update.deploymentKey] ?: return false
+    return latest.id > entry.id && latest.update.supersedes(entry.update)
+  }
+
+  private fun indexPending() {
+    var afterId = 0L
+    while (true) {
+      val batch = journal.readPending(afterId, batchSize)
+      if (batch.isEmpty()) {
+        return
+      }
+      batch.forEach { remember(it) }
+      afterId = batch.last().id
+    }
+  }
+
+  private fun drain() {
+    try {
+      // updates left over from before a restart
+      indexPending()
+    } catch (e: Exception) {
+      logger.warn("Failed to read pending deployment status updates", e)
+    }
+    var backoff = 0L
+    while (running) {
+      val failed = try {
+        drainPending()
+      } catch (e: Exception) {
+        logger.warn("Failed to drain the deployment status outbox", e)
+        true
+      }
+      if (failed) {
+        backoff = (backoff * 2).coerceIn(minBackoffMillis, maxBackoffMillis)
+        logger.info("Retrying ${journal.pendingCount()} pending GitHub deployment status updates in ${backoff}ms")
+        // new updates must not cut the backoff short
+        await(backoff, false)
+      } else {
+        backoff = 0
+        await(IDLE_WAIT_MILLIS, true)
+      }
+    }
+  }
+
+  /**
+   * @return true when draining stopped at an update which has to be retried
+   */
+  private fun drainPending(): Boolean {
+    var afterId = 0L
+    while (running) {
+      val batch = journal.readPending(afterId, batchSize)
+      if (batch.isEmpty()) {
+        return false
+      }
+      // superseded updates are skipped first, so that sending by rank can't reorder the updates of a deployment
+      val (superseded, current) = batch.partition { isSuperseded(it) }
+      superseded.forEach { entry ->
+        coalesced.incrementAndGet()
+        logger.debug("Skipping superseded GitHub deployment status update for buildId: ${entry.update.buildId}, status: ${entry.update.status}")
+        journal.delivered(entry.id)
+      }
+      for (entry in current.sortedBy { it.update.rank(intermediateStateDelayMillis) }) {
+        if (!running) {
+          return false
+        }
+        if (deliver(entry.update) == DeliveryResult.RETRY) {
+          return true
+        }
+        journal.delivered(entry.id)
+        forget(entry)
+      }
+      afterId = batch.last().id
+    }
+    return false
+  }
+
+  private fun deliver(update: DeploymentStatusUpdate): DeliveryResult {
+    if (clock() - update.createdAtMillis > maxAgeMillis) {
+      logger.warn("Dropping outdated GitHub deployment status update for buildId: ${update.buildId}, status: ${update.status}")
+      return DeliveryResult.DISCARDED
+    }
+    return try {
+      deliverer.deliver(update)
+    } catch (e: IOException) {
+      DeliveryResult.RETRY
+    } catch (e: Exception) {
+      logger.warn("Dropping GitHub deployment status update for buildId: ${update.buildId}, status: ${update.status}", e)
+      DeliveryResult.DISCARDED
+    }
+  }
+
+  companion object {
+
+    // safety net in case a wake up got lost
+    private val IDLE_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(30)
+  }
+}
@@ -0,0 +1,111 @@
+package de.gesellix.teamcity.deployments.server.outbox
+
+import de.gesellix.github.client.data.DeploymentStatusState
+import java.io.ByteArrayOutputStream
+import java.io.DataInput
+import java.io.DataInputStream
+import java.io.DataOutput
+import java.io.DataOutputStream
+import java.io.IOException
+
+/**
+ * A deployment status update waiting to be sent to GitHub.
+ *
+ * Only plain values are kept, so that an update can be persisted and sent after a restart:
+ * the build, publisher and VCS root are looked up again by their ids.
+ */
+data class DeploymentStatusUpdate(
+  val buildId: Long,
+  val buildFeatureId: String,
+  val vcsRootInstanceId: Long,
+  val version: String,
+  val vcsBranch: String?,
+  val status: DeploymentStatusState,
+  val message: String,
+  val environment: String,
+  val createdAtMillis: Long
+) {
+
+  /**
+   * Identifies the deployment which is updated, i.e. updates with the same key supersede each other.
+   */
+  val deploymentKey: String
+    get() = "$buildId|$buildFeatureId|$vcsRootInstanceId"
+
+  /**
+   * Whether this update makes an [older] one obsolete, so that only this one needs to be sent.
+   * Final states are never superseded by intermediate ones.
+   */
+  fun supersedes(older: DeploymentStatusUpdate): Boolean {
+    return deploymentKey == older.deploymentKey && (status.terminal || !older.status.terminal)
+  }
+
+  /**
+   * Updates with a lower rank are sent first. Intermediate states are ranked as if they had been scheduled
+   * [intermediateStateDelayMillis] later, so that final states overtake younger intermediate ones,
+   * while intermediate states which have been waiting longer than that still go first.
+   */
+  fun rank(intermediateStateDelayMillis: Long): Long {
+    return if (status.terminal) createdAtMillis else createdAtMillis + intermediateStateDelayMillis
+  }
+
+  fun encode(): ByteArray {
+    val bytes = ByteArrayOutputStream(128)
+    DataOutputStream(bytes).use { writeTo(it) }
+    return bytes.toByteArray()
+  }
+
+  fun writeTo(output: DataOutput) {
+    output.writeByte(FORMAT_VERSION)
+    output.writeLong(buildId)
+    writeString(output, buildFeatureId)
+    output.writeLong(vcsRootInstanceId)
+    writeString(output, version)
+    output.writeBoolean(vcsBranch != null)
+    vcsBranch?.let { writeString(output, it) }
+    writeString(output, status.name)
+    writeString(output, message)
+    writeString(output, environment)
+    output.writeLong(createdAtMillis)
+  }
+
+  companion object {
+
+    private const val FORMAT_VERSION = 1
+
+    fun decode(bytes: ByteArray): DeploymentStatusUpdate {
+      return DataInputStream(bytes.inputStream()).use { readFrom(it) }
+    }
+
+    fun readFrom(input: DataInput): DeploymentStatusUpdate {
+      val formatVersion = input.readByte().toInt()
+      if (formatVersion != FORMAT_VERSION) {
+        throw IOException("Unsupported deployment status update format: $formatVersion")
+      }
+      return DeploymentStatusUpdate(
+        buildId = input.readLong(),
+        buildFeatureId = readString(input),
+        vcsRootInstanceId = input.readLong(),
+        version = readString(input),
+        vcsBranch = if (input.readBoolean()) readString(input) else null,
+        status = DeploymentStatusState.valueOf(readString(input)),
+        message = readString(input),
+        environment = readString(input),
+        createdAtMillis = input.readLong()
+      )
+    }
+
+    // DataOutput.writeUTF is limited to 64k, build status texts aren't
+    private fun writeString(output: DataOutput, value: String) {
+      val bytes = value.toByteArray(Charsets.UTF_8)
+      output.writeInt(bytes.size)
+      output.write(bytes)
+    }
+
+    private fun readString(input: DataInput): String {
+      val bytes = ByteArray(input.readInt())
+      input.readFully(bytes)
+      return String(bytes, Charsets.UTF_8)
+    }
+  }
+}
@@ -0,0 +1,359 @@
+package de.gesellix.teamcity.deployments.server.outbox
+
+import de.gesellix.teamcity.deployments.server.logger
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption.CREATE
+import java.nio.file.StandardOpenOption.READ
+import java.nio.file.StandardOpenOption.WRITE
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.zip.CRC32
+
+/**
+ * [PublishJournal] in a fixed-size, memory-mapped ring buffer file.
+ *
+ * Records are written straight into the mapping and marked as delivered in place, so neither appends
+ * nor deliveries allocate more than the encoded update. The file never grows: when the buffer is full,
+ * [append] fails with an [IOException] until the oldest entries have been delivered.
+ * Dirty pages are forced to disk every [syncIntervalMillis] at most.
+ *
+ * The only per-entry state on the heap is the record offset, which is bounded by the buffer size.
+ *
+ * File layout: a [FILE_HEADER_BYTES] header with the read and write positions, followed by [capacity] bytes of records.
+ * Each record is `length | state | id | crc32 | payload`, padded to 8 bytes. A record which doesn't fit
+ * before the end of the buffer wraps around to the start, leaving a [PADDING] marker behind.
+ */
+class MappedRingBufferJournal(
+  file: File,
+  capacity: Long = 16L * 1024 * 1024,
+  syncIntervalMillis: Long = 50
+) : PublishJournal {
+
+  private val logger by logger(MappedRingBufferJournal::class.java.name)
+
+  private val channel: FileChannel
+  private val buffer: MappedByteBuffer
+  private val capacity: Int
+
+  // physical positions within the record area, `used` includes padding
+  private var head = 0
+  private var tail = 0
+  private var used = 0
+
+  // entries headId until nextId are in the buffer, delivered or not
+  private var headId = 1L
+  private var nextId = 1L
+  private var pendingCount = 0
+
+  // record offsets of the entries in the buffer, a ring starting at offsetsStart
+  private var offsets = IntArray(1024)
+  private var offsetsStart = 0
+
+  @Volatile
+  private var dirty = false
+  private var closed = false
+
+  private val syncer = Executors.newSingleThreadScheduledExecutor { runnable ->
+    Thread(runnable, "deployments-status-publisher journal sync").apply { isDaemon = true }
+  }
+
+  init {
+    require(capacity in MIN_CAPACITY..Int.MAX_VALUE.toLong() - FILE_HEADER_BYTES) { "Unsupported ring buffer capacity $capacity" }
+    file.parentFile?.let { if (!it.isDirectory && !it.mkdirs()) throw IOException("Failed to create the journal directory $it") }
+    channel = FileChannel.open(file.toPath(), CREATE, READ, WRITE)
+    // an existing buffer keeps its size, pending entries would be lost otherwise
+    val existingCapacity = if (channel.size() >= FILE_HEADER_BYTES) readExistingCapacity() else null
+    if (existingCapacity != null && existingCapacity != capacity) {
+      logger.warn("Keeping the capacity $existingCapacity of the existing journal $file instead of $capacity")
+    }
+    this.capacity = align(existingCapacity ?: capacity).toInt()
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER_BYTES + this.capacity.toLong())
+    if (existingCapacity == null) {
+      initialize()
+    } else {
+      recover(file)
+    }
+    syncer.scheduleWithFixedDelay({ syncQuietly() }, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS)
+  }
+
+  @Synchronized
+  override fun append(update: DeploymentStatusUpdate): Long {
+    check(!closed) { "journal has been closed" }
+    val payload = update.encode()
+    val size = align(RECORD_HEADER_BYTES + payload.size.toLong())
+    if (size > capacity) {
+      throw IOException("Deployment status update of ${payload.size} bytes exceeds the journal capacity")
+    }
+    val position = reserve(size.toInt()) ?: throw IOException("Deployment status journal is full, $pendingCount updates pending")
+
+    val id = nextId++
+    val crc = CRC32()
+    crc.update(payload)
+    val record = FILE_HEADER_BYTES + position
+    buffer.putInt(record + 4, PENDING)
+    buffer.putLong(record + 8, id)
+    buffer.putInt(record + 16, crc.value.toInt())
+    for (i in payload.indices) {
+      buffer.put(record + RECORD_HEADER_BYTES + i, payload[i])
+    }
+    // the length is written last, so that a torn record is recognized as the end of the buffer
+    buffer.putInt(record, payload.size)
+
+    addOffset(position)
+    tail = (position + size).toInt()
+    used += size.toInt()
+    pendingCount++
+    writePositions()
+    dirty = true
+    return id
+  }
+
+  @Synchronized
+  override fun delivered(id: Long) {
+    check(!closed) { "journal has been closed" }
+    if (id < headId || id >= nextId) {
+      return
+    }
+    val record = FILE_HEADER_BYTES + offset(id)
+    if (buffer.getInt(record + 4) != PENDING) {
+      return
+    }
+    buffer.putInt(record + 4, DELIVERED)
+    pendingCount--
+    reclaim()
+    writePositions()
+    dirty = true
+  }
+
+  @Synchronized
+  override fun readPending(afterId: Long, max: Int): List<JournalEntry> {
+    val result = ArrayList<JournalEntry>()
+    var dropped = false
+    var id = maxOf(afterId + 1, headId)
+    while (id < nextId && result.size < max) {
+      val record = FILE_HEADER_BYTES + offset(id)
+      if (buffer.getInt(record + 4) == PENDING) {
+        val payload = ByteArray(buffer.getInt(record))
+        for (i in payload.indices) {
+          payload[i] = buffer.get(record + RECORD_HEADER_BYTES + i)
+        }
+        try {
+          result.add(JournalEntry(id, DeploymentStatusUpdate.decode(payload)))
+        } catch (e: IOException) {
+          logger.warn("Dropping unreadable journal entry $id: ${e.message}")
+          buffer.putInt(record + 4, DELIVERED)
+          pendingCount--
+          dropped = true
+        }
+      }
+      id++
+    }
+    if (dropped) {
+      // like a delivery, so that the space is freed and the entry isn't recovered after a restart
+      reclaim()
+      writePositions()
+      dirty = true
+    }
+    return result
+  }
+
+  @Synchronized
+  override fun pendingCount(): Int {
+    return pendingCount
+  }
+
+  override fun sync() {
+    synchronized(this) {
+      if (!dirty || closed) {
+        return
+      }
+      dirty = false
+    }
+    // forcing a mapping doesn't need the lock, concurrent writes are simply forced with the next sync
+    buffer.force()
+  }
+
+  override fun close() {
+    syncer.shutdown()
+    synchronized(this) {
+      if (closed) {
+        return
+      }
+      closed = true
+      buffer.force()
+      channel.close()
+    }
+  }
+
+  private fun syncQuietly() {
+    try {
+      sync()
+    } catch (e: Exception) {
+      logger.warn("Failed to sync the deployment status journal: ${e.message}")
+    }
+  }
+
+  /**
+   * @return the position for a record of [size] bytes, or null when the buffer is full
+   */
+  private fun reserve(size: Int): Int? {
+    if (used == 0) {
+      head = 0
+      tail = 0
+    }
+    if (tail >= head && used < capacity) {
+      if (capacity - tail >= size) {
+        return tail
+      }
+      // wrap around, the rest of the buffer stays unused
+      if (head < size) {
+        return null
+      }
+      if (tail < capacity) {
+        buffer.putInt(FILE_HEADER_BYTES + tail, PADDING)
+      }
+      used += capacity - tail
+      tail = 0
+      return 0
+    }
+    return if (head - tail >= size) tail else null
+  }
+
+  /**
+   * Frees the space of delivered entries at the head of the buffer.
+   */
+  private fun reclaim() {
+    while (headId < nextId) {
+      val record = FILE_HEADER_BYTES + offset(headId)
+      if (buffer.getInt(record + 4) != DELIVERED) {
+        return
+      }
+      val size = align(RECORD_HEADER_BYTES + buffer.getInt(record).toLong()).toInt()
+      head = offset(headId) + size
+      used -= size
+      removeHeadOffset()
+      if (headId < nextId && head != offset(headId)) {
+        // skip the padding in front of a wrapped record
+        used -= capacity - head
+        head = 0
+      }
+    }
+    if (used == 0) {
+      head = 0
+      tail = 0
+    }
+  }
+
+  private fun initialize() {
+    buffer.putInt(0, MAGIC)
+    buffer.putInt(4, FORMAT_VERSION)
+    buffer.putLong(8, capacity.toLong())
+    writePositions()
+    buffer.force()
+  }
+
+  private fun readExistingCapacity(): Long? {
+    val header = ByteBuffer.allocate(16)
+    channel.read(header, 0)
+    header.flip()
+    if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+      return null
+    }
+    return header.getLong(8)
+  }
+
+  private fun recover(file: File) {
+    head = buffer.getLong(16).toInt()
+    headId = buffer.getLong(32)
+    val lastNextId = buffer.getLong(40)
+    nextId = headId
+    used = 0
+    var position = head
+    val crc = CRC32()
+    // walks the records in the order they were written and stops at the first one which is incomplete
+    while (nextId < lastNextId) {
+      if (position == capacity || buffer.getInt(FILE_HEADER_BYTES + position) == PADDING) {
+        used += capacity - position
+        position = 0
+      }
+      val record = FILE_HEADER_BYTES + position
+      val length = buffer.getInt(record)
+      val size = align(RECORD_HEADER_BYTES + length.toLong())
+      val state = buffer.getInt(record + 4)
+      if (length < 0 || position + size > capacity || used + size > capacity || buffer.getLong(record + 8) != nextId || (state != PENDING && state != DELIVERED)) {
+        break
+      }
+      crc.reset()
+      for (i in 0 until length) {
+        crc.update(buffer.get(record + RECORD_HEADER_BYTES + i).toInt())
+      }
+      if (crc.value.toInt() != buffer.getInt(record + 16)) {
+        break
+      }
+      addOffset(position)
+      nextId++
+      if (state == PENDING) {
+        pendingCount++
+      }
+      position += size.toInt()
+      used += size.toInt()
+    }
+    if (nextId < lastNextId) {
+      logger.warn("Truncating the deployment status journal $file after entry ${nextId - 1}, ${lastNextId - nextId} entries are incomplete")
+    }
+    tail = position
+    reclaim()
+    writePositions()
+  }
+
+  private fun writePositions() {
+    buffer.putLong(16, head.toLong())
+    buffer.putLong(24, tail.toLong())
+    buffer.putLong(32, headId)
+    buffer.putLong(40, nextId)
+  }
+
+  private fun offset(id: Long): Int {
+    return offsets[(offsetsStart + (id - headId).toInt()) % offsets.size]
+  }
+
+  private fun addOffset(position: Int) {
+    val count = (nextId - headId).toInt()
+    if (count == offsets.size) {
+      val grown = IntArray(offsets.size * 2)
+      for (i in 0 until count) {
+        grown[i] = offsets[(offsetsStart + i) % offsets.size]
+      }
+      offsets = grown
+      offsetsStart = 0
+    }
+    offsets[(offsetsStart + count) % offsets.size] = position
+  }
+
+  private fun removeHeadOffset() {
+    offsetsStart = (offsetsStart + 1) % offsets.size
+    headId++
+  }
+
+  companion object {
+
+    private const val MAGIC = 0x44535052 // "DSPR"
+    private const val FORMAT_VERSION = 1
+
+    private const val FILE_HEADER_BYTES = 64
+    private const val RECORD_HEADER_BYTES = 24
+    private const val MIN_CAPACITY = 4096L
+
+    private const val PENDING = 1
+    private const val DELIVERED = 2
+    private const val PADDING = -1
+
+    private fun align(size: Long): Long {
+      return (size + 7) and 7L.inv()
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package de.gesellix.teamcity.deployments.server.outbox
+
+import java.io.Closeable
+
+/**
+ * Persistent queue of [DeploymentStatusUpdate]s: entries stay pending until they are marked as delivered.
+ *
+ * Implementations must be thread safe. Pending entries are read back from storage on demand,
+ * so that a large backlog doesn't have to be kept on the heap.
+ */
+interface PublishJournal : Closeable {
+
+  /**
+   * @return the id of the new entry, ids are increasing in the order of appends
+   */
+  fun append(update: DeploymentStatusUpdate): Long
+
+  /**
+   * Marks the entry [id] as delivered, so that it is neither returned by [readPending] nor replayed after a restart.
+   */
+  fun delivered(id: Long)
+
+  /**
+   * @return up to [max] pending entries with an id greater than [afterId], in the order they were appended
+   */
+  fun readPending(afterId: Long, max: Int): List<JournalEntry>
+
+  fun pendingCount(): Int
+
+  /**
+   * Forces appended entries to the storage device.
+   */
+  fun sync()
+}
+
+class JournalEntry(val id: Long, val update: DeploymentStatusUpdate)
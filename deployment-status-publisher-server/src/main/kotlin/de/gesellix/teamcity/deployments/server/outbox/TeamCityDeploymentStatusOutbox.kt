@@ -0,0 +1,39 @@
+package de.gesellix.teamcity.deployments.server.outbox
+
+import de.gesellix.teamcity.deployments.server.github.INTERMEDIATE_STATE_DELAY_SECONDS_PROPERTY_NAME
+import jetbrains.buildServer.serverSide.ServerPaths
+import jetbrains.buildServer.serverSide.TeamCityProperties
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+const val OUTBOX_ENABLED_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.outbox.enabled"
+const val OUTBOX_MAX_AGE_HOURS_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.outbox.maxAgeHours"
+const val OUTBOX_JOURNAL_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.outbox.journal"
+const val OUTBOX_RING_BUFFER_SIZE_MB_PROPERTY_NAME = "teamcity.deploymentsStatusPublisher.outbox.ringBufferSizeMb"
+
+/**
+ * [DeploymentStatusOutbox] configured by TeamCity internal properties, its journal lives in the plugin data directory.
+ *
+ * The journal defaults to [AppendOnlyPublishJournal], which grows with the backlog.
+ * `ring` selects a [MappedRingBufferJournal] of fixed size instead.
+ */
+class TeamCityDeploymentStatusOutbox(serverPaths: ServerPaths) : DeploymentStatusOutbox(
+  journalFactory = { openJournal(File(serverPaths.pluginDataDirectory, "deployments-status-publisher/outbox")) },
+  enabled = TeamCityProperties.getBooleanOrTrue(OUTBOX_ENABLED_PROPERTY_NAME),
+  maxAgeMillis = TimeUnit.HOURS.toMillis(TeamCityProperties.getInteger(OUTBOX_MAX_AGE_HOURS_PROPERTY_NAME, 24).toLong()),
+  intermediateStateDelayMillis = TeamCityProperties.getInteger(INTERMEDIATE_STATE_DELAY_SECONDS_PROPERTY_NAME, 30) * 1000L
+) {
+
+  companion object {
+
+    private fun openJournal(directory: File): PublishJournal {
+      return when (TeamCityProperties.getProperty(OUTBOX_JOURNAL_PROPERTY_NAME, "segments")) {
+        "ring" -> MappedRingBufferJournal(
+          File(directory, "ring.journal"),
+          TeamCityProperties.getInteger(OUTBOX_RING_BUFFER_SIZE_MB_PROPERTY_NAME, 16) * 1024L * 1024L
+        )
+        else -> AppendOnlyPublishJournal(directory)
+      }
+    }
+  }
+}
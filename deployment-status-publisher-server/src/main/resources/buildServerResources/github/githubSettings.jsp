@@ -46,7 +46,9 @@
             <br />
             It is required to have the following permissions:
             <strong><em>repo:status</em></strong> and
-            <strong><em>public_repo</em></strong> or <strong><em>repo</em></strong> depending on the repository type
+            <strong><em>public_repo</em></strong> or <strong><em>repo</em></strong> depending on the repository type.
+            <br />
+            Several tokens separated by commas share the load by their remaining rate limit.
           </span>
 
         <c:if test="${testConnectionSupported}">
@@ -121,5 +123,34 @@
     </tr>
   </props:selectSectionPropertyContent>
 
+  <props:selectSectionPropertyContent value="${keys.authenticationTypeAppValue}" caption="GitHub App">
+    <tr>
+      <th><label for="${keys.appIdKey}">App ID: <l:star/></label></th>
+      <td>
+        <props:textProperty name="${keys.appIdKey}" className="mediumField"/>
+        <span class="error" id="error_${keys.appIdKey}"></span>
+      </td>
+    </tr>
+    <tr>
+      <th><label for="${keys.appPrivateKeyKey}">Private Key: <l:star/></label></th>
+      <td>
+        <props:passwordProperty name="${keys.appPrivateKeyKey}" className="longField"/>
+        <span class="error" id="error_${keys.appPrivateKeyKey}"></span>
+        <span class="smallNote">
+            PEM encoded private key of the <a href="https://docs.github.com/en/free-pro-team@latest/developers/apps/authenticating-with-github-apps" target="_blank">GitHub App</a>.
+            The app requires read &amp; write access to <strong><em>Deployments</em></strong> and read access to <strong><em>Pull requests</em></strong>.
+          </span>
+      </td>
+    </tr>
+    <tr>
+      <th><label for="${keys.appInstallationIdKey}">Installation ID:</label></th>
+      <td>
+        <props:textProperty name="${keys.appInstallationIdKey}" className="mediumField"/>
+        <span class="error" id="error_${keys.appInstallationIdKey}"></span>
+        <span class="smallNote">Optional, by default the installation on the repository owner's account is used</span>
+      </td>
+    </tr>
+  </props:selectSectionPropertyContent>
+
 </props:selectSectionProperty>
 
@@ -0,0 +1,90 @@
+package de.gesellix.teamcity.deployments.server.github;
+
+import de.gesellix.github.client.data.Deployment;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class DeploymentCreationsTest {
+
+  private static final String FEATURE_ID = "MY_FEATURE_ID";
+
+  private AtomicLong myClock;
+  private DeploymentCreations myCreations;
+
+  @BeforeMethod
+  public void setUp() {
+    myClock = new AtomicLong(1000);
+    myCreations = new DeploymentCreations(60_000, myClock::get);
+  }
+
+  public void should_find_creation_started_while_queued() {
+    CompletableFuture<Deployment> creation = new CompletableFuture<>();
+    myCreations.register(1, FEATURE_ID, 2, "sha1", creation);
+
+    then(myCreations.find(1, FEATURE_ID, 2, "sha1")).isSameAs(creation);
+    creation.complete(new Deployment(42));
+    then(myCreations.await(creation, 1000).getId()).isEqualTo(42);
+  }
+
+  public void should_not_find_creation_of_another_build_root_or_commit() {
+    myCreations.register(1, FEATURE_ID, 2, "sha1", new CompletableFuture<>());
+
+    then(myCreations.find(1, FEATURE_ID, 2, "sha2")).isNull();
+    then(myCreations.find(1, FEATURE_ID, 3, "sha1")).isNull();
+    then(myCreations.find(1, "OTHER_FEATURE_ID", 2, "sha1")).isNull();
+    then(myCreations.find(4, FEATURE_ID, 2, "sha1")).isNull();
+  }
+
+  public void should_hand_out_creation_of_build_removed_from_queue_once() {
+    CompletableFuture<Deployment> creation = new CompletableFuture<>();
+    myCreations.register(1, FEATURE_ID, 2, "sha1", creation);
+
+    then(myCreations.remove(1, FEATURE_ID, 2)).isSameAs(creation);
+    then(myCreations.remove(1, FEATURE_ID, 2)).isNull();
+    then(myCreations.find(1, FEATURE_ID, 2, "sha1")).isNull();
+    then(myCreations.size()).isZero();
+  }
+
+  public void should_stop_waiting_for_slow_creation() {
+    CompletableFuture<Deployment> creation = new CompletableFuture<>();
+
+    long started = System.nanoTime();
+    then(myCreations.await(creation, 100)).isNull();
+    then(System.nanoTime() - started).isLessThan(5_000_000_000L);
+  }
+
+  public void should_not_wait_for_failed_creation() {
+    CompletableFuture<Deployment> creation = new CompletableFuture<>();
+    creation.completeExceptionally(new IOException("GitHub unavailable"));
+
+    then(myCreations.await(creation, 10_000)).isNull();
+  }
+
+  public void should_forget_creation_which_failed_or_created_nothing() {
+    CompletableFuture<Deployment> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IOException("GitHub unavailable"));
+    myCreations.register(1, FEATURE_ID, 2, "sha1", failed);
+    myCreations.register(3, FEATURE_ID, 2, "sha3", CompletableFuture.completedFuture(null));
+
+    then(myCreations.find(1, FEATURE_ID, 2, "sha1")).isNull();
+    then(myCreations.find(3, FEATURE_ID, 2, "sha3")).isNull();
+    then(myCreations.size()).isZero();
+  }
+
+  public void should_evict_creations_after_retention() {
+    myCreations.register(1, FEATURE_ID, 2, "sha1", new CompletableFuture<>());
+    myClock.addAndGet(60_001);
+    myCreations.register(3, FEATURE_ID, 2, "sha3", new CompletableFuture<>());
+
+    then(myCreations.size()).isEqualTo(1);
+    then(myCreations.find(1, FEATURE_ID, 2, "sha1")).isNull();
+    then(myCreations.find(3, FEATURE_ID, 2, "sha3")).isNotNull();
+  }
+}
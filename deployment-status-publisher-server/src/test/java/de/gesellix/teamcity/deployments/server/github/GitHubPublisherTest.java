@@ -12,6 +12,8 @@ import de.gesellix.teamcity.deployments.server.github.api.impl.GitHubApiFactoryI
 import jetbrains.buildServer.messages.Status;
 import jetbrains.buildServer.serverSide.BasePropertiesModel;
 import jetbrains.buildServer.serverSide.BuildRevision;
+import jetbrains.buildServer.serverSide.SFinishedBuild;
+import jetbrains.buildServer.serverSide.SRunningBuild;
 import jetbrains.buildServer.serverSide.TeamCityProperties;
 import jetbrains.buildServer.vcs.VcsRootInstance;
 import okhttp3.mockwebserver.MockResponse;
@@ -19,14 +21,18 @@ import org.jetbrains.annotations.NotNull;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static de.gesellix.teamcity.deployments.server.ConstantsKt.GITHUB_SERVER;
 import static de.gesellix.teamcity.deployments.server.ConstantsKt.GITHUB_TOKEN;
+import static de.gesellix.teamcity.deployments.server.github.DeploymentsStatusUpdaterKt.GRAPHQL_ENABLED_PROPERTY_NAME;
 import static org.assertj.core.api.BDDAssertions.then;
 
 @Test
@@ -75,6 +81,30 @@ public class GitHubPublisherTest extends HttpPublisherTest {
     }
   }
 
+  public void should_create_deployment_on_start_when_creation_while_queued_failed() throws Exception {
+    SRunningBuild build = startBuildInCurrentBranch(myBuildType);
+    CompletableFuture<Deployment> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IOException("GitHub unavailable"));
+    myDeploymentsStatusUpdater.getDeploymentCreations().register(build.getBuildId(), FEATURE_ID, myRevision.getRoot().getId(), REVISION, failed);
+    mockWebServer.enqueue(new MockResponse().setResponseCode(201).setBody(moshi.adapter(Deployment.class).toJson(new Deployment(DEPLOYMENT_ID))));
+
+    then(myPublisher.buildStarting(build, myRevision)).isEqualTo(String.valueOf(DEPLOYMENT_ID));
+    then(getRequestAsString()).isNotNull().matches("POST /repos/owner/project/deployments .*");
+  }
+
+  public void should_look_deployment_missed_by_graphql_up_with_rest_api() throws Exception {
+    setInternalProperty(GRAPHQL_ENABLED_PROPERTY_NAME, "true");
+    SFinishedBuild build = createBuildInCurrentBranch(myBuildType, Status.NORMAL);
+    // the deployment isn't among the latest ones of the commit
+    mockWebServer.enqueue(new MockResponse().setResponseCode(200).setBody("{\"data\": {\"repository\": {\"c0\": {\"deployments\": {\"nodes\": []}}}}}"));
+    int requestCount = enqueueRequests(EventToTest.FINISHED, build.getBuildId()) + 1;
+    myPublisher.buildFinished(build, myRevision);
+    awaitAllRequests(requestCount, 5, TimeUnit.SECONDS);
+    then(mockWebServer.takeRequest().getPath()).isEqualTo("/graphql");
+    then(mockWebServer.takeRequest().getPath()).startsWith("/repos/owner/project/deployments?");
+    then(getRequestAsString()).isNotNull().matches(myExpectedRegExps.get(EventToTest.FINISHED));
+  }
+
   @BeforeMethod
   @Override
   protected void setUp() throws Exception {
@@ -0,0 +1,149 @@
+package de.gesellix.teamcity.deployments.server.github;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.testng.Assert.fail;
+
+@Test
+public class KeyedSerialExecutorTest {
+
+  private ExecutorService myExecutor;
+  private KeyedSerialExecutor<String> mySerialExecutor;
+
+  @BeforeMethod
+  public void setUp() {
+    myExecutor = Executors.newFixedThreadPool(8);
+    mySerialExecutor = new KeyedSerialExecutor<>(myExecutor);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    myExecutor.shutdownNow();
+  }
+
+  public void should_run_tasks_of_a_key_in_order() throws InterruptedException {
+    List<Integer> first = Collections.synchronizedList(new ArrayList<>());
+    List<Integer> second = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch done = new CountDownLatch(2000);
+    for (int i = 0; i < 1000; i++) {
+      int value = i;
+      mySerialExecutor.execute("first", () -> {
+        first.add(value);
+        done.countDown();
+      });
+      mySerialExecutor.execute("second", () -> {
+        second.add(value);
+        done.countDown();
+      });
+    }
+
+    then(done.await(10, TimeUnit.SECONDS)).isTrue();
+    for (int i = 0; i < 1000; i++) {
+      then(first.get(i)).isEqualTo(i);
+      then(second.get(i)).isEqualTo(i);
+    }
+  }
+
+  public void should_run_different_keys_in_parallel() throws InterruptedException {
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch other = new CountDownLatch(1);
+    mySerialExecutor.execute("blocked", () -> {
+      try {
+        blocked.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    mySerialExecutor.execute("other", other::countDown);
+
+    then(other.await(10, TimeUnit.SECONDS)).isTrue();
+    blocked.countDown();
+  }
+
+  public void should_retire_queue_rejected_by_shut_down_executor() {
+    myExecutor.shutdown();
+    for (int i = 0; i < 2; i++) {
+      try {
+        mySerialExecutor.execute("rejected", () -> fail("must not run"));
+        fail("RejectedExecutionException expected");
+      } catch (RejectedExecutionException e) {
+        // a retired queue must not swallow the next task
+      }
+    }
+
+    then(mySerialExecutor.getActiveKeys()).isZero();
+    then(mySerialExecutor.drainQueued()).isEmpty();
+  }
+
+  public void should_move_waiting_queue_ahead_when_more_urgent_task_joins() throws InterruptedException {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+      new PriorityBlockingQueue<>(16, Comparator.comparingLong((Runnable it) -> ((KeyedSerialExecutor.Ranked) it).getRank())));
+    try {
+      KeyedSerialExecutor<String> serialExecutor = new KeyedSerialExecutor<>(executor, executor.getQueue());
+      CountDownLatch blocked = new CountDownLatch(1);
+      List<String> order = Collections.synchronizedList(new ArrayList<>());
+      CountDownLatch done = new CountDownLatch(3);
+      serialExecutor.execute("blocker", new RankedTask(0, () -> {
+        try {
+          blocked.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }));
+      serialExecutor.execute("a", new RankedTask(300, () -> {
+        order.add("a1");
+        done.countDown();
+      }));
+      serialExecutor.execute("b", new RankedTask(200, () -> {
+        order.add("b");
+        done.countDown();
+      }));
+      serialExecutor.execute("a", new RankedTask(100, () -> {
+        order.add("a2");
+        done.countDown();
+      }));
+      blocked.countDown();
+
+      then(done.await(10, TimeUnit.SECONDS)).isTrue();
+      then(order).containsExactly("a1", "a2", "b");
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static class RankedTask implements Runnable, KeyedSerialExecutor.Ranked {
+
+    private final long myRank;
+    private final Runnable myTask;
+
+    RankedTask(long rank, Runnable task) {
+      myRank = rank;
+      myTask = task;
+    }
+
+    @Override
+    public long getRank() {
+      return myRank;
+    }
+
+    @Override
+    public void run() {
+      myTask.run();
+    }
+  }
+}
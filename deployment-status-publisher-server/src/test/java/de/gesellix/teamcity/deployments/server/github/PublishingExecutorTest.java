@@ -0,0 +1,224 @@
+package de.gesellix.teamcity.deployments.server.github;
+
+import de.gesellix.github.client.data.DeploymentStatusState;
+import de.gesellix.teamcity.deployments.server.outbox.AppendOnlyPublishJournal;
+import de.gesellix.teamcity.deployments.server.outbox.DeploymentStatusOutbox;
+import de.gesellix.teamcity.deployments.server.outbox.DeploymentStatusUpdate;
+import jetbrains.buildServer.util.FileUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishingExecutorTest {
+
+  private static final long INTERMEDIATE_STATE_DELAY = 30_000;
+
+  private CountDownLatch myBlocked;
+  private List<String> mySent;
+  private PublishingExecutor myExecutor;
+
+  @BeforeMethod
+  public void setUp() {
+    myBlocked = new CountDownLatch(1);
+    mySent = Collections.synchronizedList(new ArrayList<>());
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    myBlocked.countDown();
+    if (myExecutor != null) {
+      myExecutor.shutdown();
+    }
+  }
+
+  public void should_send_final_states_ahead_of_intermediate_ones() throws InterruptedException {
+    myExecutor = new PublishingExecutor(1, 100, OverflowPolicy.SPILL, null, 1000, INTERMEDIATE_STATE_DELAY);
+    long now = System.currentTimeMillis();
+    CountDownLatch done = new CountDownLatch(2);
+    blockThread();
+
+    execute(update(1, DeploymentStatusState.in_progress, now - 1000), done);
+    execute(update(2, DeploymentStatusState.in_progress, now), done);
+    // supersedes the queued intermediate state, the deployment has to move ahead nonetheless
+    execute(update(2, DeploymentStatusState.success, now), done);
+    myBlocked.countDown();
+
+    then(done.await(10, TimeUnit.SECONDS)).isTrue();
+    then(mySent).containsExactly("2 success", "1 in_progress");
+  }
+
+  public void should_send_intermediate_states_which_have_been_waiting_too_long_first() throws InterruptedException {
+    myExecutor = new PublishingExecutor(1, 100, OverflowPolicy.SPILL, null, 1000, INTERMEDIATE_STATE_DELAY);
+    long now = System.currentTimeMillis();
+    CountDownLatch done = new CountDownLatch(6);
+    blockThread();
+
+    execute(update(1, DeploymentStatusState.in_progress, now), done);
+    execute(update(2, DeploymentStatusState.in_progress, now - 2 * INTERMEDIATE_STATE_DELAY), done);
+    for (long buildId = 3; buildId <= 6; buildId++) {
+      execute(update(buildId, DeploymentStatusState.success, now), done);
+    }
+    myBlocked.countDown();
+
+    then(done.await(10, TimeUnit.SECONDS)).isTrue();
+    then(mySent).hasSize(6);
+    then(mySent.get(0)).isEqualTo("2 in_progress");
+    then(mySent.get(5)).isEqualTo("1 in_progress");
+  }
+
+  public void should_coalesce_superseded_updates() throws InterruptedException {
+    myExecutor = new PublishingExecutor(1, 100, OverflowPolicy.SPILL, null, 1000, INTERMEDIATE_STATE_DELAY);
+    long now = System.currentTimeMillis();
+    CountDownLatch done = new CountDownLatch(2);
+    blockThread();
+
+    execute(update(1, DeploymentStatusState.pending, now), done);
+    execute(update(1, DeploymentStatusState.in_progress, now), done);
+    execute(update(2, DeploymentStatusState.in_progress, now), done);
+    execute(update(1, DeploymentStatusState.success, now), done);
+    then(myExecutor.getCoalescedCount()).isEqualTo(2);
+    then(myExecutor.getQueueSize()).isEqualTo(2);
+    myBlocked.countDown();
+
+    then(done.await(10, TimeUnit.SECONDS)).isTrue();
+    then(mySent).containsExactly("1 success", "2 in_progress");
+  }
+
+  public void should_not_coalesce_final_states_into_intermediate_ones() throws InterruptedException {
+    myExecutor = new PublishingExecutor(1, 100, OverflowPolicy.SPILL, null, 1000, INTERMEDIATE_STATE_DELAY);
+    long now = System.currentTimeMillis();
+    CountDownLatch done = new CountDownLatch(2);
+    blockThread();
+
+    execute(update(1, DeploymentStatusState.failure, now), done);
+    execute(update(1, DeploymentStatusState.in_progress, now), done);
+    myBlocked.countDown();
+
+    then(done.await(10, TimeUnit.SECONDS)).isTrue();
+    then(myExecutor.getCoalescedCount()).isZero();
+    then(mySent).containsExactly("1 failure", "1 in_progress");
+  }
+
+  public void should_spill_overflowing_updates_to_the_outbox() throws IOException {
+    File directory = Files.createTempDirectory("outbox").toFile();
+    DeploymentStatusOutbox outbox = new DeploymentStatusOutbox(() -> new AppendOnlyPublishJournal(directory, 4096, 50),
+      true, 3_600_000, 64, 1000, 300_000, INTERMEDIATE_STATE_DELAY, System::currentTimeMillis);
+    try {
+      myExecutor = new PublishingExecutor(1, 1, OverflowPolicy.SPILL, outbox, 1000, INTERMEDIATE_STATE_DELAY);
+      blockThread();
+
+      execute(update(1, DeploymentStatusState.in_progress, System.currentTimeMillis()));
+      execute(update(2, DeploymentStatusState.success, System.currentTimeMillis()));
+
+      then(myExecutor.getOverflowCount()).isEqualTo(1);
+      then(myExecutor.getQueueSize()).isEqualTo(1);
+      then(outbox.pendingCount()).isEqualTo(1);
+      then(mySent).isEmpty();
+    } finally {
+      outbox.shutdown();
+      FileUtil.delete(directory);
+    }
+  }
+
+  public void should_send_overflowing_updates_on_the_caller_without_outbox() {
+    myExecutor = new PublishingExecutor(1, 1, OverflowPolicy.SPILL, null, 1000, INTERMEDIATE_STATE_DELAY);
+    blockThread();
+
+    execute(update(1, DeploymentStatusState.in_progress, System.currentTimeMillis()));
+    execute(update(2, DeploymentStatusState.in_progress, System.currentTimeMillis()));
+
+    then(myExecutor.getOverflowCount()).isEqualTo(1);
+    then(mySent).containsExactly("2 in_progress");
+  }
+
+  public void should_drop_overflowing_intermediate_states_but_send_final_ones() {
+    myExecutor = new PublishingExecutor(1, 1, OverflowPolicy.DROP_SUPERSEDED, null, 1000, INTERMEDIATE_STATE_DELAY);
+    blockThread();
+
+    execute(update(1, DeploymentStatusState.in_progress, System.currentTimeMillis()));
+    execute(update(2, DeploymentStatusState.in_progress, System.currentTimeMillis()));
+    execute(update(3, DeploymentStatusState.failure, System.currentTimeMillis()));
+
+    then(myExecutor.getOverflowCount()).isEqualTo(2);
+    then(myExecutor.getDroppedCount()).isEqualTo(1);
+    then(mySent).containsExactly("3 failure");
+  }
+
+  public void should_not_replace_queued_final_state_by_overflowing_intermediate_one() throws InterruptedException {
+    myExecutor = new PublishingExecutor(1, 1, OverflowPolicy.DROP_SUPERSEDED, null, 1000, INTERMEDIATE_STATE_DELAY);
+    CountDownLatch done = new CountDownLatch(1);
+    blockThread();
+
+    execute(update(1, DeploymentStatusState.success, System.currentTimeMillis()), done);
+    execute(update(1, DeploymentStatusState.in_progress, System.currentTimeMillis()));
+    myBlocked.countDown();
+
+    then(done.await(10, TimeUnit.SECONDS)).isTrue();
+    then(myExecutor.getOverflowCount()).isEqualTo(1);
+    then(myExecutor.getDroppedCount()).isEqualTo(1);
+    then(mySent).containsExactly("1 success");
+  }
+
+  public void should_send_overflowing_updates_on_the_caller() {
+    myExecutor = new PublishingExecutor(1, 1, OverflowPolicy.CALLER_RUNS, null, 1000, INTERMEDIATE_STATE_DELAY);
+    blockThread();
+
+    execute(update(1, DeploymentStatusState.in_progress, System.currentTimeMillis()));
+    execute(update(2, DeploymentStatusState.in_progress, System.currentTimeMillis()));
+    execute(update(3, DeploymentStatusState.success, System.currentTimeMillis()));
+
+    then(myExecutor.getOverflowCount()).isEqualTo(2);
+    then(myExecutor.getDroppedCount()).isZero();
+    then(mySent).containsExactly("2 in_progress", "3 success");
+  }
+
+  public void should_handle_updates_after_shutdown_as_overflow() {
+    myExecutor = new PublishingExecutor(1, 100, OverflowPolicy.CALLER_RUNS, null, 1000, INTERMEDIATE_STATE_DELAY);
+    myExecutor.shutdown();
+
+    for (long buildId = 1; buildId <= 3; buildId++) {
+      execute(update(buildId, DeploymentStatusState.success, System.currentTimeMillis()));
+    }
+
+    then(mySent).containsExactly("1 success", "2 success", "3 success");
+    then(myExecutor.getQueueSize()).isZero();
+  }
+
+  private void blockThread() {
+    myExecutor.supplyUrgently(() -> {
+      try {
+        myBlocked.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return null;
+    });
+  }
+
+  private void execute(DeploymentStatusUpdate update) {
+    execute(update, new CountDownLatch(1));
+  }
+
+  private void execute(DeploymentStatusUpdate update, CountDownLatch done) {
+    myExecutor.execute(update, () -> {
+      mySent.add(update.getBuildId() + " " + update.getStatus());
+      done.countDown();
+    });
+  }
+
+  private static DeploymentStatusUpdate update(long buildId, DeploymentStatusState status, long createdAtMillis) {
+    return new DeploymentStatusUpdate(buildId, "MY_FEATURE_ID", 1, "314159", "refs/heads/main", status, "TeamCity build " + status, "test", createdAtMillis);
+  }
+}
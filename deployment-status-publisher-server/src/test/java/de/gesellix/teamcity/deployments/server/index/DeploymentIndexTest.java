@@ -0,0 +1,114 @@
+package de.gesellix.teamcity.deployments.server.index;
+
+import jetbrains.buildServer.util.FileUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class DeploymentIndexTest {
+
+  private File myDirectory;
+  private File myFile;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    myDirectory = Files.createTempDirectory("index").toFile();
+    myFile = new File(myDirectory, "deployments.index");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtil.delete(myDirectory);
+  }
+
+  public void should_find_deployments_after_reopen() {
+    try (DeploymentIndex index = new DeploymentIndex(myFile, 100)) {
+      index.put(1, 101, "sha1", "production");
+      index.put(2, 102, "sha2", "staging");
+    }
+
+    try (DeploymentIndex index = new DeploymentIndex(myFile, 100)) {
+      then(index.size()).isEqualTo(2);
+      then(index.find(1, "sha1", "production")).isEqualTo(101L);
+      then(index.find(2, "sha2", "staging")).isEqualTo(102L);
+      then(index.getHitCount()).isEqualTo(2);
+    }
+  }
+
+  public void should_miss_other_commits_and_environments() {
+    try (DeploymentIndex index = new DeploymentIndex(myFile, 100)) {
+      index.put(1, 101, "sha1", "production");
+
+      then(index.find(1, "sha2", "production")).isNull();
+      then(index.find(1, "sha1", "staging")).isNull();
+      then(index.find(2, "sha1", "production")).isNull();
+      then(index.getMissCount()).isEqualTo(3);
+    }
+  }
+
+  public void should_evict_oldest_entries() {
+    try (DeploymentIndex index = new DeploymentIndex(myFile, 3)) {
+      for (int i = 1; i <= 5; i++) {
+        index.put(i, 100 + i, "sha" + i, "production");
+      }
+      then(index.size()).isEqualTo(3);
+      then(index.find(2, "sha2", "production")).isNull();
+      then(index.find(3, "sha3", "production")).isEqualTo(103L);
+    }
+
+    try (DeploymentIndex index = new DeploymentIndex(myFile, 3)) {
+      then(index.size()).isEqualTo(3);
+      then(index.find(5, "sha5", "production")).isEqualTo(105L);
+    }
+  }
+
+  public void should_compact_replaced_records() {
+    try (DeploymentIndex index = new DeploymentIndex(myFile, 10)) {
+      for (int i = 0; i < 5000; i++) {
+        index.put(i % 10, i, "sha", "production");
+      }
+    }
+    then(myFile.length()).isLessThan(1100L * 40);
+
+    try (DeploymentIndex index = new DeploymentIndex(myFile, 10)) {
+      then(index.size()).isEqualTo(10);
+      then(index.find(9, "sha", "production")).isEqualTo(4999L);
+    }
+  }
+
+  public void should_truncate_torn_record() throws IOException {
+    try (DeploymentIndex index = new DeploymentIndex(myFile, 100)) {
+      index.put(1, 101, "sha1", "production");
+      index.put(2, 102, "sha2", "production");
+    }
+    try (RandomAccessFile file = new RandomAccessFile(myFile, "rw")) {
+      file.setLength(file.length() - 3);
+    }
+
+    try (DeploymentIndex index = new DeploymentIndex(myFile, 100)) {
+      then(index.find(1, "sha1", "production")).isEqualTo(101L);
+      then(index.find(2, "sha2", "production")).isNull();
+      index.put(3, 103, "sha3", "production");
+    }
+
+    try (DeploymentIndex index = new DeploymentIndex(myFile, 100)) {
+      then(index.size()).isEqualTo(2);
+      then(index.find(3, "sha3", "production")).isEqualTo(103L);
+    }
+  }
+
+  public void should_work_in_memory_without_file() {
+    try (DeploymentIndex index = new DeploymentIndex(null, 100)) {
+      index.put(1, 101, "sha1", "production");
+      then(index.find(1, "sha1", "production")).isEqualTo(101L);
+    }
+  }
+}
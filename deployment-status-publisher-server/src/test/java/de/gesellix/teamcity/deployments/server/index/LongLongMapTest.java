@@ -0,0 +1,149 @@
+package de.gesellix.teamcity.deployments.server.index;
+
+import jetbrains.buildServer.util.FileUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.testng.Assert.fail;
+
+@Test
+public class LongLongMapTest {
+
+  private static final long MISSING = -1;
+
+  private File myDirectory;
+  private AtomicLong myClock;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    myDirectory = Files.createTempDirectory("map").toFile();
+    myClock = new AtomicLong(1000);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtil.delete(myDirectory);
+  }
+
+  public void should_behave_like_a_map() throws IOException {
+    try (LongLongMap map = new LongLongMap(2000, null, myClock::get)) {
+      Map<Long, Long> expected = new HashMap<>();
+      Random random = new Random(42);
+      for (int i = 0; i < 20000; i++) {
+        long key = random.nextInt(1500) - 500;
+        if (random.nextInt(4) == 0) {
+          then(map.remove(key)).isEqualTo(expected.remove(key) != null);
+        } else {
+          map.put(key, i);
+          expected.put(key, (long) i);
+        }
+      }
+      then(map.size()).isEqualTo(expected.size());
+      for (long key = -500; key < 1000; key++) {
+        then(map.get(key, MISSING)).isEqualTo(expected.getOrDefault(key, MISSING));
+      }
+    }
+  }
+
+  public void should_evict_least_recently_used_entries() throws IOException {
+    try (LongLongMap map = new LongLongMap(4, null, myClock::get)) {
+      for (long key = 1; key <= 4; key++) {
+        map.put(key, key * 10);
+      }
+      then(map.get(1, MISSING)).isEqualTo(10);
+
+      map.put(5, 50);
+
+      then(map.size()).isEqualTo(4);
+      then(map.containsKey(1)).isTrue();
+      then(map.containsKey(2)).isFalse();
+      then(map.containsKey(5)).isTrue();
+    }
+  }
+
+  public void should_evict_entries_by_age() throws IOException {
+    try (LongLongMap map = new LongLongMap(100, null, myClock::get)) {
+      for (long key = 0; key < 50; key++) {
+        map.put(key, key);
+      }
+      myClock.addAndGet(60_000);
+      for (long key = 50; key < 60; key++) {
+        map.put(key, key);
+      }
+      then(map.get(7, MISSING)).isEqualTo(7);
+
+      then(map.evictOlderThan(myClock.get() - 1000)).isEqualTo(49);
+      then(map.size()).isEqualTo(11);
+      then(map.get(7, MISSING)).isEqualTo(7);
+      then(map.get(8, MISSING)).isEqualTo(MISSING);
+      then(map.get(55, MISSING)).isEqualTo(55);
+    }
+  }
+
+  public void should_restore_snapshot() throws IOException {
+    File snapshot = new File(myDirectory, "map.snapshot");
+    try (LongLongMap map = new LongLongMap(100, null, myClock::get)) {
+      for (long key = 0; key < 100; key++) {
+        map.put(key, key + 1000);
+      }
+      map.snapshot(snapshot);
+    }
+
+    try (LongLongMap map = new LongLongMap(50, null, myClock::get)) {
+      map.restore(snapshot);
+      then(map.size()).isEqualTo(50);
+      then(map.get(99, MISSING)).isEqualTo(1099);
+      then(map.get(0, MISSING)).isEqualTo(MISSING);
+    }
+  }
+
+  public void should_reject_corrupt_snapshot() throws IOException {
+    File snapshot = new File(myDirectory, "map.snapshot");
+    try (LongLongMap map = new LongLongMap(100, null, myClock::get)) {
+      map.put(1, 2);
+      map.snapshot(snapshot);
+    }
+    try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+      file.seek(20);
+      file.write(0x7f);
+    }
+
+    try (LongLongMap map = new LongLongMap(100, null, myClock::get)) {
+      map.restore(snapshot);
+      fail("IOException expected");
+    } catch (IOException e) {
+      then(e.getMessage()).contains("corrupt");
+    }
+  }
+
+  public void should_keep_mapped_entries_across_reopen() throws IOException {
+    File file = new File(myDirectory, "map.bin");
+    try (LongLongMap map = new LongLongMap(100, file, myClock::get)) {
+      for (long key = 0; key < 80; key++) {
+        map.put(key, -key);
+      }
+      map.remove(10);
+    }
+
+    try (LongLongMap map = new LongLongMap(100, file, myClock::get)) {
+      then(map.size()).isEqualTo(79);
+      then(map.get(42, MISSING)).isEqualTo(-42);
+      then(map.get(10, MISSING)).isEqualTo(MISSING);
+    }
+
+    try (LongLongMap map = new LongLongMap(1000, file, myClock::get)) {
+      then(map.size()).isZero();
+    }
+  }
+}
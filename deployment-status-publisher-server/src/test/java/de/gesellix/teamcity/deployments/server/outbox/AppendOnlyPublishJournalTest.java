@@ -0,0 +1,93 @@
+package de.gesellix.teamcity.deployments.server.outbox;
+
+import de.gesellix.github.client.data.DeploymentStatusState;
+import jetbrains.buildServer.util.FileUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class AppendOnlyPublishJournalTest {
+
+  private File myDirectory;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    myDirectory = Files.createTempDirectory("journal").toFile();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtil.delete(myDirectory);
+  }
+
+  public void should_replay_pending_entries_after_reopen() throws IOException {
+    try (AppendOnlyPublishJournal journal = new AppendOnlyPublishJournal(myDirectory, 4096, 50)) {
+      long first = journal.append(update(1));
+      journal.append(update(2));
+      journal.append(update(3));
+      journal.delivered(first);
+    }
+
+    try (AppendOnlyPublishJournal journal = new AppendOnlyPublishJournal(myDirectory, 4096, 50)) {
+      then(journal.pendingCount()).isEqualTo(2);
+      then(buildIds(journal.readPending(0, 10))).containsExactly(2L, 3L);
+      then(journal.append(update(4))).isEqualTo(4);
+    }
+  }
+
+  public void should_delete_delivered_segments() throws IOException {
+    try (AppendOnlyPublishJournal journal = new AppendOnlyPublishJournal(myDirectory, 256, 50)) {
+      for (int i = 0; i < 100; i++) {
+        journal.append(update(i));
+      }
+      then(myDirectory.list()).hasSizeGreaterThan(10);
+
+      long afterId = 0;
+      List<JournalEntry> batch;
+      while (!(batch = journal.readPending(afterId, 7)).isEmpty()) {
+        for (JournalEntry entry : batch) {
+          journal.delivered(entry.getId());
+          afterId = entry.getId();
+        }
+      }
+
+      then(journal.pendingCount()).isZero();
+      then(myDirectory.list()).hasSize(1);
+    }
+  }
+
+  public void should_truncate_torn_records() throws IOException {
+    try (AppendOnlyPublishJournal journal = new AppendOnlyPublishJournal(myDirectory, 4096, 50)) {
+      journal.append(update(1));
+      journal.append(update(2));
+    }
+    File segment = myDirectory.listFiles()[0];
+    try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+      file.setLength(file.length() - 3);
+    }
+
+    try (AppendOnlyPublishJournal journal = new AppendOnlyPublishJournal(myDirectory, 4096, 50)) {
+      then(buildIds(journal.readPending(0, 10))).containsExactly(1L);
+      journal.append(update(3));
+      then(buildIds(journal.readPending(0, 10))).containsExactly(1L, 3L);
+    }
+  }
+
+  private static List<Long> buildIds(List<JournalEntry> entries) {
+    return entries.stream().map(entry -> entry.getUpdate().getBuildId()).collect(Collectors.toList());
+  }
+
+  private static DeploymentStatusUpdate update(long buildId) {
+    return new DeploymentStatusUpdate(buildId, "MY_FEATURE_ID", 1, "314159", "refs/heads/main", DeploymentStatusState.success, "TeamCity build finished", "test", System.currentTimeMillis());
+  }
+}
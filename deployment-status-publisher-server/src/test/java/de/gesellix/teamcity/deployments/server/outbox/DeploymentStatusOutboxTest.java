@@ -0,0 +1,98 @@
+package de.gesellix.teamcity.deployments.server.outbox;
+
+import de.gesellix.github.client.data.DeploymentStatusState;
+import jetbrains.buildServer.util.FileUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class DeploymentStatusOutboxTest {
+
+  private File myDirectory;
+  private DeploymentStatusOutbox myOutbox;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    myDirectory = Files.createTempDirectory("outbox").toFile();
+    myOutbox = new DeploymentStatusOutbox(() -> new AppendOnlyPublishJournal(myDirectory, 4096, 50),
+      true, 3_600_000, 64, 1000, 300_000, 30_000, System::currentTimeMillis);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    myOutbox.shutdown();
+    FileUtil.delete(myDirectory);
+  }
+
+  public void should_skip_superseded_updates() throws IOException, InterruptedException {
+    long now = System.currentTimeMillis();
+    myOutbox.append(update(1, DeploymentStatusState.pending, now));
+    myOutbox.append(update(1, DeploymentStatusState.in_progress, now));
+    myOutbox.append(update(2, DeploymentStatusState.in_progress, now));
+    myOutbox.append(update(1, DeploymentStatusState.success, now));
+
+    List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch done = new CountDownLatch(2);
+    myOutbox.start(update -> {
+      sent.add(update.getBuildId() + " " + update.getStatus());
+      done.countDown();
+      return DeliveryResult.DELIVERED;
+    });
+
+    then(done.await(10, TimeUnit.SECONDS)).isTrue();
+    then(sent).containsExactly("1 success", "2 in_progress");
+    then(myOutbox.getCoalescedCount()).isEqualTo(2);
+  }
+
+  public void should_keep_final_states_followed_by_intermediate_ones() throws IOException, InterruptedException {
+    long now = System.currentTimeMillis();
+    myOutbox.append(update(1, DeploymentStatusState.failure, now));
+    myOutbox.append(update(1, DeploymentStatusState.in_progress, now));
+
+    List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch done = new CountDownLatch(2);
+    myOutbox.start(update -> {
+      sent.add(update.getBuildId() + " " + update.getStatus());
+      done.countDown();
+      return DeliveryResult.DELIVERED;
+    });
+
+    then(done.await(10, TimeUnit.SECONDS)).isTrue();
+    then(sent).containsExactly("1 failure", "1 in_progress");
+    then(myOutbox.getCoalescedCount()).isZero();
+  }
+
+  public void should_send_final_states_ahead_of_younger_intermediate_ones() throws IOException, InterruptedException {
+    long now = System.currentTimeMillis();
+    myOutbox.append(update(1, DeploymentStatusState.in_progress, now - 60_000));
+    myOutbox.append(update(2, DeploymentStatusState.in_progress, now));
+    myOutbox.append(update(3, DeploymentStatusState.success, now));
+
+    List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch done = new CountDownLatch(3);
+    myOutbox.start(update -> {
+      sent.add(update.getBuildId() + " " + update.getStatus());
+      done.countDown();
+      return DeliveryResult.DELIVERED;
+    });
+
+    then(done.await(10, TimeUnit.SECONDS)).isTrue();
+    then(sent).containsExactly("1 in_progress", "3 success", "2 in_progress");
+  }
+
+  private static DeploymentStatusUpdate update(long buildId, DeploymentStatusState status, long createdAtMillis) {
+    return new DeploymentStatusUpdate(buildId, "MY_FEATURE_ID", 1, "314159", "refs/heads/main", status, "TeamCity build " + status, "test", createdAtMillis);
+  }
+}
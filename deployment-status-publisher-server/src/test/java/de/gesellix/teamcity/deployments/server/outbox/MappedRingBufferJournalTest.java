@@ -0,0 +1,100 @@
+package de.gesellix.teamcity.deployments.server.outbox;
+
+import de.gesellix.github.client.data.DeploymentStatusState;
+import jetbrains.buildServer.util.FileUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class MappedRingBufferJournalTest {
+
+  private File myFile;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    myFile = new File(Files.createTempDirectory("journal").toFile(), "ring.journal");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtil.delete(myFile.getParentFile());
+  }
+
+  public void should_wrap_around_and_replay_after_reopen() throws IOException {
+    try (MappedRingBufferJournal journal = new MappedRingBufferJournal(myFile, 4096, 50)) {
+      for (int i = 0; i < 20; i++) {
+        long id = journal.append(update(i));
+        if (i < 19) {
+          journal.delivered(id);
+        }
+      }
+      for (int i = 20; i < 40; i++) {
+        journal.append(update(i));
+      }
+      then(myFile.length()).isEqualTo(64 + 4096);
+    }
+
+    try (MappedRingBufferJournal journal = new MappedRingBufferJournal(myFile, 4096, 50)) {
+      then(journal.pendingCount()).isEqualTo(21);
+      List<JournalEntry> pending = journal.readPending(0, 100);
+      then(buildIds(pending)).startsWith(19L, 20L).endsWith(38L, 39L).hasSize(21);
+      then(journal.append(update(40))).isEqualTo(41);
+    }
+  }
+
+  public void should_reject_appends_when_full() throws IOException {
+    try (MappedRingBufferJournal journal = new MappedRingBufferJournal(myFile, 4096, 50)) {
+      long first = journal.append(update(0));
+      while (true) {
+        try {
+          journal.append(update(1));
+        } catch (IOException e) {
+          break;
+        }
+      }
+      int pending = journal.pendingCount();
+
+      journal.delivered(first);
+      journal.append(update(3));
+      then(journal.pendingCount()).isEqualTo(pending);
+    }
+  }
+
+  public void should_free_unreadable_entries() throws IOException {
+    try (MappedRingBufferJournal journal = new MappedRingBufferJournal(myFile, 4096, 50)) {
+      journal.append(update(0));
+      journal.append(update(1));
+      // an unknown format version in the payload of the first record
+      try (RandomAccessFile file = new RandomAccessFile(myFile, "rw")) {
+        file.seek(64 + 24);
+        file.write(0x7f);
+      }
+
+      then(buildIds(journal.readPending(0, 10))).containsExactly(1L);
+      then(journal.pendingCount()).isEqualTo(1);
+    }
+
+    try (MappedRingBufferJournal journal = new MappedRingBufferJournal(myFile, 4096, 50)) {
+      then(journal.pendingCount()).isEqualTo(1);
+      then(buildIds(journal.readPending(0, 10))).containsExactly(1L);
+    }
+  }
+
+  private static List<Long> buildIds(List<JournalEntry> entries) {
+    return entries.stream().map(entry -> entry.getUpdate().getBuildId()).collect(Collectors.toList());
+  }
+
+  private static DeploymentStatusUpdate update(long buildId) {
+    return new DeploymentStatusUpdate(buildId, "MY_FEATURE_ID", 1, "314159", "refs/heads/main", DeploymentStatusState.success, "TeamCity build finished", "test", System.currentTimeMillis());
+  }
+}
@@ -15,6 +15,7 @@ dependencies {
   implementation("com.squareup.moshi:moshi-kotlin:1.11.0")
   kapt("com.squareup.moshi:moshi-kotlin-codegen:1.11.0")
   implementation("com.squareup.okhttp3:okhttp:4.9.0")
+  implementation("org.jetbrains.kotlinx:kotlinx-coroutines-core:1.4.1")
   testImplementation("com.squareup.okhttp3:mockwebserver:4.9.0")
   implementation("com.squareup.okhttp3:logging-interceptor:4.9.0")
   testImplementation("org.junit.jupiter:junit-jupiter:5.4.2")
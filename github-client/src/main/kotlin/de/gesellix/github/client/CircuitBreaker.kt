@@ -0,0 +1,88 @@
+package de.gesellix.github.client
+
+import java.util.concurrent.TimeUnit
+
+/**
+ * Stops sending requests to a GitHub host after [failureThreshold] consecutive failures.
+ *
+ * While open, calls fail immediately. After [openMillis] the breaker becomes half-open
+ * and lets up to [halfOpenTrials] trial calls through: a successful trial closes it again,
+ * a failed one re-opens it for another [openMillis].
+ */
+class CircuitBreaker(
+  private val failureThreshold: Int = 5,
+  private val openMillis: Long = TimeUnit.SECONDS.toMillis(30),
+  private val halfOpenTrials: Int = 1,
+  private val clock: () -> Long = System::currentTimeMillis
+) {
+
+  enum class State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private var state = State.CLOSED
+  private var consecutiveFailures = 0
+  private var openedAt = 0L
+  private var trialsInFlight = 0
+
+  @Synchronized
+  fun getState(): State {
+    if (state == State.OPEN && clock() - openedAt >= openMillis) {
+      return State.HALF_OPEN
+    }
+    return state
+  }
+
+  /**
+   * @return the time in milliseconds until the next trial call is permitted, 0 when the call may proceed
+   */
+  @Synchronized
+  fun tryAcquire(): Long {
+    when (state) {
+      State.CLOSED -> return 0
+      State.OPEN -> {
+        val remaining = openedAt + openMillis - clock()
+        if (remaining > 0) {
+          return remaining
+        }
+        state = State.HALF_OPEN
+        trialsInFlight = 0
+      }
+      State.HALF_OPEN -> Unit
+    }
+    if (trialsInFlight >= halfOpenTrials) {
+      return 1
+    }
+    trialsInFlight++
+    return 0
+  }
+
+  @Synchronized
+  fun onSuccess() {
+    state = State.CLOSED
+    consecutiveFailures = 0
+    trialsInFlight = 0
+  }
+
+  /**
+   * Gives back a permit without an outcome, e.g. when the call has been cancelled.
+   */
+  @Synchronized
+  fun release() {
+    if (state == State.HALF_OPEN && trialsInFlight > 0) {
+      trialsInFlight--
+    }
+  }
+
+  @Synchronized
+  fun onFailure() {
+    consecutiveFailures++
+    if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+      state = State.OPEN
+      openedAt = clock()
+      trialsInFlight = 0
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package de.gesellix.github.client
+
+import okhttp3.Interceptor
+import okhttp3.Response
+import java.io.IOException
+import java.io.InterruptedIOException
+
+/**
+ * Guards requests with a [CircuitBreaker], failing with a [CircuitBreakerOpenException]
+ * instead of waiting for a timeout when the host has been failing recently.
+ *
+ * Network failures and `5xx` responses count as failures, any other response proves that the host is reachable.
+ */
+class CircuitBreakerInterceptor(private val circuitBreaker: CircuitBreaker) : Interceptor {
+
+  override fun intercept(chain: Interceptor.Chain): Response {
+    val request = chain.request()
+    val waitMillis = circuitBreaker.tryAcquire()
+    if (waitMillis > 0) {
+      throw CircuitBreakerOpenException("${request.url.host} is unavailable, not sending requests for ${waitMillis}ms")
+    }
+    val response = try {
+      chain.proceed(request)
+    } catch (e: IOException) {
+      // a cancelled call says nothing about the host
+      if (chain.call().isCanceled() || (e is InterruptedIOException && Thread.currentThread().isInterrupted)) {
+        circuitBreaker.release()
+      } else {
+        circuitBreaker.onFailure()
+      }
+      throw e
+    }
+    if (response.code >= 500) {
+      circuitBreaker.onFailure()
+    } else {
+      circuitBreaker.onSuccess()
+    }
+    return response
+  }
+}
@@ -0,0 +1,5 @@
+package de.gesellix.github.client
+
+import java.io.IOException
+
+class CircuitBreakerOpenException(message: String) : IOException(message)
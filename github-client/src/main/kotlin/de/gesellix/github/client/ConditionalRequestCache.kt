@@ -0,0 +1,132 @@
+package de.gesellix.github.client
+
+import okhttp3.Interceptor
+import okhttp3.MediaType
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.ResponseBody.Companion.toResponseBody
+import java.net.HttpURLConnection.HTTP_NOT_MODIFIED
+import java.net.HttpURLConnection.HTTP_OK
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * In-memory cache for GET responses which carry an `ETag` or `Last-Modified` validator.
+ *
+ * Cached entries are always revalidated with `If-None-Match`/`If-Modified-Since`.
+ * GitHub answers those with `304 Not Modified`, which doesn't count against the rate limit,
+ * and the cached body is then handed out as a regular `200 OK` response.
+ *
+ * The cache is bounded by the number of entries and the accumulated body size,
+ * least recently used entries are evicted first.
+ */
+class ConditionalRequestCache(
+  private val maxEntries: Int = 256,
+  private val maxBytes: Long = 4L * 1024 * 1024,
+  private val maxEntryBytes: Long = 512L * 1024
+) : Interceptor {
+
+  private val entries = LinkedHashMap<String, CachedResponse>(16, 0.75f, true)
+  private var totalBytes = 0L
+
+  private val hits = AtomicLong()
+  private val misses = AtomicLong()
+
+  val hitCount: Long
+    get() = hits.get()
+
+  val missCount: Long
+    get() = misses.get()
+
+  override fun intercept(chain: Interceptor.Chain): Response {
+    val request = chain.request()
+    if (request.method != "GET") {
+      return chain.proceed(request)
+    }
+
+    val key = cacheKey(request)
+    val cached = get(key)
+    val response = if (cached == null) {
+      chain.proceed(request)
+    } else {
+      chain.proceed(
+        request.newBuilder()
+          .apply {
+            cached.etag?.let { header("If-None-Match", it) }
+            cached.lastModified?.let { header("If-Modified-Since", it) }
+          }
+          .build()
+      )
+    }
+
+    if (response.code == HTTP_NOT_MODIFIED && cached != null) {
+      hits.incrementAndGet()
+      response.close()
+      return response.newBuilder()
+        .request(request)
+        .code(HTTP_OK)
+        .message("OK")
+        .body(cached.body.toResponseBody(cached.contentType))
+        .build()
+    }
+
+    misses.incrementAndGet()
+    val etag = response.header("ETag")
+    val lastModified = response.header("Last-Modified")
+    if (response.code == HTTP_OK && (etag != null || lastModified != null)) {
+      // peeking leaves the original body untouched for the caller
+      val peeked = response.peekBody(maxEntryBytes + 1)
+      val body = peeked.bytes()
+      if (body.size <= maxEntryBytes) {
+        put(key, CachedResponse(etag, lastModified, peeked.contentType(), body))
+      }
+    } else if (response.code == HTTP_OK) {
+      remove(key)
+    }
+    return response
+  }
+
+  @Synchronized
+  fun size(): Int {
+    return entries.size
+  }
+
+  @Synchronized
+  fun clear() {
+    entries.clear()
+    totalBytes = 0
+  }
+
+  @Synchronized
+  private fun get(key: String): CachedResponse? {
+    return entries[key]
+  }
+
+  @Synchronized
+  private fun put(key: String, response: CachedResponse) {
+    entries.put(key, response)?.let { totalBytes -= it.body.size }
+    totalBytes += response.body.size
+    val iterator = entries.values.iterator()
+    while ((entries.size > maxEntries || totalBytes > maxBytes) && iterator.hasNext()) {
+      totalBytes -= iterator.next().body.size
+      iterator.remove()
+    }
+  }
+
+  @Synchronized
+  private fun remove(key: String) {
+    entries.remove(key)?.let { totalBytes -= it.body.size }
+  }
+
+  private fun cacheKey(request: Request): String {
+    // entries must not leak between different credentials or representations
+    val authorization = request.header("Authorization")?.let { GitHubClientRegistry.fingerprint(it) } ?: ""
+    return "${request.url}|${request.header("Accept") ?: ""}|$authorization"
+  }
+
+  private class CachedResponse(
+    val etag: String?,
+    val lastModified: String?,
+    val contentType: MediaType?,
+    val body: ByteArray
+  )
+}
@@ -0,0 +1,96 @@
+package de.gesellix.github.client
+
+import com.squareup.moshi.JsonReader
+import okio.Buffer
+import okio.BufferedSource
+
+/**
+ * Scans a JSON array of deployments for one whose payload contains [payloadKey] with [payloadValue].
+ *
+ * Only the `id` and `payload` of each deployment are read, everything else is skipped
+ * without allocating objects. Scanning stops at the first match.
+ * The payload may be a JSON object or a string containing a JSON object.
+ */
+internal class DeploymentScanner(
+  private val payloadKey: String,
+  private val payloadValue: String
+) {
+
+  fun findId(source: BufferedSource): Long? {
+    val reader = JsonReader.of(source)
+    reader.beginArray()
+    while (reader.hasNext()) {
+      val id = scanDeployment(reader)
+      if (id != null) {
+        return id
+      }
+    }
+    reader.endArray()
+    return null
+  }
+
+  private fun scanDeployment(reader: JsonReader): Long? {
+    var id: Long? = null
+    var matches = false
+    reader.beginObject()
+    while (reader.hasNext()) {
+      when (reader.nextName()) {
+        "id" -> id = reader.nextLong()
+        "payload" -> matches = payloadMatches(reader)
+        else -> reader.skipValue()
+      }
+    }
+    reader.endObject()
+    return if (matches) id else null
+  }
+
+  /**
+   * Matches an already decoded payload, either a string or a map.
+   */
+  fun payloadMatches(payload: Any?): Boolean {
+    return when (payload) {
+      is String -> stringMatches(payload)
+      is Map<*, *> -> payload[payloadKey]?.toString() == payloadValue
+      else -> false
+    }
+  }
+
+  private fun payloadMatches(reader: JsonReader): Boolean {
+    return when (reader.peek()) {
+      JsonReader.Token.BEGIN_OBJECT -> objectMatches(reader)
+      JsonReader.Token.STRING -> stringMatches(reader.nextString())
+      else -> {
+        reader.skipValue()
+        false
+      }
+    }
+  }
+
+  private fun stringMatches(payload: String): Boolean {
+    return try {
+      payload.startsWith("{") && objectMatches(JsonReader.of(Buffer().writeUtf8(payload)))
+    } catch (e: Exception) {
+      // free-form payloads are allowed and simply don't match
+      false
+    }
+  }
+
+  private fun objectMatches(reader: JsonReader): Boolean {
+    var matches = false
+    reader.beginObject()
+    while (reader.hasNext()) {
+      if (reader.nextName() == payloadKey && reader.peek() in SCALARS) {
+        matches = matches || reader.nextString() == payloadValue
+      } else {
+        reader.skipValue()
+      }
+    }
+    reader.endObject()
+    return matches
+  }
+
+  companion object {
+
+    private val SCALARS = setOf(JsonReader.Token.STRING, JsonReader.Token.NUMBER)
+  }
+}
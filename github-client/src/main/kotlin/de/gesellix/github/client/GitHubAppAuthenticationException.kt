@@ -0,0 +1,8 @@
+package de.gesellix.github.client
+
+import java.io.IOException
+
+/**
+ * Signals that no installation token could be obtained for a GitHub App.
+ */
+class GitHubAppAuthenticationException(message: String, cause: Throwable? = null) : IOException(message, cause)
@@ -0,0 +1,168 @@
+package de.gesellix.github.client
+
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import retrofit2.Call
+import retrofit2.Retrofit
+import java.io.IOException
+import java.security.PrivateKey
+import java.time.Instant
+import java.time.format.DateTimeParseException
+import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+
+/**
+ * Authenticates requests as installation of a GitHub App, so that every installation
+ * gets its own rate limit instead of all builds sharing one personal access token.
+ *
+ * Requests are routed to the installation of the repository in their path (`repos/{owner}/{repo}/...`)
+ * or in their [TargetRepository] tag, the installation is looked up once per owner.
+ * Requests naming no repository are sent unauthenticated.
+ * A configured [installationId] skips the lookup and is used for all requests.
+ *
+ * Installation tokens are requested with a locally signed [GitHubAppJwt] and cached until
+ * [expiryMarginMillis] before they expire. Tokens within [refreshAheadMillis] of their expiry
+ * are refreshed on the [refreshExecutor], so that requests don't wait for the token exchange.
+ */
+class GitHubAppCredentials(
+  baseUrl: String,
+  private val appId: String,
+  privateKey: PrivateKey,
+  private val installationId: Long? = null,
+  httpClient: OkHttpClient = OkHttpClient(),
+  userAgentString: String = "",
+  timeout: Timeout = Timeout(10, TimeUnit.SECONDS),
+  private val refreshExecutor: Executor = httpClient.dispatcher.executorService,
+  private val refreshAheadMillis: Long = TimeUnit.MINUTES.toMillis(5),
+  private val expiryMarginMillis: Long = TimeUnit.MINUTES.toMillis(1),
+  private val clock: () -> Long = System::currentTimeMillis
+) : GitHubCredentials {
+
+  private val jwt = GitHubAppJwt(appId, privateKey, clock)
+
+  // JWT authenticated requests must not pass the installation token interceptor
+  private val app = Retrofit.Builder()
+    .baseUrl(baseUrl)
+    .addConverterFactory(GitHubJson.converterFactory)
+    .client(
+      httpClient
+        .newBuilder()
+        .connectTimeout(timeout.timeout, timeout.unit)
+        .readTimeout(timeout.timeout, timeout.unit)
+        .writeTimeout(timeout.timeout, timeout.unit)
+        .addInterceptor(UserAgentInterceptor(userAgentString))
+        .build()
+    )
+    .build()
+    .create(GitHubAppService::class.java)
+
+  private val installations = ConcurrentHashMap<String, Long>()
+  private val tokens = ConcurrentHashMap<Long, CachedToken>()
+  private val refreshing = ConcurrentHashMap.newKeySet<Long>()
+  private val singleFlight = SingleFlight()
+
+  override fun authorization(request: Request): Credential? {
+    val installationId = installationIdFor(request) ?: return null
+    return Credential("token ${getToken(installationId)}", identity(installationId))
+  }
+
+  override fun identity(owner: String, repo: String): String? {
+    val installationId = this.installationId ?: installations[owner.toLowerCase(Locale.ROOT)] ?: return null
+    return identity(installationId)
+  }
+
+  /**
+   * @return a token for [installationId] which is valid for at least [expiryMarginMillis]
+   */
+  fun getToken(installationId: Long): String {
+    val now = clock()
+    val cached = tokens[installationId]
+    if (cached != null && now < cached.expiresAtMillis - expiryMarginMillis) {
+      if (now >= cached.expiresAtMillis - refreshAheadMillis) {
+        refreshInBackground(installationId)
+      }
+      return cached.token
+    }
+    return refresh(installationId).token
+  }
+
+  fun getInstallationId(owner: String, repo: String): Long {
+    installationId?.let { return it }
+    val key = owner.toLowerCase(Locale.ROOT)
+    installations[key]?.let { return it }
+    return singleFlight.call(listOf("installation", key)) {
+      val installation = execute(app.getRepositoryInstallation("Bearer ${jwt.get()}", owner, repo)) {
+        "Failed to look up the GitHub App installation for $owner/$repo"
+      }
+      installations[key] = installation.id
+      installation.id
+    }
+  }
+
+  private fun installationIdFor(request: Request): Long? {
+    installationId?.let { return it }
+    request.tag(TargetRepository::class.java)?.let { return getInstallationId(it.owner, it.repo) }
+    val segments = request.url.pathSegments
+    val index = segments.indexOf("repos")
+    if (index < 0 || segments.size <= index + 2) {
+      return null
+    }
+    return getInstallationId(segments[index + 1], segments[index + 2])
+  }
+
+  private fun refresh(installationId: Long): CachedToken {
+    return singleFlight.call(listOf("token", installationId)) {
+      val token = execute(app.createInstallationToken("Bearer ${jwt.get()}", installationId)) {
+        "Failed to create a token for GitHub App installation $installationId"
+      }
+      val expiresAtMillis = try {
+        Instant.parse(token.expires_at).toEpochMilli()
+      } catch (e: DateTimeParseException) {
+        throw GitHubAppAuthenticationException("Unexpected expiry of GitHub App installation token: ${token.expires_at}", e)
+      }
+      CachedToken(token.token, expiresAtMillis).also { tokens[installationId] = it }
+    }
+  }
+
+  private fun refreshInBackground(installationId: Long) {
+    if (!refreshing.add(installationId)) {
+      return
+    }
+    try {
+      refreshExecutor.execute {
+        try {
+          refresh(installationId)
+        } catch (e: Exception) {
+          // the cached token is still valid, the next request will try again
+        } finally {
+          refreshing.remove(installationId)
+        }
+      }
+    } catch (e: RejectedExecutionException) {
+      refreshing.remove(installationId)
+    }
+  }
+
+  private fun <T> execute(call: Call<T>, message: () -> String): T {
+    val response = try {
+      call.execute()
+    } catch (e: IOException) {
+      throw GitHubAppAuthenticationException(message(), e)
+    }
+    val body = response.body()
+    if (!response.isSuccessful || body == null) {
+      response.errorBody()?.close()
+      throw GitHubAppAuthenticationException("${message()}: HTTP ${response.code()}")
+    }
+    return body
+  }
+
+  private fun identity(installationId: Long): String {
+    return "app $appId installation $installationId"
+  }
+
+  private class CachedToken(val token: String, val expiresAtMillis: Long)
+}
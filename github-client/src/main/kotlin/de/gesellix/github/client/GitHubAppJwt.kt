@@ -0,0 +1,89 @@
+package de.gesellix.github.client
+
+import java.security.KeyFactory
+import java.security.PrivateKey
+import java.security.Signature
+import java.security.spec.PKCS8EncodedKeySpec
+import java.util.Base64
+import java.util.concurrent.TimeUnit
+
+/**
+ * Signs the short-lived JWTs (RS256) a GitHub App authenticates with when requesting installation tokens.
+ *
+ * A JWT is valid for 9 minutes, backdated by a minute to tolerate clock drift,
+ * and reused until shortly before it expires.
+ */
+class GitHubAppJwt(
+  private val appId: String,
+  private val privateKey: PrivateKey,
+  private val clock: () -> Long = System::currentTimeMillis
+) {
+
+  @Volatile
+  private var cached: SignedJwt? = null
+
+  fun get(): String {
+    val now = clock()
+    cached?.let {
+      if (now < it.reuseUntilMillis) {
+        return it.jwt
+      }
+    }
+    val issuedAt = TimeUnit.MILLISECONDS.toSeconds(now) - 60
+    val expiresAt = issuedAt + TimeUnit.MINUTES.toSeconds(9)
+    val header = encode("""{"alg":"RS256","typ":"JWT"}""".toByteArray())
+    val claims = encode("""{"iat":$issuedAt,"exp":$expiresAt,"iss":"$appId"}""".toByteArray())
+    val signature = Signature.getInstance("SHA256withRSA").run {
+      initSign(privateKey)
+      update("$header.$claims".toByteArray())
+      sign()
+    }
+    val jwt = "$header.$claims.${encode(signature)}"
+    cached = SignedJwt(jwt, TimeUnit.SECONDS.toMillis(expiresAt - 60))
+    return jwt
+  }
+
+  private fun encode(bytes: ByteArray): String {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes)
+  }
+
+  private class SignedJwt(val jwt: String, val reuseUntilMillis: Long)
+
+  companion object {
+
+    /**
+     * Reads a PEM encoded RSA private key, either PKCS#1 as downloaded from GitHub or PKCS#8.
+     */
+    fun parsePrivateKey(pem: String): PrivateKey {
+      // line breaks may have been lost in single line inputs, the MIME decoder skips any whitespace
+      val der = Base64.getMimeDecoder().decode(pem.replace(Regex("-----(BEGIN|END) [A-Z ]+-----"), "").trim())
+      val pkcs8 = if (pem.contains("BEGIN RSA PRIVATE KEY")) wrapPkcs1(der) else der
+      return KeyFactory.getInstance("RSA").generatePrivate(PKCS8EncodedKeySpec(pkcs8))
+    }
+
+    /**
+     * The JDK only reads PKCS#8, which wraps the PKCS#1 key in a PrivateKeyInfo structure:
+     * `SEQUENCE { INTEGER 0, SEQUENCE { OID rsaEncryption, NULL }, OCTET STRING pkcs1 }`.
+     */
+    private fun wrapPkcs1(pkcs1: ByteArray): ByteArray {
+      val version = bytes(0x02, 0x01, 0x00)
+      val algorithm = bytes(0x30, 0x0d, 0x06, 0x09, 0x2a, 0x86, 0x48, 0x86, 0xf7, 0x0d, 0x01, 0x01, 0x01, 0x05, 0x00)
+      return der(0x30, version + algorithm + der(0x04, pkcs1))
+    }
+
+    private fun der(tag: Int, content: ByteArray): ByteArray {
+      val length = content.size
+      val header = when {
+        length < 0x80 -> bytes(tag, length)
+        length < 0x100 -> bytes(tag, 0x81, length)
+        length < 0x10000 -> bytes(tag, 0x82, length shr 8, length)
+        else -> bytes(tag, 0x83, length shr 16, length shr 8, length)
+      }
+      return header + content
+    }
+
+    private fun bytes(vararg values: Int): ByteArray {
+      return ByteArray(values.size) { values[it].toByte() }
+    }
+  }
+}
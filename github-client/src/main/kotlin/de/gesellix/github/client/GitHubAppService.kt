@@ -0,0 +1,31 @@
+package de.gesellix.github.client
+
+import de.gesellix.github.client.data.Installation
+import de.gesellix.github.client.data.InstallationToken
+import retrofit2.Call
+import retrofit2.http.GET
+import retrofit2.http.Header
+import retrofit2.http.Headers
+import retrofit2.http.POST
+import retrofit2.http.Path
+
+/**
+ * Endpoints authenticated as GitHub App, i.e. with a JWT instead of an installation token.
+ */
+interface GitHubAppService {
+
+  @Headers("Accept: application/vnd.github.machine-man-preview+json")
+  @GET("repos/{owner}/{repo}/installation")
+  fun getRepositoryInstallation(
+    @Header("Authorization") authorization: String,
+    @Path("owner") owner: String,
+    @Path("repo") repo: String
+  ): Call<Installation>
+
+  @Headers("Accept: application/vnd.github.machine-man-preview+json")
+  @POST("app/installations/{installationId}/access_tokens")
+  fun createInstallationToken(
+    @Header("Authorization") authorization: String,
+    @Path("installationId") installationId: Long
+  ): Call<InstallationToken>
+}
@@ -1,54 +1,149 @@
 package de.gesellix.github.client
 
+import com.squareup.moshi.JsonReader
 import de.gesellix.github.client.data.Commit
 import de.gesellix.github.client.data.CommitComment
 import de.gesellix.github.client.data.CommitCommentRequest
+import de.gesellix.github.client.data.CommitRef
 import de.gesellix.github.client.data.CommitStatus
 import de.gesellix.github.client.data.CommitStatusRequest
 import de.gesellix.github.client.data.CommitStatusesSummary
 import de.gesellix.github.client.data.Deployment
+import de.gesellix.github.client.data.DeploymentRef
 import de.gesellix.github.client.data.DeploymentRequest
 import de.gesellix.github.client.data.DeploymentStatus
 import de.gesellix.github.client.data.DeploymentStatusRequest
 import de.gesellix.github.client.data.PullRequest
+import de.gesellix.github.client.data.PullRequestHead
 import de.gesellix.github.client.data.Repository
+import okhttp3.HttpUrl.Companion.toHttpUrl
 import okhttp3.Interceptor
 import okhttp3.OkHttpClient
 import okhttp3.Response
+import okhttp3.ResponseBody
 import okhttp3.logging.HttpLoggingInterceptor
 import retrofit2.Call
+import retrofit2.Callback
 import retrofit2.Retrofit
-import retrofit2.converter.moshi.MoshiConverterFactory
+import java.io.IOException
+import java.net.ConnectException
+import java.net.UnknownHostException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ScheduledExecutorService
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicReference
 
 class GitHubClient(
   baseUrl: String = "https://api.github.com/",
   token: String = "",
   userAgentString: String = "",
-  timeout: Timeout = Timeout(10, TimeUnit.SECONDS)
+  timeout: Timeout = Timeout(10, TimeUnit.SECONDS),
+  httpClient: OkHttpClient = OkHttpClient(),
+  responseCache: ConditionalRequestCache? = ConditionalRequestCache(),
+  private val rateLimitTracker: RateLimitTracker = RateLimitTracker(),
+  private val retryInterceptor: RetryInterceptor? = RetryInterceptor(),
+  circuitBreaker: CircuitBreaker? = null,
+  private val hedging: RequestHedging? = null,
+  metrics: GitHubClientMetrics? = null,
+  private val credentials: GitHubCredentials? = null
 ) {
 
   val loggingInterceptor = HttpLoggingInterceptor()
 
+  // derived clients share the connection pool and dispatcher of `httpClient`,
+  // synchronous and enqueued calls only differ in how they wait for retries and the rate limit
+  private val baseHttpClient = httpClient
+    .newBuilder()
+    .connectTimeout(timeout.timeout, timeout.unit)
+    .readTimeout(timeout.timeout, timeout.unit)
+    .writeTimeout(timeout.timeout, timeout.unit)
+    .apply {
+      if (metrics != null) {
+        eventListenerFactory(MetricsEventListener.Factory(metrics))
+      }
+    }
+    .apply {
+      // inside the retries, so that every attempt counts and an open circuit ends them
+      if (circuitBreaker != null) {
+        addInterceptor(CircuitBreakerInterceptor(circuitBreaker))
+      }
+    }
+    .addInterceptor(loggingInterceptor)
+    .addInterceptor(if (credentials != null) CredentialsAuthorizationInterceptor(credentials) else TokenAuthorizationInterceptor(token))
+    .addInterceptor(UserAgentInterceptor(userAgentString))
+    .apply {
+      // needs to see the final request headers, so it is registered after the header interceptors
+      if (responseCache != null) {
+        addInterceptor(responseCache)
+      }
+    }
+    .build()
+
   private var retrofit = Retrofit.Builder()
     .baseUrl(baseUrl)
-    .addConverterFactory(MoshiConverterFactory.create())
-//    .addConverterFactory(GraphQLConverterFactory())
+    .addConverterFactory(GitHubJson.converterFactory)
 //    .addCallAdapterFactory(CallAdapterFactory())
     .client(
-      OkHttpClient()
+      baseHttpClient
+        .newBuilder()
+        .apply {
+          // outermost, so that every attempt passes the rate limit and gets logged
+          if (retryInterceptor != null) {
+            interceptors().add(0, retryInterceptor)
+          }
+        }
+        .addInterceptor(RateLimitInterceptor(rateLimitTracker))
+        .build()
+    )
+    .build()
+
+  // enqueued calls neither wait for retries nor for the rate limit on a dispatcher thread, see executeRequestAsync
+  private val asyncRetrofit = retrofit
+    .newBuilder()
+    .client(
+      baseHttpClient
         .newBuilder()
-        .connectTimeout(timeout.timeout, timeout.unit)
-        .readTimeout(timeout.timeout, timeout.unit)
-        .writeTimeout(timeout.timeout, timeout.unit)
-        .addInterceptor(loggingInterceptor)
-        .addInterceptor(TokenAuthorizationInterceptor(token))
-        .addInterceptor(UserAgentInterceptor(userAgentString))
+        .addInterceptor(RateLimitInterceptor(rateLimitTracker, parkRequests = false))
         .build()
     )
     .build()
 
   private var github = retrofit.create(GitHubService::class.java)
+  private val asyncGithub = asyncRetrofit.create(GitHubService::class.java)
+
+  // concurrent identical GETs share one request, e.g. when many builds of the same commit finish at once
+  private val singleFlight = SingleFlight()
+
+  private val apiUrl = baseUrl.toHttpUrl()
+  private val rateLimitKey = RateLimitTracker.key(apiUrl, if (token.isEmpty()) null else "token $token")
+
+  /**
+   * The rate limit budget of this client's token as seen with the latest response, `null` before the first request.
+   */
+  val rateLimit: RateLimit?
+    get() = rateLimitTracker.get(rateLimitKey)
+
+  /**
+   * Like [rateLimit], but for [credentials] which use a different budget per repository.
+   */
+  fun getRateLimit(owner: String, repo: String): RateLimit? {
+    if (credentials == null) {
+      return rateLimit
+    }
+    return credentials.identity(owner, repo)?.let { rateLimitTracker.get(apiUrl, it) }
+  }
+
+  val coroutines: GitHubCoroutineClient by lazy {
+    GitHubCoroutineClient(asyncRetrofit.create(GitHubCoroutineService::class.java), retryInterceptor)
+  }
+
+  val graphQL: GitHubGraphQLClient by lazy {
+    GitHubGraphQLClient(GitHubGraphQLClient.graphQLUrl(baseUrl), retrofit.create(GitHubGraphQLService::class.java))
+  }
 
   init {
     loggingInterceptor.level = HttpLoggingInterceptor.Level.BASIC
@@ -57,7 +152,7 @@ class GitHubClient(
   }
 
   fun <RES> executeRequest(request: Call<RES>): RES? {
-    val response = request.execute() // TODO consider `.enqueue()`
+    val response = request.execute()
     if (!response.isSuccessful) {
       throw HttpStatusException(response.code(), "request failed", response)
 //      throw RuntimeException("error: code=${response.code()} body=${response.errorBody()?.string()}")
@@ -65,14 +160,135 @@ class GitHubClient(
     return response.body()
   }
 
+  /**
+   * Non-blocking variant of [executeRequest]: the request is enqueued on the OkHttp dispatcher
+   * and the returned future completes on one of its threads.
+   * Unsuccessful responses complete the future exceptionally with a [HttpStatusException],
+   * cancelling the future cancels the underlying call.
+   *
+   * The [request] has to be created by the [asyncGithub] service, whose calls never wait on a dispatcher thread.
+   * Calls held back by the rate limit are enqueued again when the budget allows for it, however long that takes,
+   * failed attempts are enqueued again as decided by the [RetryInterceptor]. Both wait on a scheduler in between.
+   */
+  private fun <RES> executeRequestAsync(request: Call<RES>): CompletableFuture<RES?> {
+    val future = CompletableFuture<RES?>()
+    val current = AtomicReference(request)
+    future.whenComplete { _, _ ->
+      if (future.isCancelled) {
+        current.get().cancel()
+      }
+    }
+    enqueue(request, future, current, 1, System.currentTimeMillis())
+    return future
+  }
+
+  private fun <RES> enqueue(request: Call<RES>, future: CompletableFuture<RES?>, current: AtomicReference<Call<RES>>, attempt: Int, startedAt: Long) {
+    current.set(request)
+    if (future.isCancelled) {
+      return
+    }
+    request.enqueue(object : Callback<RES> {
+      override fun onResponse(call: Call<RES>, response: retrofit2.Response<RES>) {
+        if (!response.isSuccessful) {
+          val delay = retryInterceptor?.retryDelayMillis(call.request(), response.raw(), attempt, System.currentTimeMillis() - startedAt)
+          if (delay != null) {
+            retryLater(call, future, current, attempt, startedAt, delay)
+            return
+          }
+          future.completeExceptionally(HttpStatusException(response.code(), "request failed", response))
+        } else {
+          future.complete(response.body())
+        }
+      }
+
+      override fun onFailure(call: Call<RES>, t: Throwable) {
+        if (t is RateLimitedException) {
+          // it hasn't been sent, so it doesn't count as an attempt
+          sendLater(t.retryAfterMillis, future) { enqueue(call.clone(), future, current, attempt, startedAt) }
+          return
+        }
+        if (t is IOException) {
+          val delay = retryInterceptor?.retryDelayMillis(call.request(), t, call.isCanceled, attempt, System.currentTimeMillis() - startedAt)
+          if (delay != null) {
+            retryLater(call, future, current, attempt, startedAt, delay)
+            return
+          }
+        }
+        future.completeExceptionally(t)
+      }
+    })
+  }
+
+  private fun <RES> retryLater(call: Call<RES>, future: CompletableFuture<RES?>, current: AtomicReference<Call<RES>>, attempt: Int, startedAt: Long, delay: Long) {
+    sendLater(delay, future) { enqueue(call.clone(), future, current, attempt + 1, startedAt) }
+  }
+
+  private fun sendLater(delay: Long, future: CompletableFuture<*>, send: () -> Unit) {
+    try {
+      asyncRetryScheduler.schedule(Runnable { send() }, delay, TimeUnit.MILLISECONDS)
+    } catch (e: RejectedExecutionException) {
+      future.completeExceptionally(e)
+    }
+  }
+
+  /**
+   * Reads are hedged when [hedging] is configured. Writes must never go through here.
+   */
+  private fun <RES> executeGet(endpoint: String, request: (GitHubService) -> Call<RES>): RES? {
+    if (hedging == null) {
+      return executeRequest(request(github))
+    }
+    try {
+      return hedging.execute(endpoint) { executeRequestAsync(request(asyncGithub)) }.get()
+    } catch (e: ExecutionException) {
+      throw e.cause ?: e
+    }
+  }
+
+  private fun <RES> executeGetAsync(endpoint: String, request: (GitHubService) -> Call<RES>): CompletableFuture<RES?> {
+    if (hedging == null) {
+      return executeRequestAsync(request(asyncGithub))
+    }
+    return hedging.execute(endpoint) { executeRequestAsync(request(asyncGithub)) }
+  }
+
   fun getRepository(owner: String, repo: String): Repository? {
-    val request = github.getRepository(owner, repo)
-    return executeRequest(request)
+    return singleFlight.call(listOf("getRepository", owner, repo)) {
+      executeGet("getRepository") { it.getRepository(owner, repo) }
+    }
+  }
+
+  fun getRepositoryAsync(owner: String, repo: String): CompletableFuture<Repository?> {
+    return singleFlight.callAsync(listOf("getRepository", owner, repo)) {
+      executeGetAsync("getRepository") { it.getRepository(owner, repo) }
+    }
   }
 
   fun getCommit(owner: String, repo: String, commitSha: String): Commit? {
-    val request = github.getCommit(owner, repo, commitSha)
-    return executeRequest(request)
+    return singleFlight.call(listOf("getCommit", owner, repo, commitSha)) {
+      executeGet("getCommit") { it.getCommit(owner, repo, commitSha) }
+    }
+  }
+
+  fun getCommitAsync(owner: String, repo: String, commitSha: String): CompletableFuture<Commit?> {
+    return singleFlight.callAsync(listOf("getCommit", owner, repo, commitSha)) {
+      executeGetAsync("getCommit") { it.getCommit(owner, repo, commitSha) }
+    }
+  }
+
+  /**
+   * Like [getCommit], but only decodes the shas of the commit and its parents.
+   */
+  fun getCommitRef(owner: String, repo: String, commitSha: String): CommitRef? {
+    return singleFlight.call(listOf("getCommitRef", owner, repo, commitSha)) {
+      executeGet("getCommit") { it.getCommitRef(owner, repo, commitSha) }
+    }
+  }
+
+  fun getCommitRefAsync(owner: String, repo: String, commitSha: String): CompletableFuture<CommitRef?> {
+    return singleFlight.callAsync(listOf("getCommitRef", owner, repo, commitSha)) {
+      executeGetAsync("getCommit") { it.getCommitRef(owner, repo, commitSha) }
+    }
   }
 
   fun addCommitComment(owner: String, repo: String, commitSha: String, commitCommentRequest: CommitCommentRequest): CommitComment? {
@@ -80,14 +296,33 @@ class GitHubClient(
     return executeRequest(request)
   }
 
+  fun addCommitCommentAsync(owner: String, repo: String, commitSha: String, commitCommentRequest: CommitCommentRequest): CompletableFuture<CommitComment?> {
+    val request = asyncGithub.addCommitComment(owner, repo, commitSha, commitCommentRequest)
+    return executeRequestAsync(request)
+  }
+
   fun getCommitStatusesSummary(owner: String, repo: String, ref: String): CommitStatusesSummary? {
-    val request = github.getCommitStatusesSummary(owner, repo, ref)
-    return executeRequest(request)
+    return singleFlight.call(listOf("getCommitStatusesSummary", owner, repo, ref)) {
+      executeGet("getCommitStatusesSummary") { it.getCommitStatusesSummary(owner, repo, ref) }
+    }
+  }
+
+  fun getCommitStatusesSummaryAsync(owner: String, repo: String, ref: String): CompletableFuture<CommitStatusesSummary?> {
+    return singleFlight.callAsync(listOf("getCommitStatusesSummary", owner, repo, ref)) {
+      executeGetAsync("getCommitStatusesSummary") { it.getCommitStatusesSummary(owner, repo, ref) }
+    }
   }
 
   fun getCommitStatuses(owner: String, repo: String, ref: String): Array<CommitStatus>? {
-    val request = github.getCommitStatuses(owner, repo, ref)
-    return executeRequest(request)
+    return singleFlight.call(listOf("getCommitStatuses", owner, repo, ref)) {
+      executeGet("getCommitStatuses") { it.getCommitStatuses(owner, repo, ref) }
+    }
+  }
+
+  fun getCommitStatusesAsync(owner: String, repo: String, ref: String): CompletableFuture<Array<CommitStatus>?> {
+    return singleFlight.callAsync(listOf("getCommitStatuses", owner, repo, ref)) {
+      executeGetAsync("getCommitStatuses") { it.getCommitStatuses(owner, repo, ref) }
+    }
   }
 
   fun updateCommitStatus(owner: String, repo: String, sha: String, commitStatus: CommitStatusRequest): CommitStatus? {
@@ -95,25 +330,210 @@ class GitHubClient(
     return executeRequest(request)
   }
 
+  fun updateCommitStatusAsync(owner: String, repo: String, sha: String, commitStatus: CommitStatusRequest): CompletableFuture<CommitStatus?> {
+    val request = asyncGithub.updateCommitStatus(owner, repo, sha, commitStatus)
+    return executeRequestAsync(request)
+  }
+
   fun getPullRequest(owner: String, repo: String, pullNumber: Int): PullRequest? {
-    val request = github.getPullRequest(owner, repo, pullNumber)
-    return executeRequest(request)
+    return singleFlight.call(listOf("getPullRequest", owner, repo, pullNumber)) {
+      executeGet("getPullRequest") { it.getPullRequest(owner, repo, pullNumber) }
+    }
+  }
+
+  fun getPullRequestAsync(owner: String, repo: String, pullNumber: Int): CompletableFuture<PullRequest?> {
+    return singleFlight.callAsync(listOf("getPullRequest", owner, repo, pullNumber)) {
+      executeGetAsync("getPullRequest") { it.getPullRequest(owner, repo, pullNumber) }
+    }
+  }
+
+  /**
+   * Like [getPullRequest], but only decodes the pull request number and its head sha.
+   */
+  fun getPullRequestHead(owner: String, repo: String, pullNumber: Int): PullRequestHead? {
+    return singleFlight.call(listOf("getPullRequestHead", owner, repo, pullNumber)) {
+      executeGet("getPullRequest") { it.getPullRequestHead(owner, repo, pullNumber) }
+    }
+  }
+
+  fun getPullRequestHeadAsync(owner: String, repo: String, pullNumber: Int): CompletableFuture<PullRequestHead?> {
+    return singleFlight.callAsync(listOf("getPullRequestHead", owner, repo, pullNumber)) {
+      executeGetAsync("getPullRequest") { it.getPullRequestHead(owner, repo, pullNumber) }
+    }
   }
 
   fun getDeployments(owner: String, repo: String, filters: Map<String, String>): List<Deployment>? {
-    val request = github.getDeployments(owner, repo, filters)
-    return executeRequest(request)
+    return singleFlight.call(listOf("getDeployments", owner, repo, filters)) {
+      executeGet("getDeployments") { it.getDeployments(owner, repo, filters) }
+    }
+  }
+
+  fun getDeploymentsAsync(owner: String, repo: String, filters: Map<String, String>): CompletableFuture<List<Deployment>?> {
+    return singleFlight.callAsync(listOf("getDeployments", owner, repo, filters)) {
+      executeGetAsync("getDeployments") { it.getDeployments(owner, repo, filters) }
+    }
+  }
+
+  /**
+   * Like [getDeployments], but only decodes the properties of a [DeploymentRef].
+   */
+  fun getDeploymentRefs(owner: String, repo: String, filters: Map<String, String>): List<DeploymentRef>? {
+    return singleFlight.call(listOf("getDeploymentRefs", owner, repo, filters)) {
+      executeGet("getDeployments") { it.getDeploymentRefs(owner, repo, filters) }
+    }
+  }
+
+  fun getDeploymentRefsAsync(owner: String, repo: String, filters: Map<String, String>): CompletableFuture<List<DeploymentRef>?> {
+    return singleFlight.callAsync(listOf("getDeploymentRefs", owner, repo, filters)) {
+      executeGetAsync("getDeployments") { it.getDeploymentRefs(owner, repo, filters) }
+    }
+  }
+
+  /**
+   * Lazily iterates over all deployments matching the [filters], following the pagination links.
+   * Pages are requested and decoded one after another as [block] consumes the sequence,
+   * the sequence must not be used after [block] has returned.
+   */
+  fun <R> useDeployments(owner: String, repo: String, filters: Map<String, String>, block: (Sequence<Deployment>) -> R): R {
+    val openPages = ArrayList<ResponseBody>()
+    val deployments = deploymentPages(owner, repo, filters)
+      .flatMap { page ->
+        openPages.add(page)
+        sequence {
+          val reader = JsonReader.of(page.source())
+          reader.beginArray()
+          while (reader.hasNext()) {
+            yield(GitHubJson.deploymentAdapter.fromJson(reader)!!)
+          }
+          reader.endArray()
+        }
+      }
+    try {
+      return block(deployments)
+    } finally {
+      openPages.forEach { it.close() }
+    }
   }
 
+  /**
+   * Finds the first deployment whose payload contains [payloadKey] with [payloadValue].
+   * All pages are taken into account, but only as many as needed are requested and
+   * only the `id` and `payload` of each deployment are decoded.
+   */
+  fun findDeploymentIdByPayload(owner: String, repo: String, filters: Map<String, String>, payloadKey: String, payloadValue: String): Long? {
+    val scanner = DeploymentScanner(payloadKey, payloadValue)
+    deploymentPages(owner, repo, mapOf("per_page" to "100") + filters).forEach { page ->
+      page.use {
+        val id = scanner.findId(it.source())
+        if (id != null) {
+          return id
+        }
+      }
+    }
+    return null
+  }
+
+  private fun deploymentPages(owner: String, repo: String, filters: Map<String, String>): Sequence<ResponseBody> {
+    return pages(github.getDeploymentsPage(owner, repo, filters)) { github.getNextDeploymentsPage(it, TargetRepository(owner, repo)) }
+  }
+
+  /**
+   * Creating a deployment isn't idempotent, so it is only retried after GitHub rejected the request.
+   * When the outcome is unknown, e.g. after a timeout or server error, existing deployments
+   * with the same ref, environment and payload are looked up before trying again.
+   */
   fun createDeployment(owner: String, repo: String, deploymentRequest: DeploymentRequest): Deployment? {
     val request = github.createDeployment(owner, repo, deploymentRequest)
-    return executeRequest(request)
+    return try {
+      executeRequest(request)
+    } catch (e: Exception) {
+      if (!isAmbiguousFailure(e)) {
+        throw e
+      }
+      findDeployment(owner, repo, deploymentRequest) ?: executeRequest(github.createDeployment(owner, repo, deploymentRequest))
+    }
+  }
+
+  fun createDeploymentAsync(owner: String, repo: String, deploymentRequest: DeploymentRequest): CompletableFuture<Deployment?> {
+    val request = asyncGithub.createDeployment(owner, repo, deploymentRequest)
+    return executeRequestAsync(request)
+      .handle<CompletableFuture<Deployment?>> { deployment, e ->
+        when {
+          e == null -> CompletableFuture.completedFuture(deployment)
+          !isAmbiguousFailure(unwrap(e)) -> failedFuture(unwrap(e))
+          else -> getDeploymentRefsAsync(owner, repo, deploymentFilters(deploymentRequest))
+            .thenCompose<Deployment?> { deployments ->
+              val existing = deployments?.firstOrNull { hasPayload(it.payload, deploymentRequest.payload) }
+              if (existing != null) {
+                CompletableFuture.completedFuture<Deployment?>(toDeployment(existing))
+              } else {
+                executeRequestAsync(asyncGithub.createDeployment(owner, repo, deploymentRequest))
+              }
+            }
+        }
+      }
+      .thenCompose { it }
+  }
+
+  private fun findDeployment(owner: String, repo: String, deploymentRequest: DeploymentRequest): Deployment? {
+    val deployments = getDeploymentRefs(owner, repo, deploymentFilters(deploymentRequest))
+    return deployments?.firstOrNull { hasPayload(it.payload, deploymentRequest.payload) }?.let { toDeployment(it) }
+  }
+
+  private fun toDeployment(ref: DeploymentRef): Deployment {
+    return Deployment(ref.id).apply {
+      sha = ref.sha
+      environment = ref.environment
+      payload = ref.payload
+    }
+  }
+
+  private fun deploymentFilters(deploymentRequest: DeploymentRequest): Map<String, String> {
+    return mapOf("ref" to deploymentRequest.ref, "environment" to deploymentRequest.environment)
+  }
+
+  private fun hasPayload(actual: Any?, payload: String?): Boolean {
+    return when (actual) {
+      null -> payload == null
+      is String -> actual == payload
+      // GitHub may return a JSON payload as object
+      else -> payload != null && actual == GitHubJson.anyAdapter.fromJson(payload)
+    }
+  }
+
+  private fun isAmbiguousFailure(e: Throwable): Boolean {
+    return when (e) {
+      is HttpStatusException -> e.code >= 500
+      is ConnectException, is UnknownHostException -> false
+      is IOException -> true
+      else -> false
+    }
+  }
+
+  private fun unwrap(e: Throwable): Throwable {
+    return if (e is CompletionException && e.cause != null) e.cause!! else e
+  }
+
+  private fun <T> failedFuture(e: Throwable): CompletableFuture<T> {
+    return CompletableFuture<T>().apply { completeExceptionally(e) }
   }
 
   fun updateDeploymentStatus(owner: String, repo: String, deploymentId: Long, deploymentStatusRequest: DeploymentStatusRequest): DeploymentStatus? {
-    val request = github.updateDeploymentStatus(owner, repo, deploymentId, deploymentStatusRequest)
+    val request = github.updateDeploymentStatus(owner, repo, deploymentId, deploymentStatusRequest, RequestPriority.of(deploymentStatusRequest))
     return executeRequest(request)
   }
+
+  fun updateDeploymentStatusAsync(owner: String, repo: String, deploymentId: Long, deploymentStatusRequest: DeploymentStatusRequest): CompletableFuture<DeploymentStatus?> {
+    val request = asyncGithub.updateDeploymentStatus(owner, repo, deploymentId, deploymentStatusRequest, RequestPriority.of(deploymentStatusRequest))
+    return executeRequestAsync(request)
+  }
+}
+
+// only hands retries over to the dispatchers, the calls themselves never run here
+private val asyncRetryScheduler: ScheduledExecutorService by lazy {
+  Executors.newSingleThreadScheduledExecutor { runnable ->
+    Thread(runnable, "github-client retry").apply { isDaemon = true }
+  }
 }
 
 class TokenAuthorizationInterceptor(private val token: String) : Interceptor {
@@ -0,0 +1,132 @@
+package de.gesellix.github.client
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Aggregated HTTP call metrics per endpoint template, e.g. `GET repos/{owner}/{repo}/deployments`.
+ * Recorded by the [MetricsEventListener], all durations are in microseconds.
+ */
+class GitHubClientMetrics {
+
+  private val endpoints = ConcurrentHashMap<String, EndpointMetrics>()
+
+  fun snapshot(): Map<String, EndpointSnapshot> {
+    return endpoints.entries
+      .associate { (endpoint, metrics) -> endpoint to metrics.snapshot() }
+      .toSortedMap()
+  }
+
+  fun reset() {
+    endpoints.clear()
+  }
+
+  internal fun record(endpoint: String, call: CallTimings) {
+    endpoints.computeIfAbsent(endpoint) { EndpointMetrics() }.record(call)
+  }
+
+  enum class Phase {
+    DNS,
+    CONNECT,
+    TLS,
+    TIME_TO_FIRST_BYTE,
+    RESPONSE_BODY,
+    TOTAL
+  }
+
+  data class PhaseSnapshot(
+    val count: Long,
+    val averageMicros: Long,
+    val maxMicros: Long
+  )
+
+  data class EndpointSnapshot(
+    val calls: Long,
+    val failures: Long,
+    val reusedConnections: Long,
+    val newConnections: Long,
+    val http2Calls: Long,
+    val bytesSent: Long,
+    val bytesReceived: Long,
+    val phases: Map<Phase, PhaseSnapshot>
+  ) {
+
+    val connectionReuseRatio: Double
+      get() = if (reusedConnections + newConnections == 0L) 0.0 else reusedConnections.toDouble() / (reusedConnections + newConnections)
+  }
+
+  internal class CallTimings {
+
+    val phases = LongArray(Phase.values().size) { -1 }
+    var failed = false
+    var connectionReused = false
+    var connectionAcquired = false
+    var http2 = false
+    var bytesSent = 0L
+    var bytesReceived = 0L
+  }
+
+  private class PhaseMetrics {
+
+    val count = LongAdder()
+    val totalMicros = LongAdder()
+    val maxMicros = AtomicLong()
+
+    fun record(micros: Long) {
+      count.increment()
+      totalMicros.add(micros)
+      maxMicros.accumulateAndGet(micros) { a, b -> maxOf(a, b) }
+    }
+
+    fun snapshot(): PhaseSnapshot {
+      val n = count.sum()
+      return PhaseSnapshot(n, if (n == 0L) 0 else totalMicros.sum() / n, maxMicros.get())
+    }
+  }
+
+  private class EndpointMetrics {
+
+    val calls = LongAdder()
+    val failures = LongAdder()
+    val reusedConnections = LongAdder()
+    val newConnections = LongAdder()
+    val http2Calls = LongAdder()
+    val bytesSent = LongAdder()
+    val bytesReceived = LongAdder()
+    val phases = Array(Phase.values().size) { PhaseMetrics() }
+
+    fun record(call: CallTimings) {
+      calls.increment()
+      if (call.failed) {
+        failures.increment()
+      }
+      if (call.connectionAcquired) {
+        if (call.connectionReused) reusedConnections.increment() else newConnections.increment()
+      }
+      if (call.http2) {
+        http2Calls.increment()
+      }
+      bytesSent.add(call.bytesSent)
+      bytesReceived.add(call.bytesReceived)
+      call.phases.forEachIndexed { index, micros ->
+        if (micros >= 0) {
+          phases[index].record(micros)
+        }
+      }
+    }
+
+    fun snapshot(): EndpointSnapshot {
+      return EndpointSnapshot(
+        calls.sum(),
+        failures.sum(),
+        reusedConnections.sum(),
+        newConnections.sum(),
+        http2Calls.sum(),
+        bytesSent.sum(),
+        bytesReceived.sum(),
+        Phase.values().associate { it to phases[it.ordinal].snapshot() }.filterValues { it.count > 0 }
+      )
+    }
+  }
+}
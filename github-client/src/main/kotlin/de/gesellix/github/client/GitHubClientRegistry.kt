@@ -0,0 +1,234 @@
+package de.gesellix.github.client
+
+import okhttp3.Cache
+import okhttp3.ConnectionPool
+import okhttp3.HttpUrl.Companion.toHttpUrl
+import okhttp3.OkHttpClient
+import okio.ByteString.Companion.encodeUtf8
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * Keeps [GitHubClient] instances alive across requests, so that status updates
+ * don't pay a fresh TCP/TLS handshake each time.
+ *
+ * Clients are keyed by base URL, token fingerprint, user agent and timeout.
+ * GitHub App clients keep their [GitHubAppCredentials] across evictions, so that cached
+ * installation tokens outlive idle clients.
+ * All clients talking to the same GitHub host share one connection pool and dispatcher.
+ * Clients which haven't been used for [maxIdleMillis] are evicted on the next lookup.
+ * Requests to a host fail fast while its [CircuitBreaker] is open.
+ * An optional [RequestHedging] is shared by all clients, so that its hedge rate limit applies globally.
+ *
+ * GET responses are revalidated with conditional requests. Without a [cacheDirectory]
+ * every client keeps its own [ConditionalRequestCache] in memory, otherwise each host
+ * gets an OkHttp disk cache in a subdirectory of [cacheDirectory].
+ */
+open class GitHubClientRegistry(
+  private val maxIdleMillis: Long = TimeUnit.MINUTES.toMillis(10),
+  private val cacheDirectory: File? = null,
+  private val cacheMaxSize: Long = 10L * 1024 * 1024,
+  private val circuitBreakerFailureThreshold: Int = 5,
+  private val circuitBreakerOpenMillis: Long = TimeUnit.SECONDS.toMillis(30),
+  private val hedging: RequestHedging? = null
+) {
+
+  private val clients = ConcurrentHashMap<ClientKey, ClientEntry>()
+  private val httpClients = ConcurrentHashMap<String, OkHttpClient>()
+  private val circuitBreakers = ConcurrentHashMap<String, CircuitBreaker>()
+  private val appCredentials = ConcurrentHashMap<String, GitHubAppCredentials>()
+
+  /**
+   * Shared by all clients, so that clients with the same token see the same rate limit budget.
+   */
+  val rateLimitTracker = RateLimitTracker()
+
+  /**
+   * Per-phase call metrics of all clients, grouped by endpoint template.
+   */
+  val metrics = GitHubClientMetrics()
+
+  @Volatile
+  private var shutdown = false
+
+  fun getClient(
+    baseUrl: String,
+    token: String,
+    userAgentString: String,
+    timeout: Timeout
+  ): GitHubClient {
+    check(!shutdown) { "GitHubClientRegistry has already been shut down" }
+    evictIdleClients()
+    val key = ClientKey(baseUrl, fingerprint(token), userAgentString, timeout.unit.toMillis(timeout.timeout))
+    val entry = clients.computeIfAbsent(key) {
+      ClientEntry(
+        GitHubClient(
+          baseUrl = baseUrl,
+          token = token,
+          userAgentString = userAgentString,
+          timeout = timeout,
+          httpClient = getHttpClient(baseUrl),
+          responseCache = if (cacheDirectory == null) ConditionalRequestCache() else null,
+          rateLimitTracker = rateLimitTracker,
+          circuitBreaker = getCircuitBreaker(baseUrl),
+          hedging = hedging,
+          metrics = metrics
+        )
+      )
+    }
+    entry.lastAccess = System.nanoTime()
+    return entry.client
+  }
+
+  /**
+   * Clients spreading their requests over several [tokens], see [TokenPool].
+   */
+  fun getClient(
+    baseUrl: String,
+    tokens: List<String>,
+    userAgentString: String,
+    timeout: Timeout
+  ): GitHubClient {
+    if (tokens.size == 1) {
+      return getClient(baseUrl, tokens.single(), userAgentString, timeout)
+    }
+    check(!shutdown) { "GitHubClientRegistry has already been shut down" }
+    evictIdleClients()
+    val key = ClientKey(baseUrl, fingerprint(tokens.joinToString("\n")), userAgentString, timeout.unit.toMillis(timeout.timeout))
+    val entry = clients.computeIfAbsent(key) {
+      ClientEntry(
+        GitHubClient(
+          baseUrl = baseUrl,
+          userAgentString = userAgentString,
+          timeout = timeout,
+          httpClient = getHttpClient(baseUrl),
+          responseCache = if (cacheDirectory == null) ConditionalRequestCache() else null,
+          rateLimitTracker = rateLimitTracker,
+          circuitBreaker = getCircuitBreaker(baseUrl),
+          hedging = hedging,
+          metrics = metrics,
+          credentials = TokenPool(baseUrl, tokens, rateLimitTracker)
+        )
+      )
+    }
+    entry.lastAccess = System.nanoTime()
+    return entry.client
+  }
+
+  /**
+   * Clients authenticating as installation of the GitHub App [appId], see [GitHubAppCredentials].
+   */
+  fun getAppClient(
+    baseUrl: String,
+    appId: String,
+    privateKey: String,
+    installationId: Long?,
+    userAgentString: String,
+    timeout: Timeout
+  ): GitHubClient {
+    check(!shutdown) { "GitHubClientRegistry has already been shut down" }
+    evictIdleClients()
+    val appFingerprint = fingerprint("app $appId installation ${installationId ?: ""} $privateKey")
+    val key = ClientKey(baseUrl, appFingerprint, userAgentString, timeout.unit.toMillis(timeout.timeout))
+    val entry = clients.computeIfAbsent(key) {
+      val credentials = appCredentials.computeIfAbsent("$baseUrl|$appFingerprint") {
+        GitHubAppCredentials(
+          baseUrl = baseUrl,
+          appId = appId,
+          privateKey = GitHubAppJwt.parsePrivateKey(privateKey),
+          installationId = installationId,
+          httpClient = getHttpClient(baseUrl),
+          userAgentString = userAgentString,
+          timeout = timeout
+        )
+      }
+      ClientEntry(
+        GitHubClient(
+          baseUrl = baseUrl,
+          userAgentString = userAgentString,
+          timeout = timeout,
+          httpClient = getHttpClient(baseUrl),
+          responseCache = if (cacheDirectory == null) ConditionalRequestCache() else null,
+          rateLimitTracker = rateLimitTracker,
+          circuitBreaker = getCircuitBreaker(baseUrl),
+          hedging = hedging,
+          metrics = metrics,
+          credentials = credentials
+        )
+      )
+    }
+    entry.lastAccess = System.nanoTime()
+    return entry.client
+  }
+
+  /**
+   * All clients talking to the same GitHub host share one circuit breaker.
+   */
+  fun getCircuitBreaker(baseUrl: String): CircuitBreaker {
+    return circuitBreakers.computeIfAbsent(hostKey(baseUrl)) {
+      CircuitBreaker(circuitBreakerFailureThreshold, circuitBreakerOpenMillis)
+    }
+  }
+
+  fun size(): Int {
+    return clients.size
+  }
+
+  fun evictIdleClients() {
+    val idleSince = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(maxIdleMillis)
+    clients.entries.removeIf { it.value.lastAccess - idleSince < 0 }
+  }
+
+  fun shutdown() {
+    shutdown = true
+    clients.clear()
+    appCredentials.clear()
+    httpClients.values.forEach { httpClient ->
+      httpClient.dispatcher.executorService.shutdown()
+      httpClient.connectionPool.evictAll()
+      httpClient.cache?.close()
+    }
+    httpClients.clear()
+    hedging?.shutdown()
+  }
+
+  private fun getHttpClient(baseUrl: String): OkHttpClient {
+    return httpClients.computeIfAbsent(hostKey(baseUrl)) { host ->
+      OkHttpClient.Builder()
+        .connectionPool(ConnectionPool(5, 5, TimeUnit.MINUTES))
+        .apply {
+          if (cacheDirectory != null) {
+            cache(Cache(File(cacheDirectory, fingerprint(host)), cacheMaxSize))
+            addNetworkInterceptor(RevalidateCachedResponsesInterceptor())
+          }
+        }
+        .build()
+    }
+  }
+
+  companion object {
+
+    fun fingerprint(token: String): String {
+      return token.encodeUtf8().sha256().hex()
+    }
+
+    private fun hostKey(baseUrl: String): String {
+      val url = baseUrl.toHttpUrl()
+      return "${url.scheme}://${url.host}:${url.port}"
+    }
+  }
+
+  private data class ClientKey(
+    val baseUrl: String,
+    val tokenFingerprint: String,
+    val userAgentString: String,
+    val timeoutMillis: Long
+  )
+
+  private class ClientEntry(val client: GitHubClient) {
+
+    @Volatile
+    var lastAccess: Long = System.nanoTime()
+  }
+}
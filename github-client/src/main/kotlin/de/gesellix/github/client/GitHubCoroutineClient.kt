@@ -0,0 +1,115 @@
+package de.gesellix.github.client
+
+import de.gesellix.github.client.data.Commit
+import de.gesellix.github.client.data.CommitComment
+import de.gesellix.github.client.data.CommitCommentRequest
+import de.gesellix.github.client.data.CommitStatus
+import de.gesellix.github.client.data.CommitStatusRequest
+import de.gesellix.github.client.data.CommitStatusesSummary
+import de.gesellix.github.client.data.Deployment
+import de.gesellix.github.client.data.DeploymentRequest
+import de.gesellix.github.client.data.DeploymentStatus
+import de.gesellix.github.client.data.DeploymentStatusRequest
+import de.gesellix.github.client.data.PullRequest
+import de.gesellix.github.client.data.Repository
+import kotlinx.coroutines.delay
+import retrofit2.Response
+import java.io.IOException
+
+/**
+ * Coroutine based facade with the same error semantics as [GitHubClient]:
+ * unsuccessful responses are thrown as [HttpStatusException].
+ *
+ * Callers can fan out requests with `async` and bound them with `withTimeout`.
+ * Failed requests are retried as decided by the [retryInterceptor], requests held back by the rate limit are sent
+ * again when the budget allows for it. Both suspend instead of blocking a thread in between.
+ */
+class GitHubCoroutineClient(private val github: GitHubCoroutineService, private val retryInterceptor: RetryInterceptor? = null) {
+
+  private suspend fun <RES> send(request: suspend () -> Response<RES>): Response<RES> {
+    val startedAt = System.currentTimeMillis()
+    var attempt = 1
+    while (true) {
+      val delayMillis = try {
+        val response = request()
+        if (response.isSuccessful) {
+          return response
+        }
+        val raw = response.raw()
+        retryInterceptor?.retryDelayMillis(raw.request, raw, attempt, System.currentTimeMillis() - startedAt) ?: return response
+      } catch (e: RateLimitedException) {
+        // it hasn't been sent, so it doesn't count as an attempt, however long the rate limit holds it back
+        delay(e.retryAfterMillis)
+        continue
+      } catch (e: IOException) {
+        // the request isn't known here, so only requests which haven't been sent are retried
+        retryInterceptor?.retryDelayMillis(null, e, false, attempt, System.currentTimeMillis() - startedAt) ?: throw e
+      }
+      delay(delayMillis)
+      attempt++
+    }
+  }
+
+  private fun <RES> unwrap(response: Response<RES>): RES? {
+    if (!response.isSuccessful) {
+      throw HttpStatusException(response.code(), "request failed", response)
+    }
+    return response.body()
+  }
+
+  suspend fun getRepository(owner: String, repo: String): Repository? {
+    return unwrap(send { github.getRepository(owner, repo) })
+  }
+
+  suspend fun getCommit(owner: String, repo: String, commitSha: String): Commit? {
+    return unwrap(send { github.getCommit(owner, repo, commitSha) })
+  }
+
+  suspend fun addCommitComment(owner: String, repo: String, commitSha: String, commitCommentRequest: CommitCommentRequest): CommitComment? {
+    return unwrap(send { github.addCommitComment(owner, repo, commitSha, commitCommentRequest) })
+  }
+
+  suspend fun getCommitStatusesSummary(owner: String, repo: String, ref: String): CommitStatusesSummary? {
+    return unwrap(send { github.getCommitStatusesSummary(owner, repo, ref) })
+  }
+
+  suspend fun getCommitStatuses(owner: String, repo: String, ref: String): Array<CommitStatus>? {
+    return unwrap(send { github.getCommitStatuses(owner, repo, ref) })
+  }
+
+  suspend fun updateCommitStatus(owner: String, repo: String, sha: String, commitStatus: CommitStatusRequest): CommitStatus? {
+    return unwrap(send { github.updateCommitStatus(owner, repo, sha, commitStatus) })
+  }
+
+  suspend fun getPullRequest(owner: String, repo: String, pullNumber: Int): PullRequest? {
+    return unwrap(send { github.getPullRequest(owner, repo, pullNumber) })
+  }
+
+  suspend fun getDeployments(owner: String, repo: String, filters: Map<String, String>): List<Deployment>? {
+    return unwrap(send { github.getDeployments(owner, repo, filters) })
+  }
+
+  /**
+   * Like [GitHubClient.findDeploymentIdByPayload], pages are requested one after another until a deployment matches.
+   */
+  suspend fun findDeploymentIdByPayload(owner: String, repo: String, filters: Map<String, String>, payloadKey: String, payloadValue: String): Long? {
+    val scanner = DeploymentScanner(payloadKey, payloadValue)
+    var response = send { github.getDeploymentsPage(owner, repo, mapOf("per_page" to "100") + filters) }
+    while (true) {
+      val id = unwrap(response)?.use { scanner.findId(it.source()) }
+      if (id != null) {
+        return id
+      }
+      val next = nextPageUrl(response.headers()["Link"]) ?: return null
+      response = send { github.getNextDeploymentsPage(next, TargetRepository(owner, repo)) }
+    }
+  }
+
+  suspend fun createDeployment(owner: String, repo: String, deploymentRequest: DeploymentRequest): Deployment? {
+    return unwrap(send { github.createDeployment(owner, repo, deploymentRequest) })
+  }
+
+  suspend fun updateDeploymentStatus(owner: String, repo: String, deploymentId: Long, deploymentStatusRequest: DeploymentStatusRequest): DeploymentStatus? {
+    return unwrap(send { github.updateDeploymentStatus(owner, repo, deploymentId, deploymentStatusRequest, RequestPriority.of(deploymentStatusRequest)) })
+  }
+}
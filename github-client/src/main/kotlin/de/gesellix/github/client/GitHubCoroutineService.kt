@@ -0,0 +1,125 @@
+package de.gesellix.github.client
+
+import de.gesellix.github.client.data.Commit
+import de.gesellix.github.client.data.CommitComment
+import de.gesellix.github.client.data.CommitCommentRequest
+import de.gesellix.github.client.data.CommitStatus
+import de.gesellix.github.client.data.CommitStatusRequest
+import de.gesellix.github.client.data.CommitStatusesSummary
+import de.gesellix.github.client.data.Deployment
+import de.gesellix.github.client.data.DeploymentRequest
+import de.gesellix.github.client.data.DeploymentStatus
+import de.gesellix.github.client.data.DeploymentStatusRequest
+import de.gesellix.github.client.data.PullRequest
+import de.gesellix.github.client.data.Repository
+import okhttp3.ResponseBody
+import retrofit2.Response
+import retrofit2.http.Body
+import retrofit2.http.GET
+import retrofit2.http.Headers
+import retrofit2.http.POST
+import retrofit2.http.Path
+import retrofit2.http.QueryMap
+import retrofit2.http.Tag
+import retrofit2.http.Url
+
+/**
+ * Suspending counterpart of [GitHubService].
+ * Cancelling the calling coroutine cancels the underlying HTTP call.
+ */
+interface GitHubCoroutineService {
+
+  @GET("repos/{owner}/{repo}")
+  suspend fun getRepository(
+    @Path("owner") owner: String,
+    @Path("repo") repo: String
+  ): Response<Repository>
+
+  @GET("repos/{owner}/{repo}/git/commits/{commit_sha}")
+  suspend fun getCommit(
+    @Path("owner") owner: String,
+    @Path("repo") repo: String,
+    @Path("commit_sha") commitSha: String
+  ): Response<Commit>
+
+  @POST("repos/{owner}/{repo}/commits/{commit_sha}/comments")
+  suspend fun addCommitComment(
+    @Path("owner") owner: String,
+    @Path("repo") repo: String,
+    @Path("commit_sha") sha: String,
+    @Body commitComment: CommitCommentRequest
+  ): Response<CommitComment>
+
+  @GET("repos/{owner}/{repo}/commits/{ref}/status")
+  suspend fun getCommitStatusesSummary(
+    @Path("owner") owner: String,
+    @Path("repo") repo: String,
+    @Path("ref") ref: String
+  ): Response<CommitStatusesSummary>
+
+  @GET("repos/{owner}/{repo}/commits/{ref}/statuses")
+  suspend fun getCommitStatuses(
+    @Path("owner") owner: String,
+    @Path("repo") repo: String,
+    @Path("ref") ref: String
+  ): Response<Array<CommitStatus>>
+
+  @Idempotent
+  @POST("repos/{owner}/{repo}/statuses/{sha}")
+  suspend fun updateCommitStatus(
+    @Path("owner") owner: String,
+    @Path("repo") repo: String,
+    @Path("sha") sha: String,
+    @Body commitStatus: CommitStatusRequest
+  ): Response<CommitStatus>
+
+  @GET("repos/{owner}/{repo}/pulls/{pull_number}")
+  suspend fun getPullRequest(
+    @Path("owner") owner: String,
+    @Path("repo") repo: String,
+    @Path("pull_number") pullNumber: Int
+  ): Response<PullRequest>
+
+  @Headers("Accept: application/vnd.github.ant-man-preview+json, application/vnd.github.flash-preview+json")
+  @GET("repos/{owner}/{repo}/deployments")
+  suspend fun getDeployments(
+    @Path("owner") owner: String,
+    @Path("repo") repo: String,
+    @QueryMap filters: Map<String, String>
+  ): Response<List<Deployment>>
+
+  // buffered instead of streamed, so that scanning a page doesn't read from the network on the calling thread
+  @Headers("Accept: application/vnd.github.ant-man-preview+json, application/vnd.github.flash-preview+json")
+  @GET("repos/{owner}/{repo}/deployments")
+  suspend fun getDeploymentsPage(
+    @Path("owner") owner: String,
+    @Path("repo") repo: String,
+    @QueryMap filters: Map<String, String>
+  ): Response<ResponseBody>
+
+  @Headers("Accept: application/vnd.github.ant-man-preview+json, application/vnd.github.flash-preview+json")
+  @GET
+  suspend fun getNextDeploymentsPage(
+    @Url url: String,
+    @Tag repository: TargetRepository
+  ): Response<ResponseBody>
+
+  @Headers("Accept: application/vnd.github.ant-man-preview+json, application/vnd.github.flash-preview+json")
+  @POST("repos/{owner}/{repo}/deployments")
+  suspend fun createDeployment(
+    @Path("owner") owner: String,
+    @Path("repo") repo: String,
+    @Body deployment: DeploymentRequest
+  ): Response<Deployment>
+
+  @Headers("Accept: application/vnd.github.ant-man-preview+json, application/vnd.github.flash-preview+json")
+  @Idempotent
+  @POST("repos/{owner}/{repo}/deployments/{deploymentId}/statuses")
+  suspend fun updateDeploymentStatus(
+    @Path("owner") owner: String,
+    @Path("repo") repo: String,
+    @Path("deploymentId") deploymentId: Long,
+    @Body deploymentStatusRequest: DeploymentStatusRequest,
+    @Tag priority: RequestPriority
+  ): Response<DeploymentStatus>
+}
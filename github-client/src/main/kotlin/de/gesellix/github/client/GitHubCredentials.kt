@@ -0,0 +1,42 @@
+package de.gesellix.github.client
+
+import okhttp3.Interceptor
+import okhttp3.Request
+import okhttp3.Response
+
+/**
+ * Supplies the `Authorization` header per request, for credentials which aren't a single static token.
+ */
+interface GitHubCredentials {
+
+  /**
+   * May block to fetch fresh credentials, failures must be reported as [java.io.IOException].
+   * @return the credential for [request], `null` sends the request unauthenticated
+   */
+  fun authorization(request: Request): Credential?
+
+  /**
+   * The [Credential.identity] used for requests to [owner]/[repo], `null` when it isn't known without a request.
+   */
+  fun identity(owner: String, repo: String): String?
+}
+
+/**
+ * An `Authorization` header value and the stable [identity] its rate limit budget is accounted to,
+ * which outlives rotated header values like installation tokens.
+ */
+class Credential(val authorization: String, val identity: String)
+
+class CredentialsAuthorizationInterceptor(private val credentials: GitHubCredentials) : Interceptor {
+
+  override fun intercept(chain: Interceptor.Chain): Response {
+    val credential = credentials.authorization(chain.request()) ?: return chain.proceed(chain.request())
+    return chain.proceed(
+      chain.request()
+        .newBuilder()
+        .header("Authorization", credential.authorization)
+        .tag(Credential::class.java, credential)
+        .build()
+    )
+  }
+}
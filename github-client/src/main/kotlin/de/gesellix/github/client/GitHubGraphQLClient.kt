@@ -0,0 +1,241 @@
+package de.gesellix.github.client
+
+import com.squareup.moshi.JsonReader
+import de.gesellix.github.client.data.DeploymentRef
+import de.gesellix.github.client.data.GraphQLRequest
+import okhttp3.HttpUrl.Companion.toHttpUrl
+
+/**
+ * Resolves data for many commits and pull requests with a single GraphQL query each,
+ * where the REST API needs one request per commit or pull request.
+ *
+ * Lookups are sent in batches of up to [maxBatchSize] aliased fields.
+ * Commits or pull requests unknown to GitHub are missing in the results.
+ */
+class GitHubGraphQLClient(
+  private val url: String,
+  private val service: GitHubGraphQLService,
+  private val maxBatchSize: Int = 50
+) {
+
+  /**
+   * @return the latest 100 deployments of each commit, keyed by commit sha.
+   * Older deployments of a commit need to be looked up with the REST API.
+   */
+  fun getCommitDeployments(owner: String, repo: String, shas: Collection<String>): Map<String, List<DeploymentRef>> {
+    return lookup(owner, repo, shas, emptyList()).deployments
+  }
+
+  /**
+   * @return the head commit sha of each pull request, keyed by pull request number
+   */
+  fun getPullRequestHeads(owner: String, repo: String, pullNumbers: Collection<Int>): Map<Int, String> {
+    return lookup(owner, repo, emptyList(), pullNumbers).pullRequestHeads
+  }
+
+  private val singleFlight = SingleFlight()
+
+  fun lookup(owner: String, repo: String, shas: Collection<String>, pullNumbers: Collection<Int>): Result {
+    return singleFlight.call(listOf(owner, repo, shas.toSet(), pullNumbers.toSet())) {
+      query(owner, repo, shas, pullNumbers)
+    }
+  }
+
+  private fun query(owner: String, repo: String, shas: Collection<String>, pullNumbers: Collection<Int>): Result {
+    val deployments = HashMap<String, List<DeploymentRef>>()
+    val pullRequestHeads = HashMap<Int, String>()
+    val keys: List<Any> = shas.distinct() + pullNumbers.distinct()
+    keys.chunked(maxBatchSize).forEach { batch ->
+      val batchShas = batch.filterIsInstance<String>()
+      val batchPullNumbers = batch.filterIsInstance<Int>()
+      val response = service.query(url, buildQuery(owner, repo, batchShas, batchPullNumbers), TargetRepository(owner, repo)).execute()
+      if (!response.isSuccessful) {
+        throw HttpStatusException(response.code(), "request failed", response)
+      }
+      response.body()!!.use { body ->
+        val reader = JsonReader.of(body.source())
+        readResponse(reader, batchShas, batchPullNumbers, deployments, pullRequestHeads)
+      }
+    }
+    return Result(deployments, pullRequestHeads)
+  }
+
+  private fun buildQuery(owner: String, repo: String, shas: List<String>, pullNumbers: List<Int>): GraphQLRequest {
+    // values are passed as variables, so that nothing needs to be escaped in the query
+    val variables = linkedMapOf<String, Any>("owner" to owner, "name" to repo)
+    val declarations = StringBuilder("\$owner: String!, \$name: String!")
+    val fields = StringBuilder()
+    shas.forEachIndexed { i, sha ->
+      variables["c$i"] = sha
+      declarations.append(", \$c$i: GitObjectID!")
+      fields.append(" c$i: object(oid: \$c$i) { ... on Commit { deployments(first: 100, orderBy: {field: CREATED_AT, direction: DESC}) { nodes { databaseId environment payload } } } }")
+    }
+    pullNumbers.forEachIndexed { i, number ->
+      variables["p$i"] = number
+      declarations.append(", \$p$i: Int!")
+      fields.append(" p$i: pullRequest(number: \$p$i) { headRefOid }")
+    }
+    return GraphQLRequest("query($declarations) { repository(owner: \$owner, name: \$name) {$fields } }", variables)
+  }
+
+  private fun readResponse(
+    reader: JsonReader,
+    shas: List<String>,
+    pullNumbers: List<Int>,
+    deployments: MutableMap<String, List<DeploymentRef>>,
+    pullRequestHeads: MutableMap<Int, String>
+  ) {
+    var hasData = false
+    val errors = ArrayList<String>()
+    reader.beginObject()
+    while (reader.hasNext()) {
+      when (reader.nextName()) {
+        "data" -> hasData = readData(reader, shas, pullNumbers, deployments, pullRequestHeads)
+        "errors" -> errors.addAll(readErrors(reader))
+        else -> reader.skipValue()
+      }
+    }
+    reader.endObject()
+    // partial errors, e.g. for unknown commits, still come with data
+    if (!hasData && errors.isNotEmpty()) {
+      throw GraphQLException(errors.joinToString("; "))
+    }
+  }
+
+  private fun readData(
+    reader: JsonReader,
+    shas: List<String>,
+    pullNumbers: List<Int>,
+    deployments: MutableMap<String, List<DeploymentRef>>,
+    pullRequestHeads: MutableMap<Int, String>
+  ): Boolean {
+    if (reader.peek() == JsonReader.Token.NULL) {
+      reader.nextNull<Any>()
+      return false
+    }
+    var hasRepository = false
+    reader.beginObject()
+    while (reader.hasNext()) {
+      if (reader.nextName() != "repository" || reader.peek() == JsonReader.Token.NULL) {
+        reader.skipValue()
+        continue
+      }
+      hasRepository = true
+      reader.beginObject()
+      while (reader.hasNext()) {
+        val alias = reader.nextName()
+        val index = alias.substring(1).toIntOrNull()
+        when {
+          reader.peek() == JsonReader.Token.NULL || index == null -> reader.skipValue()
+          alias.startsWith("c") -> deployments[shas[index]] = readCommitDeployments(reader)
+          alias.startsWith("p") -> readHeadRefOid(reader)?.let { pullRequestHeads[pullNumbers[index]] = it }
+          else -> reader.skipValue()
+        }
+      }
+      reader.endObject()
+    }
+    reader.endObject()
+    return hasRepository
+  }
+
+  private fun readCommitDeployments(reader: JsonReader): List<DeploymentRef> {
+    val result = ArrayList<DeploymentRef>()
+    reader.beginObject()
+    while (reader.hasNext()) {
+      if (reader.nextName() != "deployments" || reader.peek() == JsonReader.Token.NULL) {
+        reader.skipValue()
+        continue
+      }
+      reader.beginObject()
+      while (reader.hasNext()) {
+        if (reader.nextName() != "nodes") {
+          reader.skipValue()
+          continue
+        }
+        reader.beginArray()
+        while (reader.hasNext()) {
+          readDeployment(reader)?.let { result.add(it) }
+        }
+        reader.endArray()
+      }
+      reader.endObject()
+    }
+    reader.endObject()
+    return result
+  }
+
+  private fun readDeployment(reader: JsonReader): DeploymentRef? {
+    var id: Long? = null
+    var environment: String? = null
+    var payload: String? = null
+    reader.beginObject()
+    while (reader.hasNext()) {
+      val name = reader.nextName()
+      if (reader.peek() == JsonReader.Token.NULL) {
+        reader.skipValue()
+        continue
+      }
+      when (name) {
+        "databaseId" -> id = reader.nextLong()
+        "environment" -> environment = reader.nextString()
+        "payload" -> payload = reader.nextString()
+        else -> reader.skipValue()
+      }
+    }
+    reader.endObject()
+    return id?.let { DeploymentRef(it, environment, payload) }
+  }
+
+  private fun readHeadRefOid(reader: JsonReader): String? {
+    var headRefOid: String? = null
+    reader.beginObject()
+    while (reader.hasNext()) {
+      if (reader.nextName() == "headRefOid" && reader.peek() == JsonReader.Token.STRING) {
+        headRefOid = reader.nextString()
+      } else {
+        reader.skipValue()
+      }
+    }
+    reader.endObject()
+    return headRefOid
+  }
+
+  private fun readErrors(reader: JsonReader): List<String> {
+    val messages = ArrayList<String>()
+    reader.beginArray()
+    while (reader.hasNext()) {
+      reader.beginObject()
+      while (reader.hasNext()) {
+        if (reader.nextName() == "message" && reader.peek() == JsonReader.Token.STRING) {
+          messages.add(reader.nextString())
+        } else {
+          reader.skipValue()
+        }
+      }
+      reader.endObject()
+    }
+    reader.endArray()
+    return messages
+  }
+
+  data class Result(
+    val deployments: Map<String, List<DeploymentRef>>,
+    val pullRequestHeads: Map<Int, String>
+  )
+
+  companion object {
+
+    /**
+     * GitHub.com serves GraphQL at `/graphql`, GitHub Enterprise at `/api/graphql` next to the REST API at `/api/v3`.
+     */
+    fun graphQLUrl(baseUrl: String): String {
+      val url = baseUrl.toHttpUrl()
+      val path = url.encodedPath.trimEnd('/')
+      return if (path.endsWith("/api/v3")) {
+        url.resolve(path.removeSuffix("/v3") + "/graphql")!!.toString()
+      } else {
+        url.resolve("graphql")!!.toString()
+      }
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package de.gesellix.github.client
+
+import de.gesellix.github.client.data.GraphQLRequest
+import okhttp3.ResponseBody
+import retrofit2.Call
+import retrofit2.http.Body
+import retrofit2.http.POST
+import retrofit2.http.Streaming
+import retrofit2.http.Tag
+import retrofit2.http.Url
+
+interface GitHubGraphQLService {
+
+  // queries don't change anything, so they may be repeated like a GET
+  @Idempotent
+  @Streaming
+  @POST
+  fun query(
+    @Url url: String,
+    @Body request: GraphQLRequest,
+    @Tag repository: TargetRepository
+  ): Call<ResponseBody>
+}
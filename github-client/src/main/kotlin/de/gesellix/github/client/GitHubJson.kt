@@ -0,0 +1,32 @@
+package de.gesellix.github.client
+
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.Moshi
+import de.gesellix.github.client.data.Deployment
+import de.gesellix.github.client.data.DeploymentPayload
+import retrofit2.converter.moshi.MoshiConverterFactory
+
+/**
+ * The process-wide [Moshi] instance shared by all clients.
+ *
+ * Every class in `de.gesellix.github.client.data` has a kapt-generated adapter.
+ * Moshi resolves an adapter once per type and caches it in this instance,
+ * so neither reflection nor adapter lookups happen on the hot path.
+ *
+ * Generated adapters match names via `JsonReader.Options` and `skipValue()` anything they don't know.
+ * Projections like [de.gesellix.github.client.data.DeploymentRef] or [de.gesellix.github.client.data.PullRequestHead]
+ * declare only the fields we read, so unneeded subtrees are skipped without being materialized.
+ */
+object GitHubJson {
+
+  val moshi: Moshi = Moshi.Builder().build()
+
+  val converterFactory: MoshiConverterFactory = MoshiConverterFactory.create(moshi)
+
+  val deploymentAdapter: JsonAdapter<Deployment> = moshi.adapter(Deployment::class.java)
+
+  val deploymentPayloadAdapter: JsonAdapter<DeploymentPayload> = moshi.adapter(DeploymentPayload::class.java)
+
+  // deployment payloads of other tools may be any JSON value
+  internal val anyAdapter: JsonAdapter<Any> = moshi.adapter(Any::class.java)
+}
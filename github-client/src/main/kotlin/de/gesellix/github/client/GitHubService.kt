@@ -3,15 +3,19 @@ package de.gesellix.github.client
 import de.gesellix.github.client.data.Commit
 import de.gesellix.github.client.data.CommitComment
 import de.gesellix.github.client.data.CommitCommentRequest
+import de.gesellix.github.client.data.CommitRef
 import de.gesellix.github.client.data.CommitStatus
 import de.gesellix.github.client.data.CommitStatusRequest
 import de.gesellix.github.client.data.CommitStatusesSummary
 import de.gesellix.github.client.data.Deployment
+import de.gesellix.github.client.data.DeploymentRef
 import de.gesellix.github.client.data.DeploymentRequest
 import de.gesellix.github.client.data.DeploymentStatus
 import de.gesellix.github.client.data.DeploymentStatusRequest
 import de.gesellix.github.client.data.PullRequest
+import de.gesellix.github.client.data.PullRequestHead
 import de.gesellix.github.client.data.Repository
+import okhttp3.ResponseBody
 import retrofit2.Call
 import retrofit2.http.Body
 import retrofit2.http.GET
@@ -19,6 +23,9 @@ import retrofit2.http.Headers
 import retrofit2.http.POST
 import retrofit2.http.Path
 import retrofit2.http.QueryMap
+import retrofit2.http.Streaming
+import retrofit2.http.Tag
+import retrofit2.http.Url
 
 interface GitHubService {
 
@@ -35,6 +42,13 @@ interface GitHubService {
     @Path("commit_sha") commitSha: String
   ): Call<Commit>
 
+  @GET("repos/{owner}/{repo}/git/commits/{commit_sha}")
+  fun getCommitRef(
+    @Path("owner") owner: String,
+    @Path("repo") repo: String,
+    @Path("commit_sha") commitSha: String
+  ): Call<CommitRef>
+
   @POST("repos/{owner}/{repo}/commits/{commit_sha}/comments")
   fun addCommitComment(
     @Path("owner") owner: String,
@@ -57,6 +71,7 @@ interface GitHubService {
     @Path("ref") ref: String
   ): Call<Array<CommitStatus>>
 
+  @Idempotent
   @POST("repos/{owner}/{repo}/statuses/{sha}")
   fun updateCommitStatus(
     @Path("owner") owner: String,
@@ -72,6 +87,13 @@ interface GitHubService {
     @Path("pull_number") pullNumber: Int
   ): Call<PullRequest>
 
+  @GET("repos/{owner}/{repo}/pulls/{pull_number}")
+  fun getPullRequestHead(
+    @Path("owner") owner: String,
+    @Path("repo") repo: String,
+    @Path("pull_number") pullNumber: Int
+  ): Call<PullRequestHead>
+
   @Headers("Accept: application/vnd.github.ant-man-preview+json, application/vnd.github.flash-preview+json")
   @GET("repos/{owner}/{repo}/deployments")
   fun getDeployments(
@@ -80,6 +102,31 @@ interface GitHubService {
     @QueryMap filters: Map<String, String>
   ): Call<List<Deployment>>
 
+  @Headers("Accept: application/vnd.github.ant-man-preview+json, application/vnd.github.flash-preview+json")
+  @GET("repos/{owner}/{repo}/deployments")
+  fun getDeploymentRefs(
+    @Path("owner") owner: String,
+    @Path("repo") repo: String,
+    @QueryMap filters: Map<String, String>
+  ): Call<List<DeploymentRef>>
+
+  @Headers("Accept: application/vnd.github.ant-man-preview+json, application/vnd.github.flash-preview+json")
+  @Streaming
+  @GET("repos/{owner}/{repo}/deployments")
+  fun getDeploymentsPage(
+    @Path("owner") owner: String,
+    @Path("repo") repo: String,
+    @QueryMap filters: Map<String, String>
+  ): Call<ResponseBody>
+
+  @Headers("Accept: application/vnd.github.ant-man-preview+json, application/vnd.github.flash-preview+json")
+  @Streaming
+  @GET
+  fun getNextDeploymentsPage(
+    @Url url: String,
+    @Tag repository: TargetRepository
+  ): Call<ResponseBody>
+
   @Headers("Accept: application/vnd.github.ant-man-preview+json, application/vnd.github.flash-preview+json")
   @POST("repos/{owner}/{repo}/deployments")
   fun createDeployment(
@@ -89,11 +136,13 @@ interface GitHubService {
   ): Call<Deployment>
 
   @Headers("Accept: application/vnd.github.ant-man-preview+json, application/vnd.github.flash-preview+json")
+  @Idempotent
   @POST("repos/{owner}/{repo}/deployments/{deploymentId}/statuses")
   fun updateDeploymentStatus(
     @Path("owner") owner: String,
     @Path("repo") repo: String,
     @Path("deploymentId") deploymentId: Long,
-    @Body deploymentStatusRequest: DeploymentStatusRequest
+    @Body deploymentStatusRequest: DeploymentStatusRequest,
+    @Tag priority: RequestPriority
   ): Call<DeploymentStatus>
 }
@@ -0,0 +1,5 @@
+package de.gesellix.github.client
+
+import java.io.IOException
+
+class GraphQLException(message: String) : IOException(message)
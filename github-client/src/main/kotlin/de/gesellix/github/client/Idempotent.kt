@@ -0,0 +1,9 @@
+package de.gesellix.github.client
+
+/**
+ * Marks a non-GET service method which may safely be repeated, e.g. because
+ * GitHub only keeps the latest state. See [RetryInterceptor].
+ */
+@Target(AnnotationTarget.FUNCTION)
+@Retention(AnnotationRetention.RUNTIME)
+annotation class Idempotent
@@ -0,0 +1,50 @@
+package de.gesellix.github.client
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Keeps the latest [windowSize] latencies per endpoint to estimate latency percentiles.
+ */
+class LatencyTracker(private val windowSize: Int = 256) {
+
+  private val windows = ConcurrentHashMap<String, Window>()
+
+  fun record(endpoint: String, millis: Long) {
+    windows.computeIfAbsent(endpoint) { Window(windowSize) }.add(millis)
+  }
+
+  /**
+   * @return the latency below which [percentile] (0..1) of the recorded calls completed,
+   * or null while fewer than [minSamples] calls have been recorded
+   */
+  fun percentile(endpoint: String, percentile: Double, minSamples: Int = 20): Long? {
+    val samples = windows[endpoint]?.snapshot() ?: return null
+    if (samples.size < minSamples) {
+      return null
+    }
+    samples.sort()
+    val index = (percentile * (samples.size - 1)).toInt().coerceIn(0, samples.size - 1)
+    return samples[index]
+  }
+
+  private class Window(size: Int) {
+
+    private val values = LongArray(size)
+    private var count = 0
+    private var next = 0
+
+    @Synchronized
+    fun add(value: Long) {
+      values[next] = value
+      next = (next + 1) % values.size
+      if (count < values.size) {
+        count++
+      }
+    }
+
+    @Synchronized
+    fun snapshot(): LongArray {
+      return values.copyOf(count)
+    }
+  }
+}
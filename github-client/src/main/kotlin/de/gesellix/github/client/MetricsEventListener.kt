@@ -0,0 +1,149 @@
+package de.gesellix.github.client
+
+import de.gesellix.github.client.GitHubClientMetrics.Phase
+import okhttp3.Call
+import okhttp3.Connection
+import okhttp3.EventListener
+import okhttp3.Handshake
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
+import retrofit2.Invocation
+import retrofit2.http.DELETE
+import retrofit2.http.GET
+import retrofit2.http.PATCH
+import retrofit2.http.POST
+import retrofit2.http.PUT
+import java.io.IOException
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.Proxy
+import java.util.concurrent.TimeUnit
+
+/**
+ * Records the phases of a single call into [GitHubClientMetrics].
+ * Time to first byte is measured from the end of the request to the start of the response headers,
+ * the response body phase includes decoding, because converters read the body as a stream.
+ */
+class MetricsEventListener(private val metrics: GitHubClientMetrics) : EventListener() {
+
+  class Factory(private val metrics: GitHubClientMetrics) : EventListener.Factory {
+
+    override fun create(call: Call): EventListener {
+      return MetricsEventListener(metrics)
+    }
+  }
+
+  private val timings = GitHubClientMetrics.CallTimings()
+  private var callStart = 0L
+  private var dnsStart = 0L
+  private var connectStart = 0L
+  private var secureConnectStart = 0L
+  private var requestEnd = 0L
+  private var responseBodyStart = 0L
+
+  override fun callStart(call: Call) {
+    callStart = System.nanoTime()
+  }
+
+  override fun dnsStart(call: Call, domainName: String) {
+    dnsStart = System.nanoTime()
+  }
+
+  override fun dnsEnd(call: Call, domainName: String, inetAddressList: List<InetAddress>) {
+    record(Phase.DNS, dnsStart)
+  }
+
+  override fun connectStart(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy) {
+    connectStart = System.nanoTime()
+  }
+
+  override fun secureConnectStart(call: Call) {
+    secureConnectStart = System.nanoTime()
+  }
+
+  override fun secureConnectEnd(call: Call, handshake: Handshake?) {
+    record(Phase.TLS, secureConnectStart)
+  }
+
+  override fun connectEnd(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy, protocol: Protocol?) {
+    record(Phase.CONNECT, connectStart)
+  }
+
+  override fun connectFailed(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy, protocol: Protocol?, ioe: IOException) {
+    record(Phase.CONNECT, connectStart)
+  }
+
+  override fun connectionAcquired(call: Call, connection: Connection) {
+    timings.connectionAcquired = true
+    // without a connect phase the connection came from the pool
+    timings.connectionReused = connectStart == 0L
+    timings.http2 = connection.protocol() == Protocol.HTTP_2
+  }
+
+  override fun requestHeadersEnd(call: Call, request: Request) {
+    timings.bytesSent += request.headers.byteCount()
+    requestEnd = System.nanoTime()
+  }
+
+  override fun requestBodyEnd(call: Call, byteCount: Long) {
+    timings.bytesSent += byteCount
+    requestEnd = System.nanoTime()
+  }
+
+  override fun responseHeadersStart(call: Call) {
+    if (requestEnd != 0L) {
+      record(Phase.TIME_TO_FIRST_BYTE, requestEnd)
+    }
+  }
+
+  override fun responseHeadersEnd(call: Call, response: Response) {
+    timings.bytesReceived += response.headers.byteCount()
+  }
+
+  override fun responseBodyStart(call: Call) {
+    responseBodyStart = System.nanoTime()
+  }
+
+  override fun responseBodyEnd(call: Call, byteCount: Long) {
+    timings.bytesReceived += byteCount
+    record(Phase.RESPONSE_BODY, responseBodyStart)
+  }
+
+  override fun callEnd(call: Call) {
+    finish(call)
+  }
+
+  override fun callFailed(call: Call, ioe: IOException) {
+    timings.failed = true
+    finish(call)
+  }
+
+  private fun finish(call: Call) {
+    record(Phase.TOTAL, callStart)
+    metrics.record(endpoint(call.request()), timings)
+  }
+
+  private fun record(phase: Phase, start: Long) {
+    if (start != 0L) {
+      timings.phases[phase.ordinal] = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)
+    }
+  }
+
+  companion object {
+
+    /**
+     * The endpoint template of the Retrofit service method, so that metrics don't explode with every owner, repo or sha.
+     */
+    fun endpoint(request: Request): String {
+      val method = request.tag(Invocation::class.java)?.method() ?: return "${request.method} ${request.url.encodedPath}"
+      val path = method.getAnnotation(GET::class.java)?.value
+        ?: method.getAnnotation(POST::class.java)?.value
+        ?: method.getAnnotation(PUT::class.java)?.value
+        ?: method.getAnnotation(PATCH::class.java)?.value
+        ?: method.getAnnotation(DELETE::class.java)?.value
+      // service methods with a dynamic @Url have no template
+      return "${request.method} ${if (path.isNullOrEmpty()) method.name else path}"
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package de.gesellix.github.client
+
+import okhttp3.ResponseBody
+import retrofit2.Call
+import retrofit2.Response
+
+/**
+ * Lazily follows the `rel="next"` links of a paginated GitHub response.
+ * The next page is only requested when the sequence is iterated past the current one,
+ * callers are responsible for closing the bodies of the pages they've received.
+ */
+internal fun pages(firstPage: Call<ResponseBody>, nextPage: (String) -> Call<ResponseBody>): Sequence<ResponseBody> {
+  return sequence {
+    var call: Call<ResponseBody>? = firstPage
+    while (call != null) {
+      val response: Response<ResponseBody> = call.execute()
+      if (!response.isSuccessful) {
+        throw HttpStatusException(response.code(), "request failed", response)
+      }
+      val next = nextPageUrl(response.headers()["Link"])
+      yield(response.body()!!)
+      call = next?.let(nextPage)
+    }
+  }
+}
+
+/**
+ * Extracts the `next` URL of a `Link` header like
+ * `<https://api.github.com/...?page=2>; rel="next", <https://api.github.com/...?page=5>; rel="last"`.
+ */
+internal fun nextPageUrl(link: String?): String? {
+  if (link.isNullOrBlank()) {
+    return null
+  }
+  return link.split(",")
+    .map { it.trim() }
+    .firstOrNull { part -> part.split(";").drop(1).any { it.trim() == "rel=\"next\"" } }
+    ?.substringAfter("<")
+    ?.substringBefore(">")
+}
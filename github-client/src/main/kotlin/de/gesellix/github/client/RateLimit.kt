@@ -0,0 +1,19 @@
+package de.gesellix.github.client
+
+/**
+ * Rate limit budget as reported by GitHub with the `X-RateLimit-*` response headers.
+ */
+data class RateLimit(
+  val limit: Int,
+  val remaining: Int,
+  val resetEpochSeconds: Long
+) {
+
+  val resetAtMillis: Long
+    get() = resetEpochSeconds * 1000
+
+  fun isBelow(threshold: Int, now: Long = System.currentTimeMillis()): Boolean {
+    // after the reset the budget is full again, even if we haven't seen a response yet
+    return remaining < threshold && now < resetAtMillis
+  }
+}
@@ -0,0 +1,57 @@
+package de.gesellix.github.client
+
+import okhttp3.Interceptor
+import okhttp3.Response
+import java.io.InterruptedIOException
+import java.util.concurrent.TimeUnit
+import kotlin.math.min
+
+/**
+ * Keeps track of the `X-RateLimit-*` response headers and holds back requests
+ * before GitHub starts rejecting them with `403 Forbidden`.
+ *
+ * Requests are paced when the budget shrinks and parked until the reset when it is exhausted,
+ * [RequestPriority.URGENT] requests may use the last [reservedForUrgent] requests of the budget.
+ * A request is never parked longer than [maxParkMillis], it is sent anyway afterwards.
+ *
+ * Enqueued calls must not be parked, since that would block a thread of the OkHttp dispatcher and with it all other
+ * enqueued calls. Without [parkRequests], calls fail with a [RateLimitedException] telling when to send them again instead,
+ * see [GitHubClient.executeRequestAsync].
+ */
+class RateLimitInterceptor(
+  private val tracker: RateLimitTracker,
+  private val reservedForUrgent: Int = 100,
+  private val paceBelow: Int = 1000,
+  private val maxParkMillis: Long = TimeUnit.MINUTES.toMillis(15),
+  private val parkRequests: Boolean = true
+) : Interceptor {
+
+  override fun intercept(chain: Interceptor.Chain): Response {
+    val request = chain.request()
+    // rotated credentials like installation tokens keep sharing one budget
+    val identity = request.tag(Credential::class.java)?.identity ?: request.header("Authorization")
+    val budget = tracker.budget(RateLimitTracker.key(request.url, identity))
+    val priority = request.tag(RequestPriority::class.java) ?: RequestPriority.NORMAL
+
+    val delay = budget.acquire(priority, reservedForUrgent, paceBelow, System.currentTimeMillis(), wait = parkRequests)
+    if (delay > 0) {
+      if (!parkRequests) {
+        throw RateLimitedException(delay)
+      }
+      park(min(delay, maxParkMillis))
+    }
+
+    val response = chain.proceed(request)
+    budget.update(response)
+    return response
+  }
+
+  private fun park(millis: Long) {
+    try {
+      Thread.sleep(millis)
+    } catch (e: InterruptedException) {
+      Thread.currentThread().interrupt()
+      throw InterruptedIOException("interrupted while waiting for the rate limit to reset")
+    }
+  }
+}
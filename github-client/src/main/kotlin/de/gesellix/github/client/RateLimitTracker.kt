@@ -0,0 +1,102 @@
+package de.gesellix.github.client
+
+import okhttp3.HttpUrl
+import okhttp3.Response
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.math.max
+
+/**
+ * Remembers the rate limit budget per GitHub host and credential.
+ * A tracker can be shared by several [GitHubClient] instances using the same token.
+ */
+class RateLimitTracker {
+
+  private val budgets = ConcurrentHashMap<String, Budget>()
+
+  fun get(key: String): RateLimit? {
+    return budgets[key]?.rateLimit
+  }
+
+  fun get(url: HttpUrl, authorization: String?): RateLimit? {
+    return get(key(url, authorization))
+  }
+
+  fun snapshot(): Map<String, RateLimit> {
+    return budgets.mapNotNull { (key, budget) -> budget.rateLimit?.let { key to it } }.toMap()
+  }
+
+  internal fun budget(key: String): Budget {
+    return budgets.computeIfAbsent(key) { Budget() }
+  }
+
+  companion object {
+
+    fun key(url: HttpUrl, authorization: String?): String {
+      val credential = authorization?.let { GitHubClientRegistry.fingerprint(it) } ?: ""
+      // GraphQL queries are accounted separately from the REST API
+      val resource = if (url.encodedPath.endsWith("/graphql")) "graphql" else "core"
+      return "${url.scheme}://${url.host}:${url.port}|$credential|$resource"
+    }
+  }
+
+  internal class Budget {
+
+    @Volatile
+    var rateLimit: RateLimit? = null
+      private set
+
+    private var nextPermitAt = 0L
+
+    /**
+     * Takes one request from the budget and returns how many milliseconds the caller should wait before sending it.
+     *
+     * Urgent requests may use the whole budget, normal requests leave [reservedForUrgent] requests untouched.
+     * Once fewer than [paceBelow] requests remain, normal requests are spread evenly until the window resets.
+     * A caller which won't [wait] only takes a request which can be sent right away,
+     * otherwise nothing is taken and it should come back after the returned delay.
+     */
+    @Synchronized
+    fun acquire(priority: RequestPriority, reservedForUrgent: Int, paceBelow: Int, now: Long, wait: Boolean = true): Long {
+      val current = rateLimit ?: return 0
+      if (now >= current.resetAtMillis) {
+        return 0
+      }
+      val available = if (priority == RequestPriority.URGENT) current.remaining else current.remaining - reservedForUrgent
+      if (available <= 0) {
+        return current.resetAtMillis - now
+      }
+      if (priority == RequestPriority.URGENT || current.remaining >= paceBelow) {
+        take(current)
+        return 0
+      }
+      val interval = (current.resetAtMillis - now) / available
+      val permitAt = max(now, nextPermitAt)
+      if (!wait && permitAt > now) {
+        return permitAt - now
+      }
+      take(current)
+      nextPermitAt = permitAt + interval
+      return permitAt - now
+    }
+
+    private fun take(current: RateLimit) {
+      // in-flight requests aren't reflected in the headers yet, so count them locally
+      rateLimit = current.copy(remaining = current.remaining - 1)
+    }
+
+    @Synchronized
+    fun update(response: Response) {
+      val limit = response.header("X-RateLimit-Limit")?.toIntOrNull() ?: return
+      val remaining = response.header("X-RateLimit-Remaining")?.toIntOrNull() ?: return
+      val reset = response.header("X-RateLimit-Reset")?.toLongOrNull() ?: return
+      val current = rateLimit
+      // responses may complete out of order, an older window must not overwrite a newer one
+      if (current == null || reset >= current.resetEpochSeconds) {
+        rateLimit = RateLimit(limit, remaining, reset)
+      }
+      if (current != null && reset > current.resetEpochSeconds) {
+        nextPermitAt = 0
+      }
+    }
+  }
+}
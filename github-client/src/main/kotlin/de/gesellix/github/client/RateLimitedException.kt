@@ -0,0 +1,9 @@
+package de.gesellix.github.client
+
+import java.io.IOException
+
+/**
+ * A call which hasn't been sent, because it would have had to wait for the rate limit.
+ * It may be sent again after [retryAfterMillis].
+ */
+class RateLimitedException(val retryAfterMillis: Long) : IOException("rate limit budget exhausted, retry after ${retryAfterMillis}ms")
@@ -0,0 +1,119 @@
+package de.gesellix.github.client
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Sends a second, identical request when the first one hasn't answered within the
+ * [percentile] latency of its endpoint, and uses whichever response arrives first.
+ * The slower call is cancelled.
+ * The hedging delay derives from the time until the first response, counted from the start of the first request.
+ *
+ * Hedges are limited to [maxHedgeRatio] of all requests, so that a slow GitHub doesn't get twice the load.
+ * Only reads may be hedged, callers must never pass writes.
+ */
+class RequestHedging(
+  private val percentile: Double = 0.95,
+  private val minDelayMillis: Long = 50,
+  private val defaultDelayMillis: Long = 1000,
+  private val maxHedgeRatio: Double = 0.05,
+  private val latencies: LatencyTracker = LatencyTracker()
+) {
+
+  private val scheduler: ScheduledExecutorService = Executors.newSingleThreadScheduledExecutor { runnable ->
+    Thread(runnable, "github-request-hedging").apply { isDaemon = true }
+  }
+
+  // token bucket in thousandths of a hedge: every request earns maxHedgeRatio, every hedge costs one
+  private val budget = AtomicInteger(0)
+  private val maxBudget = 10 * 1000
+
+  private val hedges = AtomicInteger()
+
+  val hedgeCount: Int
+    get() = hedges.get()
+
+  fun <T> execute(endpoint: String, call: () -> CompletableFuture<T>): CompletableFuture<T> {
+    earn()
+    val result = CompletableFuture<T>()
+    val failure = AtomicReference<Throwable>()
+    val pending = AtomicInteger(1)
+    val startedAt = System.nanoTime()
+    val primary = call()
+    val calls = mutableListOf(primary)
+    primary.whenComplete { value, e -> onComplete(endpoint, startedAt, result, failure, pending, value, e) }
+
+    val delay = (latencies.percentile(endpoint, percentile) ?: defaultDelayMillis).coerceAtLeast(minDelayMillis)
+    val timer = scheduler.schedule({
+      if (!result.isDone && spend()) {
+        hedges.incrementAndGet()
+        pending.incrementAndGet()
+        val hedge = try {
+          call()
+        } catch (e: Exception) {
+          CompletableFuture<T>().apply { completeExceptionally(e) }
+        }
+        synchronized(calls) { calls.add(hedge) }
+        hedge.whenComplete { value, e -> onComplete(endpoint, startedAt, result, failure, pending, value, e) }
+      }
+    }, delay, TimeUnit.MILLISECONDS)
+
+    result.whenComplete { _, _ ->
+      timer.cancel(false)
+      // the loser is of no use anymore, cancelling it cancels its HTTP call
+      synchronized(calls) { calls.filter { !it.isDone }.forEach { it.cancel(true) } }
+    }
+    return result
+  }
+
+  fun shutdown() {
+    scheduler.shutdownNow()
+  }
+
+  private fun <T> onComplete(
+    endpoint: String,
+    startedAt: Long,
+    result: CompletableFuture<T>,
+    failure: AtomicReference<Throwable>,
+    pending: AtomicInteger,
+    value: T?,
+    e: Throwable?
+  ) {
+    if (e == null) {
+      if (!result.isDone) {
+        // counted from the primary's start whichever call answers: the primary is cancelled when a hedge wins,
+        // and the hedge's own latency would make the endpoint look faster than it is
+        latencies.record(endpoint, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt))
+      }
+      @Suppress("UNCHECKED_CAST")
+      result.complete(value as T)
+      return
+    }
+    failure.compareAndSet(null, e)
+    // a failed call only fails the result when no other call can still succeed
+    if (pending.decrementAndGet() == 0) {
+      result.completeExceptionally(failure.get())
+    }
+  }
+
+  private fun earn() {
+    val earned = (maxHedgeRatio * 1000).toInt()
+    budget.updateAndGet { (it + earned).coerceAtMost(maxBudget) }
+  }
+
+  private fun spend(): Boolean {
+    while (true) {
+      val current = budget.get()
+      if (current < 1000) {
+        return false
+      }
+      if (budget.compareAndSet(current, current - 1000)) {
+        return true
+      }
+    }
+  }
+}
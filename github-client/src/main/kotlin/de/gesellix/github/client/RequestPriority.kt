@@ -0,0 +1,20 @@
+package de.gesellix.github.client
+
+import de.gesellix.github.client.data.DeploymentStatusRequest
+
+/**
+ * Attached to a request as tag, so that the [RateLimitInterceptor] knows
+ * which calls may still use the reserved part of the rate limit budget.
+ */
+enum class RequestPriority {
+  URGENT,
+  NORMAL;
+
+  companion object {
+
+    fun of(deploymentStatusRequest: DeploymentStatusRequest): RequestPriority {
+      // a missing terminal status leaves a deployment dangling forever, intermediate ones are only cosmetic
+      return if (deploymentStatusRequest.state.terminal) URGENT else NORMAL
+    }
+  }
+}
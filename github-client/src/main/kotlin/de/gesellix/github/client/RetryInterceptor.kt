@@ -0,0 +1,127 @@
+package de.gesellix.github.client
+
+import okhttp3.Interceptor
+import okhttp3.Request
+import okhttp3.Response
+import retrofit2.Invocation
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.net.ConnectException
+import java.net.HttpURLConnection.HTTP_FORBIDDEN
+import java.net.NoRouteToHostException
+import java.net.UnknownHostException
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import kotlin.math.min
+
+/**
+ * Repeats requests which failed because of GitHub's secondary rate limits, server errors or network issues.
+ *
+ * Delays grow exponentially with full jitter, a `Retry-After` header takes precedence.
+ * No request is retried for longer than [maxTotalMillis].
+ *
+ * GET requests and service methods annotated with [Idempotent] are retried on any transient failure except timeouts.
+ * Other requests are only retried when GitHub has rejected them without processing,
+ * i.e. on `429`, rate limited `403` responses or when no connection could be established.
+ *
+ * Only add it to clients for synchronous calls. Waiting would block a thread of the OkHttp dispatcher for enqueued calls,
+ * so their caller enqueues them again after [retryDelayMillis] instead, see [GitHubClient.executeRequestAsync].
+ */
+class RetryInterceptor(
+  private val maxAttempts: Int = 5,
+  private val baseDelayMillis: Long = 1000,
+  private val maxDelayMillis: Long = TimeUnit.SECONDS.toMillis(60),
+  private val maxTotalMillis: Long = TimeUnit.MINUTES.toMillis(5)
+) : Interceptor {
+
+  override fun intercept(chain: Interceptor.Chain): Response {
+    val request = chain.request()
+    val startedAt = System.currentTimeMillis()
+    var attempt = 0
+    while (true) {
+      attempt++
+      val delay = try {
+        val response = chain.proceed(request)
+        val delay = retryDelayMillis(request, response, attempt, System.currentTimeMillis() - startedAt) ?: return response
+        response.close()
+        delay
+      } catch (e: IOException) {
+        retryDelayMillis(request, e, chain.call().isCanceled(), attempt, System.currentTimeMillis() - startedAt) ?: throw e
+      }
+      sleep(delay)
+    }
+  }
+
+  /**
+   * @return how long to wait before sending [request] again after its [attempt] got [response], or null when it shouldn't be retried
+   */
+  fun retryDelayMillis(request: Request, response: Response, attempt: Int, elapsedMillis: Long): Long? {
+    val retryable = isRejected(response) || (isIdempotent(request) && response.code >= 500)
+    if (!retryable || attempt >= maxAttempts) {
+      return null
+    }
+    return withinTotal(retryAfterMillis(response) ?: backoffMillis(attempt), elapsedMillis)
+  }
+
+  /**
+   * @return how long to wait before sending [request] again after its [attempt] failed, or null when it shouldn't be retried.
+   * Without a [request], it is retried only when it hasn't been sent.
+   */
+  fun retryDelayMillis(request: Request?, failure: IOException, canceled: Boolean, attempt: Int, elapsedMillis: Long): Long? {
+    // timeouts are the caller's budget, cancelled calls must stay cancelled and an open circuit should fail fast
+    val retryable = !canceled && failure !is InterruptedIOException && failure !is CircuitBreakerOpenException
+    val idempotent = request != null && isIdempotent(request)
+    if (!retryable || !(idempotent || isNotSent(failure)) || attempt >= maxAttempts) {
+      return null
+    }
+    return withinTotal(backoffMillis(attempt), elapsedMillis)
+  }
+
+  private fun withinTotal(delay: Long, elapsedMillis: Long): Long? {
+    return if (elapsedMillis + delay > maxTotalMillis) null else delay
+  }
+
+  private fun isIdempotent(request: Request): Boolean {
+    if (request.method == "GET" || request.method == "HEAD") {
+      return true
+    }
+    val invocation = request.tag(Invocation::class.java) ?: return false
+    return invocation.method().isAnnotationPresent(Idempotent::class.java)
+  }
+
+  private fun isRejected(response: Response): Boolean {
+    return response.code == 429 ||
+      (response.code == HTTP_FORBIDDEN && (response.header("Retry-After") != null || response.header("X-RateLimit-Remaining") == "0"))
+  }
+
+  private fun isNotSent(e: IOException): Boolean {
+    return e is ConnectException || e is UnknownHostException || e is NoRouteToHostException
+  }
+
+  private fun retryAfterMillis(response: Response): Long? {
+    response.header("Retry-After")?.trim()?.toLongOrNull()?.let {
+      return TimeUnit.SECONDS.toMillis(it)
+    }
+    if (response.header("X-RateLimit-Remaining") == "0") {
+      response.header("X-RateLimit-Reset")?.toLongOrNull()?.let {
+        return (TimeUnit.SECONDS.toMillis(it) - System.currentTimeMillis()).coerceAtLeast(0)
+      }
+    }
+    return null
+  }
+
+  private fun backoffMillis(attempt: Int): Long {
+    // "full jitter", so that concurrent callers don't retry in lockstep
+    val ceiling = min(maxDelayMillis, baseDelayMillis shl min(attempt - 1, 20))
+    return ThreadLocalRandom.current().nextLong(ceiling + 1)
+  }
+
+  private fun sleep(millis: Long) {
+    try {
+      Thread.sleep(millis)
+    } catch (e: InterruptedException) {
+      Thread.currentThread().interrupt()
+      throw InterruptedIOException("interrupted while waiting to retry")
+    }
+  }
+}
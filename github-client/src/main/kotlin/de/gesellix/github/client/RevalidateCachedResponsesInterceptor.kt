@@ -0,0 +1,25 @@
+package de.gesellix.github.client
+
+import okhttp3.Interceptor
+import okhttp3.Response
+
+/**
+ * Network interceptor for clients with an OkHttp disk cache.
+ *
+ * GitHub marks its responses as fresh for 60 seconds, which would hide newly created deployments.
+ * Rewriting `Cache-Control` to `no-cache` keeps the responses in the cache,
+ * but lets OkHttp revalidate them with a conditional request every time.
+ */
+class RevalidateCachedResponsesInterceptor : Interceptor {
+
+  override fun intercept(chain: Interceptor.Chain): Response {
+    val response = chain.proceed(chain.request())
+    if (chain.request().method != "GET") {
+      return response
+    }
+    return response.newBuilder()
+      .header("Cache-Control", "no-cache")
+      .removeHeader("Expires")
+      .build()
+  }
+}
@@ -0,0 +1,75 @@
+package de.gesellix.github.client
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+
+/**
+ * Coalesces concurrent calls with the same key, so that only the first caller performs the call
+ * and everyone else waiting at the same time shares its result or failure.
+ *
+ * Nothing is cached: once a call has completed, the next caller with the same key performs a new call.
+ * Shared results must be treated as read-only.
+ */
+class SingleFlight {
+
+  private val inFlight = ConcurrentHashMap<Any, CompletableFuture<*>>()
+
+  fun <T> call(key: Any, block: () -> T): T {
+    val leader = CompletableFuture<T>()
+    val existing = inFlight.putIfAbsent(key, leader)
+    if (existing != null) {
+      @Suppress("UNCHECKED_CAST")
+      return await(existing as CompletableFuture<T>)
+    }
+    try {
+      val result = block()
+      // removed before completing, so that late callers don't pick up a result which is already stale
+      inFlight.remove(key, leader)
+      leader.complete(result)
+      return result
+    } catch (e: Throwable) {
+      inFlight.remove(key, leader)
+      leader.completeExceptionally(e)
+      throw e
+    }
+  }
+
+  /**
+   * Non-blocking variant of [call]. Cancelling the returned future doesn't cancel the shared call.
+   */
+  fun <T> callAsync(key: Any, block: () -> CompletableFuture<T>): CompletableFuture<T> {
+    val leader = CompletableFuture<T>()
+    val existing = inFlight.putIfAbsent(key, leader)
+    if (existing != null) {
+      @Suppress("UNCHECKED_CAST")
+      return (existing as CompletableFuture<T>).thenApply { it }
+    }
+    try {
+      block().whenComplete { result, e ->
+        inFlight.remove(key, leader)
+        if (e != null) {
+          leader.completeExceptionally(e)
+        } else {
+          leader.complete(result)
+        }
+      }
+    } catch (e: Throwable) {
+      inFlight.remove(key, leader)
+      leader.completeExceptionally(e)
+    }
+    return leader.thenApply { it }
+  }
+
+  fun size(): Int {
+    return inFlight.size
+  }
+
+  private fun <T> await(future: CompletableFuture<T>): T {
+    try {
+      return future.get()
+    } catch (e: ExecutionException) {
+      throw e.cause ?: e
+    }
+  }
+}
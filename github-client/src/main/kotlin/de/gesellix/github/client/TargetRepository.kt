@@ -0,0 +1,7 @@
+package de.gesellix.github.client
+
+/**
+ * Attached to a request as tag when its path doesn't name the repository it targets,
+ * like GraphQL queries or pagination links, so that [GitHubCredentials] can pick the right credential.
+ */
+data class TargetRepository(val owner: String, val repo: String)
@@ -0,0 +1,79 @@
+package de.gesellix.github.client
+
+import okhttp3.HttpUrl
+import okhttp3.HttpUrl.Companion.toHttpUrl
+import okhttp3.Request
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Spreads requests over several personal access tokens: every request uses the token
+ * with the most remaining rate limit budget as seen by the shared [RateLimitTracker].
+ *
+ * Tokens without a known budget, or whose window has already been reset, count as full.
+ * Ties are broken round robin, so that fresh tokens are used evenly.
+ * Once every token is exhausted, the one which resets first is used
+ * and the [RateLimitInterceptor] holds the request back until then.
+ */
+class TokenPool(
+  baseUrl: String,
+  tokens: List<String>,
+  private val tracker: RateLimitTracker,
+  private val clock: () -> Long = System::currentTimeMillis
+) : GitHubCredentials {
+
+  private val apiUrl = baseUrl.toHttpUrl()
+
+  // the identity equals the header, so that the budget is shared with single token clients
+  private val credentials = tokens.map { Credential("token $it", "token $it") }
+
+  private val next = AtomicInteger()
+
+  init {
+    require(credentials.isNotEmpty()) { "at least one token is required" }
+  }
+
+  val size: Int
+    get() = credentials.size
+
+  override fun authorization(request: Request): Credential? {
+    return select(request.url, next.getAndIncrement())
+  }
+
+  /**
+   * All repositories share the pool, so this is the identity the next request would use.
+   * Looking it up doesn't take the turn of the next request.
+   */
+  override fun identity(owner: String, repo: String): String? {
+    return select(apiUrl, next.get()).identity
+  }
+
+  private fun select(url: HttpUrl, turn: Int): Credential {
+    val now = clock()
+    val start = Math.floorMod(turn, credentials.size)
+    var best = credentials[start]
+    var bestScore = score(url, best, now)
+    for (i in 1 until credentials.size) {
+      val candidate = credentials[(start + i) % credentials.size]
+      val score = score(url, candidate, now)
+      if (score > bestScore) {
+        best = candidate
+        bestScore = score
+      }
+    }
+    return best
+  }
+
+  /**
+   * Higher is better: the remaining budget, exhausted tokens rank by how soon they reset.
+   */
+  private fun score(url: HttpUrl, credential: Credential, now: Long): Long {
+    val rateLimit = tracker.get(url, credential.identity) ?: return Long.MAX_VALUE
+    if (now >= rateLimit.resetAtMillis) {
+      return Long.MAX_VALUE
+    }
+    if (rateLimit.remaining > 0) {
+      return rateLimit.remaining.toLong()
+    }
+    return now - rateLimit.resetAtMillis
+  }
+}
@@ -0,0 +1,12 @@
+package de.gesellix.github.client.data
+
+import com.squareup.moshi.JsonClass
+
+/**
+ * Projection of a [Commit] or a pull request's head, everything but the shas is skipped while decoding.
+ */
+@JsonClass(generateAdapter = true)
+data class CommitRef(
+  val sha: String,
+  val parents: List<CommitRef>? = null,
+)
@@ -0,0 +1,24 @@
+package de.gesellix.github.client.data
+
+import com.squareup.moshi.JsonClass
+import de.gesellix.github.client.GitHubJson
+
+/**
+ * The payload attached to the deployments we create, used to find a build's deployment again.
+ */
+@JsonClass(generateAdapter = true)
+data class DeploymentPayload(
+  val buildIdAsString: String,
+) {
+
+  fun toJson(): String {
+    return GitHubJson.deploymentPayloadAdapter.toJson(this)
+  }
+
+  companion object {
+
+    fun fromJson(json: String): DeploymentPayload? {
+      return GitHubJson.deploymentPayloadAdapter.fromJson(json)
+    }
+  }
+}
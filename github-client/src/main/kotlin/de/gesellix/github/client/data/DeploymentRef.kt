@@ -0,0 +1,21 @@
+package de.gesellix.github.client.data
+
+import com.squareup.moshi.JsonClass
+import de.gesellix.github.client.DeploymentScanner
+
+/**
+ * The few deployment properties needed to match a deployment with a build.
+ * Used as projection of [Deployment], so that creators, URLs and timestamps are skipped while decoding.
+ */
+@JsonClass(generateAdapter = true)
+data class DeploymentRef(
+  val id: Long,
+  var environment: String? = null,
+  var payload: Any? = null, //json
+  var sha: String? = null,
+) {
+
+  fun hasPayload(payloadKey: String, payloadValue: String): Boolean {
+    return DeploymentScanner(payloadKey, payloadValue).payloadMatches(payload)
+  }
+}
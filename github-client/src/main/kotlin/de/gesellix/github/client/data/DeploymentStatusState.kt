@@ -1,11 +1,11 @@
 package de.gesellix.github.client.data
 
-enum class DeploymentStatusState {
-  error,
-  failure,
-  inactive,
-  in_progress,
-  queued,
-  pending,
-  success
+enum class DeploymentStatusState(val terminal: Boolean) {
+  error(true),
+  failure(true),
+  inactive(true),
+  in_progress(false),
+  queued(false),
+  pending(false),
+  success(true)
 }
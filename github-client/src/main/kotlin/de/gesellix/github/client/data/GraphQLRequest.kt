@@ -0,0 +1,9 @@
+package de.gesellix.github.client.data
+
+import com.squareup.moshi.JsonClass
+
+@JsonClass(generateAdapter = true)
+data class GraphQLRequest(
+  val query: String,
+  val variables: Map<String, Any> = emptyMap(),
+)
@@ -0,0 +1,8 @@
+package de.gesellix.github.client.data
+
+import com.squareup.moshi.JsonClass
+
+@JsonClass(generateAdapter = true)
+data class Installation(
+  val id: Long,
+)
@@ -0,0 +1,9 @@
+package de.gesellix.github.client.data
+
+import com.squareup.moshi.JsonClass
+
+@JsonClass(generateAdapter = true)
+data class InstallationToken(
+  val token: String,
+  val expires_at: String, //timestamp
+)
@@ -0,0 +1,12 @@
+package de.gesellix.github.client.data
+
+import com.squareup.moshi.JsonClass
+
+/**
+ * Projection of a [PullRequest] which skips the repository, user and link subtrees while decoding.
+ */
+@JsonClass(generateAdapter = true)
+data class PullRequestHead(
+  val number: Int,
+  val head: CommitRef,
+)
@@ -0,0 +1,70 @@
+package de.gesellix.github.client
+
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.net.HttpURLConnection
+
+internal class CircuitBreakerTest {
+
+  private var now = 0L
+  private val circuitBreaker = CircuitBreaker(failureThreshold = 2, openMillis = 1000, clock = { now })
+
+  @Test
+  fun test_opens_after_consecutive_failures() {
+    circuitBreaker.onFailure()
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState())
+    circuitBreaker.onFailure()
+
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState())
+    assertEquals(1000L, circuitBreaker.tryAcquire())
+  }
+
+  @Test
+  fun test_success_resets_failure_count() {
+    circuitBreaker.onFailure()
+    circuitBreaker.onSuccess()
+    circuitBreaker.onFailure()
+
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState())
+  }
+
+  @Test
+  fun test_half_open_trial_closes_or_reopens() {
+    circuitBreaker.onFailure()
+    circuitBreaker.onFailure()
+    now = 1000
+
+    assertEquals(0L, circuitBreaker.tryAcquire())
+    assertTrue(circuitBreaker.tryAcquire() > 0, "only one trial call at a time")
+    circuitBreaker.onFailure()
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState())
+
+    now = 2000
+    assertEquals(0L, circuitBreaker.tryAcquire())
+    circuitBreaker.onSuccess()
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState())
+  }
+
+  @Test
+  fun test_client_fails_fast_while_open() {
+    val mockWebServer = MockWebServer()
+    mockWebServer.start()
+    try {
+      val client = GitHubClient(mockWebServer.url("/").toString(), token = "token", retryInterceptor = null, circuitBreaker = circuitBreaker)
+      mockWebServer.enqueue(MockResponse().setResponseCode(HttpURLConnection.HTTP_UNAVAILABLE))
+      mockWebServer.enqueue(MockResponse().setResponseCode(HttpURLConnection.HTTP_UNAVAILABLE))
+
+      assertThrows<HttpStatusException> { client.getRepository("gesellix", "deployment-tests") }
+      assertThrows<HttpStatusException> { client.getCommit("gesellix", "deployment-tests", "abc") }
+      assertThrows<CircuitBreakerOpenException> { client.getPullRequest("gesellix", "deployment-tests", 1) }
+
+      assertEquals(2, mockWebServer.requestCount)
+    } finally {
+      mockWebServer.shutdown()
+    }
+  }
+}
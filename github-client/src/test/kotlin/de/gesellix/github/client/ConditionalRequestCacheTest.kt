@@ -0,0 +1,70 @@
+package de.gesellix.github.client
+
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import java.net.HttpURLConnection
+
+internal class ConditionalRequestCacheTest {
+
+  private lateinit var mockWebServer: MockWebServer
+  private lateinit var cache: ConditionalRequestCache
+  private lateinit var client: GitHubClient
+
+  @BeforeEach
+  fun setup() {
+    mockWebServer = MockWebServer()
+    mockWebServer.start()
+    cache = ConditionalRequestCache()
+    client = GitHubClient(mockWebServer.url("/").toString(), token = "token", responseCache = cache)
+  }
+
+  @AfterEach
+  fun teardown() {
+    mockWebServer.shutdown()
+  }
+
+  @Test
+  fun test_revalidates_with_etag_and_serves_cached_body() {
+    mockWebServer.enqueue(
+      MockResponse()
+        .setResponseCode(HttpURLConnection.HTTP_OK)
+        .setHeader("ETag", "\"abc\"")
+        .setBody(javaClass.getResource("/get_repository_response.json").readText())
+    )
+    mockWebServer.enqueue(MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED))
+
+    val first = client.getRepository("gesellix", "deployment-tests")
+    val second = client.getRepository("gesellix", "deployment-tests")
+
+    assertNull(mockWebServer.takeRequest().getHeader("If-None-Match"))
+    assertEquals("\"abc\"", mockWebServer.takeRequest().getHeader("If-None-Match"))
+    assertEquals(first, second)
+    assertEquals(1L, cache.hitCount)
+  }
+
+  @Test
+  fun test_does_not_cache_responses_without_validators() {
+    mockWebServer.enqueue(
+      MockResponse()
+        .setResponseCode(HttpURLConnection.HTTP_OK)
+        .setBody(javaClass.getResource("/get_repository_response.json").readText())
+    )
+    mockWebServer.enqueue(
+      MockResponse()
+        .setResponseCode(HttpURLConnection.HTTP_OK)
+        .setBody(javaClass.getResource("/get_repository_response.json").readText())
+    )
+
+    client.getRepository("gesellix", "deployment-tests")
+    client.getRepository("gesellix", "deployment-tests")
+
+    assertNull(mockWebServer.takeRequest().getHeader("If-None-Match"))
+    assertNull(mockWebServer.takeRequest().getHeader("If-None-Match"))
+    assertEquals(0, cache.size())
+  }
+}
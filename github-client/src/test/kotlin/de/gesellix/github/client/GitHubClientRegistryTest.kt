@@ -0,0 +1,61 @@
+package de.gesellix.github.client
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.util.concurrent.TimeUnit
+
+internal class GitHubClientRegistryTest {
+
+  private val timeout = Timeout(10, TimeUnit.SECONDS)
+
+  @Test
+  fun test_reuses_client_for_same_key() {
+    val registry = GitHubClientRegistry()
+
+    val first = registry.getClient("https://api.github.com/", "token", "agent", timeout)
+    val second = registry.getClient("https://api.github.com/", "token", "agent", Timeout(10000, TimeUnit.MILLISECONDS))
+
+    assertSame(first, second)
+    assertEquals(1, registry.size())
+    registry.shutdown()
+  }
+
+  @Test
+  fun test_creates_new_client_for_other_token_or_timeout() {
+    val registry = GitHubClientRegistry()
+
+    val first = registry.getClient("https://api.github.com/", "token", "agent", timeout)
+    val otherToken = registry.getClient("https://api.github.com/", "other-token", "agent", timeout)
+    val otherTimeout = registry.getClient("https://api.github.com/", "token", "agent", Timeout(5, TimeUnit.SECONDS))
+
+    assertNotSame(first, otherToken)
+    assertNotSame(first, otherTimeout)
+    assertEquals(3, registry.size())
+    registry.shutdown()
+  }
+
+  @Test
+  fun test_evicts_idle_clients() {
+    val registry = GitHubClientRegistry(maxIdleMillis = 0)
+
+    registry.getClient("https://api.github.com/", "token", "agent", timeout)
+    Thread.sleep(5)
+    registry.evictIdleClients()
+
+    assertEquals(0, registry.size())
+    registry.shutdown()
+  }
+
+  @Test
+  fun test_rejects_lookups_after_shutdown() {
+    val registry = GitHubClientRegistry()
+    registry.shutdown()
+
+    assertThrows<IllegalStateException> {
+      registry.getClient("https://api.github.com/", "token", "agent", timeout)
+    }
+  }
+}
@@ -6,6 +6,8 @@ import de.gesellix.github.client.data.CommitStatusRequest
 import de.gesellix.github.client.data.DeploymentRequest
 import de.gesellix.github.client.data.DeploymentStatusRequest
 import de.gesellix.github.client.data.DeploymentStatusState.in_progress
+import kotlinx.coroutines.async
+import kotlinx.coroutines.runBlocking
 import okhttp3.logging.HttpLoggingInterceptor
 import okhttp3.mockwebserver.MockResponse
 import okhttp3.mockwebserver.MockWebServer
@@ -14,7 +16,10 @@ import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.BeforeAll
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
 import java.net.HttpURLConnection
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
 
 internal class GitHubClientTest {
 
@@ -146,6 +151,25 @@ internal class GitHubClientTest {
     assertEquals(5, deployments?.size)
   }
 
+  @Test
+  fun test_get_projections() {
+    mockWebServer.enqueue(MockResponse().setResponseCode(HttpURLConnection.HTTP_OK).setBody(javaClass.getResource("/get_pull_request_response.json").readText()))
+    mockWebServer.enqueue(MockResponse().setResponseCode(HttpURLConnection.HTTP_OK).setBody(javaClass.getResource("/get_commit_response.json").readText()))
+    mockWebServer.enqueue(MockResponse().setResponseCode(HttpURLConnection.HTTP_OK).setBody(javaClass.getResource("/get_deployments_response.json").readText()))
+
+    val pullRequest = client.getPullRequestHead("gesellix", "deployment-tests", 1)
+    val commit = client.getCommitRef("gesellix", "deployment-tests", "aa3331f82f4990c24ba02f6be8a142405801013f")
+    val deployments = client.getDeploymentRefs("gesellix", "deployment-tests", mapOf("environment" to "production"))
+
+    assertEquals(1, pullRequest?.number)
+    assertEquals("aa3331f82f4990c24ba02f6be8a142405801013f", pullRequest?.head?.sha)
+    assertEquals(listOf("9bd5374e375e3416ff981122703a0e4079055fea"), commit?.parents?.map { it.sha })
+    assertEquals(5, deployments?.size)
+    assertEquals(289057346, deployments?.first()?.id)
+    assertEquals("9bd5374e375e3416ff981122703a0e4079055fea", deployments?.first()?.sha)
+    assertEquals("production", deployments?.first()?.environment)
+  }
+
   @Test
   fun test_create_deployment() {
     val response = MockResponse()
@@ -179,4 +203,55 @@ internal class GitHubClientTest {
     assertEquals(425956912, deploymentStatus?.id)
     assertEquals("2020-11-08T16:15:48Z", deploymentStatus?.created_at)
   }
+
+  @Test
+  fun test_get_deployments_async() {
+    val response = MockResponse()
+      .setResponseCode(HttpURLConnection.HTTP_OK)
+      .setBody(javaClass.getResource("/get_deployments_response.json").readText())
+    mockWebServer.enqueue(response)
+
+    val deployments = client.getDeploymentsAsync(
+      "gesellix",
+      "deployment-tests",
+      mapOf("sha" to "9bd5374e375e3416ff981122703a0e4079055fea")
+    ).get(5, TimeUnit.SECONDS)
+
+    assertEquals(5, deployments?.size)
+  }
+
+  @Test
+  fun test_async_request_completes_exceptionally_on_error_status() {
+    val response = MockResponse()
+      .setResponseCode(HttpURLConnection.HTTP_NOT_FOUND)
+    mockWebServer.enqueue(response)
+
+    val future = client.getPullRequestAsync("gesellix", "deployment-tests", 42)
+
+    val exception = assertThrows<ExecutionException> { future.get(5, TimeUnit.SECONDS) }
+    assertTrue(exception.cause is HttpStatusException)
+    assertEquals(HttpURLConnection.HTTP_NOT_FOUND, (exception.cause as HttpStatusException).code)
+  }
+
+  @Test
+  fun test_coroutines_fan_out() {
+    mockWebServer.enqueue(
+      MockResponse()
+        .setResponseCode(HttpURLConnection.HTTP_OK)
+        .setBody(javaClass.getResource("/get_repository_response.json").readText())
+    )
+    mockWebServer.enqueue(
+      MockResponse()
+        .setResponseCode(HttpURLConnection.HTTP_OK)
+        .setBody(javaClass.getResource("/get_repository_response.json").readText())
+    )
+
+    val names = runBlocking {
+      val first = async { client.coroutines.getRepository("gesellix", "deployment-tests") }
+      val second = async { client.coroutines.getRepository("gesellix", "deployment-tests") }
+      listOf(first.await()?.name, second.await()?.name)
+    }
+
+    assertEquals(listOf("deployment-tests", "deployment-tests"), names)
+  }
 }
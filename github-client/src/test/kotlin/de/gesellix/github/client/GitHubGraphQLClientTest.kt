@@ -0,0 +1,82 @@
+package de.gesellix.github.client
+
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.net.HttpURLConnection
+
+internal class GitHubGraphQLClientTest {
+
+  private lateinit var mockWebServer: MockWebServer
+  private lateinit var client: GitHubClient
+
+  @BeforeEach
+  fun setup() {
+    mockWebServer = MockWebServer()
+    mockWebServer.start()
+    client = GitHubClient(mockWebServer.url("/").toString(), token = "token")
+  }
+
+  @AfterEach
+  fun teardown() {
+    mockWebServer.shutdown()
+  }
+
+  @Test
+  fun test_graphql_url() {
+    assertEquals("https://api.github.com/graphql", GitHubGraphQLClient.graphQLUrl("https://api.github.com/"))
+    assertEquals("https://github.example.com/api/graphql", GitHubGraphQLClient.graphQLUrl("https://github.example.com/api/v3/"))
+  }
+
+  @Test
+  fun test_batched_lookup() {
+    mockWebServer.enqueue(
+      MockResponse()
+        .setResponseCode(HttpURLConnection.HTTP_OK)
+        .setBody(
+          """
+          {"data": {"repository": {
+            "c0": {"deployments": {"nodes": [{"databaseId": 1, "environment": "test", "payload": "{\"buildIdAsString\":\"42\"}"}]}},
+            "c1": null,
+            "p0": {"headRefOid": "9bd5374e375e3416ff981122703a0e4079055fea"}
+          }},
+          "errors": [{"message": "Could not resolve to a GitObject"}]}
+          """.trimIndent()
+        )
+    )
+
+    val result = client.graphQL.lookup("gesellix", "deployment-tests", listOf("abc", "def"), listOf(7))
+
+    val request = mockWebServer.takeRequest()
+    assertEquals("/graphql", request.path)
+    val body = request.body.readUtf8()
+    assertTrue(body.contains("c1: object(oid: \$c1)"))
+    // the latest deployments are the ones a build looks for
+    assertTrue(body.contains("deployments(first: 100, orderBy: {field: CREATED_AT, direction: DESC})"))
+    assertTrue(body.contains("p0: pullRequest(number: \$p0)"))
+    assertEquals(1, mockWebServer.requestCount)
+
+    assertEquals(setOf("abc"), result.deployments.keys)
+    assertTrue(result.deployments.getValue("abc").single().hasPayload("buildIdAsString", "42"))
+    assertEquals(mapOf(7 to "9bd5374e375e3416ff981122703a0e4079055fea"), result.pullRequestHeads)
+  }
+
+  @Test
+  fun test_fails_on_errors_without_data() {
+    mockWebServer.enqueue(
+      MockResponse()
+        .setResponseCode(HttpURLConnection.HTTP_OK)
+        .setBody("""{"data": null, "errors": [{"message": "Bad credentials"}]}""")
+    )
+
+    val exception = assertThrows<GraphQLException> {
+      client.graphQL.getCommitDeployments("gesellix", "deployment-tests", listOf("abc"))
+    }
+    assertEquals("Bad credentials", exception.message)
+  }
+}
@@ -0,0 +1,23 @@
+package de.gesellix.github.client
+
+import de.gesellix.github.client.data.DeploymentPayload
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+internal class GitHubJsonTest {
+
+  @Test
+  fun test_deployment_payload_keeps_wire_format() {
+    val json = DeploymentPayload("42").toJson()
+
+    assertEquals("""{"buildIdAsString":"42"}""", json)
+    assertEquals(DeploymentPayload("42"), DeploymentPayload.fromJson(json))
+  }
+
+  @Test
+  fun test_uses_generated_adapters() {
+    assertTrue(GitHubJson.deploymentAdapter.toString().startsWith("GeneratedJsonAdapter(Deployment)"))
+    assertTrue(GitHubJson.deploymentPayloadAdapter.toString().startsWith("GeneratedJsonAdapter(DeploymentPayload)"))
+  }
+}
@@ -0,0 +1,55 @@
+package de.gesellix.github.client
+
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import java.net.HttpURLConnection
+
+internal class MetricsEventListenerTest {
+
+  private lateinit var mockWebServer: MockWebServer
+  private lateinit var metrics: GitHubClientMetrics
+  private lateinit var client: GitHubClient
+
+  @BeforeEach
+  fun setup() {
+    mockWebServer = MockWebServer()
+    mockWebServer.start()
+    metrics = GitHubClientMetrics()
+    client = GitHubClient(mockWebServer.url("/").toString(), token = "token", metrics = metrics)
+  }
+
+  @AfterEach
+  fun teardown() {
+    mockWebServer.shutdown()
+  }
+
+  @Test
+  fun test_records_metrics_per_endpoint_template() {
+    repeat(2) {
+      mockWebServer.enqueue(
+        MockResponse()
+          .setResponseCode(HttpURLConnection.HTTP_OK)
+          .setBody(javaClass.getResource("/get_commit_response.json").readText())
+      )
+    }
+
+    client.getCommit("gesellix", "deployment-tests", "abc")
+    client.getCommit("gesellix", "deployment-tests", "def")
+
+    val snapshot = metrics.snapshot()
+    assertEquals(setOf("GET repos/{owner}/{repo}/git/commits/{commit_sha}"), snapshot.keys)
+    val commits = snapshot.getValue("GET repos/{owner}/{repo}/git/commits/{commit_sha}")
+    assertEquals(2L, commits.calls)
+    assertEquals(0L, commits.failures)
+    assertEquals(1L, commits.newConnections)
+    assertEquals(1L, commits.reusedConnections)
+    assertTrue(commits.bytesReceived > 0)
+    assertEquals(2L, commits.phases.getValue(GitHubClientMetrics.Phase.TOTAL).count)
+    assertEquals(2L, commits.phases.getValue(GitHubClientMetrics.Phase.TIME_TO_FIRST_BYTE).count)
+  }
+}
@@ -0,0 +1,96 @@
+package de.gesellix.github.client
+
+import kotlinx.coroutines.runBlocking
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import java.net.HttpURLConnection
+
+internal class PaginationTest {
+
+  private lateinit var mockWebServer: MockWebServer
+  private lateinit var client: GitHubClient
+
+  @BeforeEach
+  fun setup() {
+    mockWebServer = MockWebServer()
+    mockWebServer.start()
+    client = GitHubClient(mockWebServer.url("/").toString(), token = "token")
+  }
+
+  @AfterEach
+  fun teardown() {
+    mockWebServer.shutdown()
+  }
+
+  @Test
+  fun test_parses_next_link() {
+    val link = "<https://api.github.com/repositories/1/deployments?page=2>; rel=\"next\", <https://api.github.com/repositories/1/deployments?page=5>; rel=\"last\""
+
+    assertEquals("https://api.github.com/repositories/1/deployments?page=2", nextPageUrl(link))
+    assertNull(nextPageUrl("<https://api.github.com/repositories/1/deployments?page=1>; rel=\"prev\""))
+    assertNull(nextPageUrl(null))
+  }
+
+  @Test
+  fun test_finds_deployment_on_later_page() {
+    mockWebServer.enqueue(deploymentsPage("""[{"id": 1, "payload": "{\"buildIdAsString\":\"41\"}"}]""", next = "/deployments?page=2"))
+    mockWebServer.enqueue(deploymentsPage("""[{"payload": {"buildIdAsString": "42"}, "id": 2}]"""))
+
+    val id = client.findDeploymentIdByPayload("gesellix", "deployment-tests", mapOf("sha" to "abc"), "buildIdAsString", "42")
+
+    assertEquals(2L, id)
+    assertEquals(2, mockWebServer.requestCount)
+    mockWebServer.takeRequest()
+    assertEquals("/deployments?page=2", mockWebServer.takeRequest().path)
+  }
+
+  @Test
+  fun test_finds_deployment_on_later_page_while_suspended() {
+    mockWebServer.enqueue(deploymentsPage("""[{"id": 1, "payload": "{\"buildIdAsString\":\"41\"}"}]""", next = "/deployments?page=2"))
+    mockWebServer.enqueue(deploymentsPage("""[{"payload": {"buildIdAsString": "42"}, "id": 2}]"""))
+
+    val id = runBlocking {
+      client.coroutines.findDeploymentIdByPayload("gesellix", "deployment-tests", mapOf("sha" to "abc"), "buildIdAsString", "42")
+    }
+
+    assertEquals(2L, id)
+    assertEquals("/repos/gesellix/deployment-tests/deployments?per_page=100&sha=abc", mockWebServer.takeRequest().path)
+    assertEquals("/deployments?page=2", mockWebServer.takeRequest().path)
+  }
+
+  @Test
+  fun test_stops_at_first_match() {
+    mockWebServer.enqueue(deploymentsPage("""[{"id": 1, "payload": "free text"}, {"id": 2, "payload": "{\"buildIdAsString\":\"42\"}"}]""", next = "/deployments?page=2"))
+
+    val id = client.findDeploymentIdByPayload("gesellix", "deployment-tests", mapOf("sha" to "abc"), "buildIdAsString", "42")
+
+    assertEquals(2L, id)
+    assertEquals(1, mockWebServer.requestCount)
+  }
+
+  @Test
+  fun test_iterates_deployments_lazily() {
+    mockWebServer.enqueue(deploymentsPage(javaClass.getResource("/get_deployments_response.json").readText(), next = "/deployments?page=2"))
+
+    val first = client.useDeployments("gesellix", "deployment-tests", emptyMap()) { it.first() }
+
+    assertEquals(289057346, first.id)
+    assertEquals(1, mockWebServer.requestCount)
+  }
+
+  private fun deploymentsPage(body: String, next: String? = null): MockResponse {
+    return MockResponse()
+      .setResponseCode(HttpURLConnection.HTTP_OK)
+      .apply {
+        if (next != null) {
+          setHeader("Link", "<${mockWebServer.url(next)}>; rel=\"next\"")
+        }
+      }
+      .setBody(body)
+  }
+}
@@ -0,0 +1,116 @@
+package de.gesellix.github.client
+
+import de.gesellix.github.client.data.DeploymentStatusRequest
+import de.gesellix.github.client.data.DeploymentStatusState
+import okhttp3.Dispatcher
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import java.net.HttpURLConnection
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+internal class RateLimitInterceptorTest {
+
+  private lateinit var mockWebServer: MockWebServer
+  private lateinit var client: GitHubClient
+
+  @BeforeEach
+  fun setup() {
+    mockWebServer = MockWebServer()
+    mockWebServer.start()
+    client = GitHubClient(mockWebServer.url("/").toString(), token = "token")
+  }
+
+  @AfterEach
+  fun teardown() {
+    mockWebServer.shutdown()
+  }
+
+  @Test
+  fun test_tracks_remaining_budget() {
+    val reset = System.currentTimeMillis() / 1000 + 3600
+    mockWebServer.enqueue(repositoryResponse(remaining = 4999, reset = reset))
+
+    assertNull(client.rateLimit)
+    client.getRepository("gesellix", "deployment-tests")
+
+    assertEquals(RateLimit(5000, 4999, reset), client.rateLimit)
+  }
+
+  @Test
+  fun test_parks_normal_requests_until_reset() {
+    val reset = System.currentTimeMillis() / 1000 + 2
+    mockWebServer.enqueue(repositoryResponse(remaining = 0, reset = reset))
+    mockWebServer.enqueue(repositoryResponse(remaining = 4999, reset = reset + 3600))
+
+    client.getRepository("gesellix", "deployment-tests")
+    client.getRepository("gesellix", "deployment-tests")
+
+    assertTrue(System.currentTimeMillis() >= reset * 1000, "request should have been parked until ${reset * 1000}")
+  }
+
+  @Test
+  fun test_urgent_requests_use_the_reserve() {
+    val reset = System.currentTimeMillis() / 1000 + 3600
+    mockWebServer.enqueue(repositoryResponse(remaining = 10, reset = reset))
+    mockWebServer.enqueue(
+      MockResponse()
+        .setResponseCode(HttpURLConnection.HTTP_CREATED)
+        .setBody(javaClass.getResource("/update_deployment_status_response.json").readText())
+    )
+
+    client.getRepository("gesellix", "deployment-tests")
+    val startedAt = System.currentTimeMillis()
+    client.updateDeploymentStatus("gesellix", "deployment-tests", 42, DeploymentStatusRequest(DeploymentStatusState.success))
+
+    assertTrue(System.currentTimeMillis() - startedAt < 1000, "terminal status should not have been parked")
+    assertEquals(2, mockWebServer.requestCount)
+  }
+
+  @Test
+  fun test_sends_enqueued_requests_again_after_reset_without_blocking_the_dispatcher() {
+    // a single dispatcher thread, which would be blocked by parking the exhausted call
+    val executor = Executors.newSingleThreadExecutor()
+    try {
+      val httpClient = OkHttpClient.Builder().dispatcher(Dispatcher(executor)).build()
+      // neither the attempts nor the total time of retries limit how long a call waits for the rate limit
+      val exhausted = GitHubClient(mockWebServer.url("/").toString(), token = "exhausted", httpClient = httpClient, retryInterceptor = RetryInterceptor(maxAttempts = 1, maxTotalMillis = 100))
+      val other = GitHubClient(mockWebServer.url("/").toString(), token = "other", httpClient = httpClient)
+      val reset = System.currentTimeMillis() / 1000 + 2
+      mockWebServer.enqueue(repositoryResponse(remaining = 0, reset = reset))
+      mockWebServer.enqueue(repositoryResponse(remaining = 4999, reset = reset + 3600))
+      mockWebServer.enqueue(repositoryResponse(remaining = 4999, reset = reset + 3600))
+
+      exhausted.getRepository("gesellix", "deployment-tests")
+      val rateLimited = exhausted.getRepositoryAsync("gesellix", "deployment-tests")
+      val startedAt = System.currentTimeMillis()
+      other.getRepositoryAsync("gesellix", "deployment-tests").get(10, TimeUnit.SECONDS)
+
+      assertTrue(System.currentTimeMillis() - startedAt < 1000, "other calls should not have waited for the rate limited one")
+      assertFalse(rateLimited.isDone)
+      assertNotNull(rateLimited.get(10, TimeUnit.SECONDS))
+      assertTrue(System.currentTimeMillis() >= reset * 1000, "request should have been sent after ${reset * 1000}")
+      assertEquals(3, mockWebServer.requestCount)
+    } finally {
+      executor.shutdown()
+    }
+  }
+
+  private fun repositoryResponse(remaining: Int, reset: Long): MockResponse {
+    return MockResponse()
+      .setResponseCode(HttpURLConnection.HTTP_OK)
+      .setHeader("X-RateLimit-Limit", "5000")
+      .setHeader("X-RateLimit-Remaining", remaining.toString())
+      .setHeader("X-RateLimit-Reset", reset.toString())
+      .setBody(javaClass.getResource("/get_repository_response.json").readText())
+  }
+}
@@ -0,0 +1,68 @@
+package de.gesellix.github.client
+
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+internal class RequestHedgingTest {
+
+  private var hedging: RequestHedging? = null
+
+  @AfterEach
+  fun teardown() {
+    hedging?.shutdown()
+  }
+
+  @Test
+  fun test_hedge_answers_when_primary_is_slow() {
+    val hedging = RequestHedging(minDelayMillis = 10, defaultDelayMillis = 10, maxHedgeRatio = 1.0).also { this.hedging = it }
+    val primary = CompletableFuture<String>()
+    val calls = mutableListOf(primary, CompletableFuture.completedFuture("hedge"))
+
+    val result = hedging.execute("getDeployments") { synchronized(calls) { calls.removeAt(0) } }
+
+    assertEquals("hedge", result.get(5, TimeUnit.SECONDS))
+    assertEquals(1, hedging.hedgeCount)
+    assertTrue(primary.isCancelled, "the slower call should be cancelled")
+  }
+
+  @Test
+  fun test_records_latency_from_the_primary_start_when_hedge_wins() {
+    val latencies = LatencyTracker()
+    val hedging = RequestHedging(minDelayMillis = 50, defaultDelayMillis = 50, maxHedgeRatio = 1.0, latencies = latencies).also { this.hedging = it }
+    val calls = mutableListOf(CompletableFuture<String>(), CompletableFuture.completedFuture("hedge"))
+
+    val result = hedging.execute("getDeployments") { synchronized(calls) { calls.removeAt(0) } }
+
+    assertEquals("hedge", result.get(5, TimeUnit.SECONDS))
+    val recorded = latencies.percentile("getDeployments", 1.0, minSamples = 1)
+    assertTrue(recorded != null && recorded >= 50, "expected the latency since the primary's start, got $recorded")
+  }
+
+  @Test
+  fun test_respects_hedge_budget() {
+    val hedging = RequestHedging(minDelayMillis = 10, defaultDelayMillis = 10, maxHedgeRatio = 0.0).also { this.hedging = it }
+    val primary = CompletableFuture<String>()
+
+    val result = hedging.execute("getDeployments") { primary }
+    Thread.sleep(100)
+    primary.complete("primary")
+
+    assertEquals("primary", result.get(5, TimeUnit.SECONDS))
+    assertEquals(0, hedging.hedgeCount)
+  }
+
+  @Test
+  fun test_latency_percentile() {
+    val latencies = LatencyTracker(windowSize = 100)
+    assertNull(latencies.percentile("getCommit", 0.95))
+
+    (1L..100L).forEach { latencies.record("getCommit", it) }
+
+    assertEquals(95L, latencies.percentile("getCommit", 0.95))
+  }
+}
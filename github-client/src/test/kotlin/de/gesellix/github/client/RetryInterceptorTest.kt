@@ -0,0 +1,118 @@
+package de.gesellix.github.client
+
+import de.gesellix.github.client.data.CommitCommentRequest
+import de.gesellix.github.client.data.DeploymentRequest
+import okhttp3.Dispatcher
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.net.HttpURLConnection
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+internal class RetryInterceptorTest {
+
+  private lateinit var mockWebServer: MockWebServer
+  private lateinit var client: GitHubClient
+
+  @BeforeEach
+  fun setup() {
+    mockWebServer = MockWebServer()
+    mockWebServer.start()
+    client = GitHubClient(mockWebServer.url("/").toString(), token = "token", retryInterceptor = RetryInterceptor(baseDelayMillis = 1))
+  }
+
+  @AfterEach
+  fun teardown() {
+    mockWebServer.shutdown()
+  }
+
+  @Test
+  fun test_retries_get_after_secondary_rate_limit() {
+    mockWebServer.enqueue(MockResponse().setResponseCode(HttpURLConnection.HTTP_FORBIDDEN).setHeader("Retry-After", "0"))
+    mockWebServer.enqueue(MockResponse().setResponseCode(429))
+    mockWebServer.enqueue(
+      MockResponse()
+        .setResponseCode(HttpURLConnection.HTTP_OK)
+        .setBody(javaClass.getResource("/get_repository_response.json").readText())
+    )
+
+    val repository = client.getRepository("gesellix", "deployment-tests")
+
+    assertEquals("deployment-tests", repository?.name)
+    assertEquals(3, mockWebServer.requestCount)
+  }
+
+  @Test
+  fun test_does_not_retry_non_idempotent_request_on_server_error() {
+    mockWebServer.enqueue(MockResponse().setResponseCode(HttpURLConnection.HTTP_INTERNAL_ERROR))
+
+    val exception = assertThrows<HttpStatusException> {
+      client.addCommitComment("gesellix", "deployment-tests", "9bd5374e375e3416ff981122703a0e4079055fea", CommitCommentRequest("a comment"))
+    }
+
+    assertEquals(HttpURLConnection.HTTP_INTERNAL_ERROR, exception.code)
+    assertEquals(1, mockWebServer.requestCount)
+  }
+
+  @Test
+  fun test_create_deployment_finds_existing_deployment_after_ambiguous_failure() {
+    mockWebServer.enqueue(MockResponse().setResponseCode(HttpURLConnection.HTTP_BAD_GATEWAY))
+    mockWebServer.enqueue(
+      MockResponse()
+        .setResponseCode(HttpURLConnection.HTTP_OK)
+        .setBody("[${javaClass.getResource("/create_deployment_response.json").readText()}]")
+    )
+    val deploymentRequest = DeploymentRequest("9bd5374e375e3416ff981122703a0e4079055fea").apply {
+      this.environment = "test"
+      this.payload = "{\"foo\":\"bar\"}"
+    }
+
+    val deployment = client.createDeployment("gesellix", "deployment-tests", deploymentRequest)
+
+    assertEquals(289108418, deployment?.id)
+    assertEquals("POST", mockWebServer.takeRequest().method)
+    val lookup = mockWebServer.takeRequest()
+    assertEquals("GET", lookup.method)
+    assertTrue(lookup.path!!.contains("environment=test"))
+    assertEquals(2, mockWebServer.requestCount)
+  }
+
+  @Test
+  fun test_retries_enqueued_request_without_blocking_the_dispatcher() {
+    val executor = Executors.newSingleThreadExecutor()
+    try {
+      val httpClient = OkHttpClient.Builder().dispatcher(Dispatcher(executor)).build()
+      val client = GitHubClient(mockWebServer.url("/").toString(), token = "token", httpClient = httpClient, retryInterceptor = RetryInterceptor(baseDelayMillis = 1))
+      mockWebServer.enqueue(MockResponse().setResponseCode(429).setHeader("Retry-After", "1"))
+      mockWebServer.enqueue(repositoryResponse())
+      mockWebServer.enqueue(repositoryResponse())
+
+      val startedAt = System.currentTimeMillis()
+      val retried = client.getRepositoryAsync("gesellix", "deployment-tests")
+      // the only dispatcher thread must be free while the first request waits for its retry
+      mockWebServer.takeRequest(5, TimeUnit.SECONDS)
+      val other = client.getRepositoryAsync("gesellix", "other")
+
+      assertEquals("deployment-tests", other.get(5, TimeUnit.SECONDS)?.name)
+      assertTrue(System.currentTimeMillis() - startedAt < 1000, "second request should not have waited for the retry")
+      assertEquals("deployment-tests", retried.get(5, TimeUnit.SECONDS)?.name)
+      assertTrue(System.currentTimeMillis() - startedAt >= 1000, "retry should have waited for Retry-After")
+      assertEquals(3, mockWebServer.requestCount)
+    } finally {
+      executor.shutdownNow()
+    }
+  }
+
+  private fun repositoryResponse(): MockResponse {
+    return MockResponse()
+      .setResponseCode(HttpURLConnection.HTTP_OK)
+      .setBody(javaClass.getResource("/get_repository_response.json").readText())
+  }
+}
@@ -0,0 +1,85 @@
+package de.gesellix.github.client
+
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.io.IOException
+import java.net.HttpURLConnection
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+internal class SingleFlightTest {
+
+  private lateinit var mockWebServer: MockWebServer
+  private lateinit var client: GitHubClient
+
+  @BeforeEach
+  fun setup() {
+    mockWebServer = MockWebServer()
+    mockWebServer.start()
+    client = GitHubClient(mockWebServer.url("/").toString(), token = "token")
+  }
+
+  @AfterEach
+  fun teardown() {
+    mockWebServer.shutdown()
+  }
+
+  @Test
+  fun test_concurrent_identical_gets_share_one_request() {
+    mockWebServer.enqueue(
+      MockResponse()
+        .setResponseCode(HttpURLConnection.HTTP_OK)
+        .setBodyDelay(300, TimeUnit.MILLISECONDS)
+        .setBody(javaClass.getResource("/get_pull_request_response.json").readText())
+    )
+
+    val first = client.getPullRequestAsync("gesellix", "deployment-tests", 1)
+    val second = client.getPullRequestAsync("gesellix", "deployment-tests", 1)
+
+    assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS))
+    assertEquals(1, mockWebServer.requestCount)
+  }
+
+  @Test
+  fun test_blocking_callers_share_result() {
+    val singleFlight = SingleFlight()
+    val started = CountDownLatch(1)
+    val release = CountDownLatch(1)
+    val executor = Executors.newFixedThreadPool(2)
+    try {
+      val leader = executor.submit<String> {
+        singleFlight.call("key") {
+          started.countDown()
+          release.await()
+          "result"
+        }
+      }
+      started.await()
+      val follower = executor.submit<String> { singleFlight.call("key") { "other" } }
+      Thread.sleep(50)
+      release.countDown()
+
+      assertEquals("result", leader.get())
+      assertEquals("result", follower.get())
+      assertEquals(0, singleFlight.size())
+    } finally {
+      executor.shutdownNow()
+    }
+  }
+
+  @Test
+  fun test_does_not_cache_failures() {
+    val singleFlight = SingleFlight()
+
+    assertThrows<IOException> { singleFlight.call<String>("key") { throw IOException("failed") } }
+
+    assertEquals("result", singleFlight.call("key") { "result" })
+  }
+}
@@ -0,0 +1,81 @@
+package de.gesellix.github.client
+
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import java.net.HttpURLConnection
+import java.util.concurrent.TimeUnit
+
+internal class TokenPoolTest {
+
+  private lateinit var mockWebServer: MockWebServer
+  private lateinit var tracker: RateLimitTracker
+  private lateinit var client: GitHubClient
+
+  @BeforeEach
+  fun setup() {
+    mockWebServer = MockWebServer()
+    mockWebServer.start()
+    tracker = RateLimitTracker()
+    val baseUrl = mockWebServer.url("/").toString()
+    client = GitHubClient(
+      baseUrl,
+      responseCache = null,
+      rateLimitTracker = tracker,
+      credentials = TokenPool(baseUrl, listOf("first", "second"), tracker)
+    )
+  }
+
+  @AfterEach
+  fun teardown() {
+    mockWebServer.shutdown()
+  }
+
+  @Test
+  fun test_prefers_token_with_most_remaining_budget() {
+    val reset = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600
+    mockWebServer.enqueue(repositoryResponse(remaining = 0, reset = reset))
+    mockWebServer.enqueue(repositoryResponse(remaining = 2000, reset = reset))
+    mockWebServer.enqueue(repositoryResponse(remaining = 1999, reset = reset))
+
+    client.getRepository("gesellix", "deployment-tests")
+    client.getRepository("gesellix", "deployment-tests")
+    client.getRepository("gesellix", "deployment-tests")
+
+    assertEquals("token first", mockWebServer.takeRequest().getHeader("Authorization"))
+    assertEquals("token second", mockWebServer.takeRequest().getHeader("Authorization"))
+    assertEquals("token second", mockWebServer.takeRequest().getHeader("Authorization"))
+    assertEquals(1999, client.getRateLimit("gesellix", "deployment-tests")?.remaining)
+  }
+
+  @Test
+  fun test_looking_up_the_rate_limit_keeps_round_robin() {
+    // without a known budget, the tokens tie and are used in turns
+    val response = MockResponse()
+      .setResponseCode(HttpURLConnection.HTTP_OK)
+      .setBody(javaClass.getResource("/get_repository_response.json").readText())
+    mockWebServer.enqueue(response)
+    mockWebServer.enqueue(response)
+
+    client.getRepository("gesellix", "deployment-tests")
+    client.getRateLimit("gesellix", "deployment-tests")
+    client.getRateLimit("gesellix", "deployment-tests")
+    client.getRateLimit("gesellix", "deployment-tests")
+    client.getRepository("gesellix", "deployment-tests")
+
+    assertEquals("token first", mockWebServer.takeRequest().getHeader("Authorization"))
+    assertEquals("token second", mockWebServer.takeRequest().getHeader("Authorization"))
+  }
+
+  private fun repositoryResponse(remaining: Int, reset: Long): MockResponse {
+    return MockResponse()
+      .setResponseCode(HttpURLConnection.HTTP_OK)
+      .setHeader("X-RateLimit-Limit", "5000")
+      .setHeader("X-RateLimit-Remaining", remaining.toString())
+      .setHeader("X-RateLimit-Reset", reset.toString())
+      .setBody(javaClass.getResource("/get_repository_response.json").readText())
+  }
+}